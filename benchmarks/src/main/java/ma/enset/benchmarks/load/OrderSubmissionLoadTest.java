@@ -0,0 +1,219 @@
+package ma.enset.benchmarks.load;
+
+import com.nimbusds.jose.JOSEException;
+import com.nimbusds.jose.JWSAlgorithm;
+import com.nimbusds.jose.JWSHeader;
+import com.nimbusds.jose.crypto.RSASSASigner;
+import com.nimbusds.jose.jwk.JWKSet;
+import com.nimbusds.jose.jwk.RSAKey;
+import com.nimbusds.jwt.JWTClaimsSet;
+import com.nimbusds.jwt.SignedJWT;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import ma.enset.orderservice.OrderServiceApplication;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.boot.web.context.WebServerApplicationContext;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.security.KeyPair;
+import java.security.KeyPairGenerator;
+import java.security.NoSuchAlgorithmException;
+import java.security.interfaces.RSAPublicKey;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Submits a burst of concurrent orders to order-service, once on platform threads and once with
+ * {@code spring.threads.virtual.enabled}, and prints throughput and latency for both runs.
+ * <p>
+ * product-service is replaced by an in-process server that answers stock reservations after a fixed
+ * delay, and order-service stores orders in H2. Tokens are signed with a throwaway key whose JWK set
+ * the same server publishes, so requests go through the real resource-server security chain.
+ * <pre>
+ * java -cp target/benchmarks.jar ma.enset.benchmarks.load.OrderSubmissionLoadTest [orders] [product-latency-ms]
+ * </pre>
+ */
+public final class OrderSubmissionLoadTest {
+
+    private static final String ISSUER = "http://localhost/realms/load-test";
+    private static final String ORDER_JSON = "{\"productItems\":[{\"productId\":1,\"quantity\":1,\"price\":10.0}]}";
+
+    private OrderSubmissionLoadTest() {
+    }
+
+    public static void main(String[] args) throws Exception {
+        int orders = args.length > 0 ? Integer.parseInt(args[0]) : 1_000;
+        Duration productLatency = Duration.ofMillis(args.length > 1 ? Long.parseLong(args[1]) : 50);
+
+        KeyPair keyPair = rsaKeyPair();
+        String token = token(keyPair);
+        HttpServer productService = productService(keyPair, productLatency);
+        try {
+            String productServiceUrl = "http://localhost:" + productService.getAddress().getPort();
+            Result platform = run(false, orders, productServiceUrl, token);
+            Result virtual = run(true, orders, productServiceUrl, token);
+
+            System.out.printf("%d concurrent orders, product-service latency %d ms%n", orders, productLatency.toMillis());
+            System.out.println(platform);
+            System.out.println(virtual);
+            System.out.printf("throughput change: x%.2f%n", virtual.throughput() / platform.throughput());
+        } finally {
+            productService.stop(0);
+        }
+    }
+
+    private static Result run(boolean virtualThreads, int orders, String productServiceUrl, String token) throws Exception {
+        Map<String, Object> properties = new HashMap<>();
+        properties.put("server.port", "0");
+        properties.put("spring.threads.virtual.enabled", virtualThreads);
+        properties.put("spring.datasource.url", "jdbc:h2:mem:orders-" + virtualThreads + ";DB_CLOSE_DELAY=-1");
+        properties.put("spring.jpa.hibernate.ddl-auto", "create-drop");
+        properties.put("spring.main.banner-mode", "off");
+        properties.put("spring.security.oauth2.resourceserver.jwt.issuer-uri", ISSUER);
+        properties.put("spring.security.oauth2.resourceserver.jwt.jwk-set-uri", productServiceUrl + "/certs");
+        properties.put("product.service.url", productServiceUrl);
+        // measure the threading mode, not load shedding: let every order through to product-service
+        properties.put("product.service.http.max-connections", orders);
+        properties.put("product.service.http.max-connections-per-route", orders);
+        properties.put("resilience4j.bulkhead.instances.product-service.max-concurrent-calls", orders);
+        properties.put("logging.level.root", "WARN");
+
+        try (ConfigurableApplicationContext context = new SpringApplicationBuilder(OrderServiceApplication.class)
+                .logStartupInfo(false)
+                .properties(properties)
+                .run()) {
+            int port = ((WebServerApplicationContext) context).getWebServer().getPort();
+            URI ordersUri = URI.create("http://localhost:" + port + "/orders");
+            // warm up the request path before measuring
+            submit(ordersUri, token, Math.min(orders, 100));
+            return submit(ordersUri, token, orders).named(virtualThreads ? "virtual threads" : "platform threads");
+        }
+    }
+
+    private static Result submit(URI ordersUri, String token, int orders) {
+        AtomicInteger failures = new AtomicInteger();
+        long[] latencies = new long[orders];
+        try (ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor();
+             HttpClient client = HttpClient.newBuilder().executor(executor).connectTimeout(Duration.ofSeconds(10)).build()) {
+            HttpRequest request = HttpRequest.newBuilder(ordersUri)
+                    .header("Authorization", "Bearer " + token)
+                    .header("Content-Type", "application/json")
+                    .timeout(Duration.ofMinutes(1))
+                    .POST(HttpRequest.BodyPublishers.ofString(ORDER_JSON))
+                    .build();
+            long start = System.nanoTime();
+            List<CompletableFuture<Void>> submissions = new ArrayList<>(orders);
+            for (int i = 0; i < orders; i++) {
+                int index = i;
+                submissions.add(CompletableFuture.runAsync(() -> {
+                    long sent = System.nanoTime();
+                    try {
+                        HttpResponse<Void> response = client.send(request, HttpResponse.BodyHandlers.discarding());
+                        if (response.statusCode() != 200) {
+                            failures.incrementAndGet();
+                        }
+                    } catch (IOException e) {
+                        failures.incrementAndGet();
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                        failures.incrementAndGet();
+                    }
+                    latencies[index] = System.nanoTime() - sent;
+                }, executor));
+            }
+            CompletableFuture.allOf(submissions.toArray(CompletableFuture[]::new)).join();
+            return new Result("", orders, failures.get(), Duration.ofNanos(System.nanoTime() - start), latencies);
+        }
+    }
+
+    private static HttpServer productService(KeyPair keyPair, Duration latency) throws IOException {
+        byte[] jwkSet = new JWKSet(new RSAKey.Builder((RSAPublicKey) keyPair.getPublic()).keyID("load-test").build())
+                .toString().getBytes(StandardCharsets.UTF_8);
+        // without TCP_NODELAY small responses wait on delayed ACKs and the stub, not order-service, sets the pace
+        System.setProperty("sun.net.httpserver.nodelay", "true");
+        HttpServer server = HttpServer.create(new InetSocketAddress("localhost", 0), 4096);
+        server.setExecutor(Executors.newVirtualThreadPerTaskExecutor());
+        server.createContext("/certs", exchange -> respond(exchange, jwkSet));
+        server.createContext("/products/stock/reservations", exchange -> {
+            exchange.getRequestBody().readAllBytes();
+            try {
+                if (latency.isPositive()) {
+                    Thread.sleep(latency);
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            respond(exchange, new byte[0]);
+        });
+        server.start();
+        return server;
+    }
+
+    private static void respond(HttpExchange exchange, byte[] body) throws IOException {
+        exchange.getResponseHeaders().add("Content-Type", "application/json");
+        exchange.sendResponseHeaders(200, body.length == 0 ? -1 : body.length);
+        exchange.getResponseBody().write(body);
+        exchange.close();
+    }
+
+    private static KeyPair rsaKeyPair() throws NoSuchAlgorithmException {
+        KeyPairGenerator generator = KeyPairGenerator.getInstance("RSA");
+        generator.initialize(2048);
+        return generator.generateKeyPair();
+    }
+
+    private static String token(KeyPair keyPair) throws JOSEException {
+        Instant now = Instant.now();
+        JWTClaimsSet claims = new JWTClaimsSet.Builder()
+                .issuer(ISSUER)
+                .subject("load-test-user")
+                .claim("realm_access", Map.of("roles", List.of("CLIENT")))
+                .issueTime(Date.from(now))
+                .expirationTime(Date.from(now.plus(Duration.ofHours(1))))
+                .build();
+        SignedJWT jwt = new SignedJWT(new JWSHeader.Builder(JWSAlgorithm.RS256).keyID("load-test").build(), claims);
+        jwt.sign(new RSASSASigner(keyPair.getPrivate()));
+        return jwt.serialize();
+    }
+
+    private record Result(String mode, int orders, int failures, Duration elapsed, long[] latencies) {
+
+        Result named(String mode) {
+            return new Result(mode, orders, failures, elapsed, latencies);
+        }
+
+        double throughput() {
+            return (orders - failures) / (elapsed.toNanos() / 1e9);
+        }
+
+        @Override
+        public String toString() {
+            long[] sorted = latencies.clone();
+            Arrays.sort(sorted);
+            return String.format("%-16s %8.1f orders/s  p50 %6d ms  p99 %6d ms  max %6d ms  failures %d",
+                    mode, throughput(), percentile(sorted, 0.50), percentile(sorted, 0.99),
+                    sorted[sorted.length - 1] / 1_000_000, failures);
+        }
+
+        private static long percentile(long[] sorted, double percentile) {
+            return sorted[(int) Math.ceil(percentile * sorted.length) - 1] / 1_000_000;
+        }
+    }
+}
@@ -0,0 +1,21 @@
+package ma.enset.benchmarks.order;
+
+import ma.enset.orderservice.entities.Order;
+import ma.enset.orderservice.entities.ProductItem;
+
+import java.util.ArrayList;
+import java.util.List;
+
+final class BenchmarkOrders {
+
+    private BenchmarkOrders() {
+    }
+
+    static Order order(int items) {
+        List<ProductItem> productItems = new ArrayList<>(items);
+        for (int i = 0; i < items; i++) {
+            productItems.add(new ProductItem((long) i + 1, i % 5 + 1, 999 + 100L * i));
+        }
+        return Order.builder().productItems(productItems).build();
+    }
+}
@@ -0,0 +1,218 @@
+package ma.enset.benchmarks.order;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import ma.enset.orderservice.config.ReadYourWrites;
+import ma.enset.orderservice.entities.Order;
+import ma.enset.orderservice.repository.OrderRepository;
+import ma.enset.orderservice.security.ServiceTokenProvider;
+import ma.enset.orderservice.service.OrderOutboxService;
+import ma.enset.orderservice.service.OrderService;
+import ma.enset.orderservice.service.OrderStatusNotifier;
+import ma.enset.orderservice.service.StockAvailabilityChecker;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.HttpStatusCode;
+import org.springframework.http.client.ClientHttpRequest;
+import org.springframework.http.client.ClientHttpRequestFactory;
+import org.springframework.http.client.ClientHttpResponse;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.security.oauth2.client.OAuth2AuthorizedClient;
+import org.springframework.security.oauth2.client.registration.ClientRegistration;
+import org.springframework.security.oauth2.core.AuthorizationGrantType;
+import org.springframework.security.oauth2.core.OAuth2AccessToken;
+import org.springframework.security.oauth2.jwt.Jwt;
+import org.springframework.security.oauth2.server.resource.authentication.JwtAuthenticationToken;
+import org.springframework.web.client.RestClient;
+
+import java.io.ByteArrayOutputStream;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.lang.reflect.Proxy;
+import java.net.URI;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * {@link OrderService#createOrder} without its I/O: the product-service call is answered in memory
+ * and the repository only assigns an id and accepts the status update, leaving validation, the
+ * reservation request body and the total computation.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class CreateOrderBenchmark {
+
+    @Param({"1", "10", "100"})
+    private int items;
+
+    private OrderService orderService;
+    private Order invalidOrder;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        RestClient restClient = RestClient.builder()
+                .baseUrl("http://product-service")
+                .requestFactory(new AcceptingRequestFactory())
+                .build();
+        OrderRepository orderRepository = savingRepository();
+        SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+        orderService = new OrderService(orderRepository, restClient,
+                new StockAvailabilityChecker(restClient, Duration.ofSeconds(2), 8), false,
+                new OrderOutboxService(orderRepository, null), serviceTokenProvider(),
+                new OrderStatusNotifier(Duration.ofSeconds(30), Duration.ofMinutes(30), 256, meterRegistry),
+                new ReadYourWrites(Duration.ofSeconds(5)), false,
+                meterRegistry);
+
+        invalidOrder = BenchmarkOrders.order(items);
+        invalidOrder.getProductItems().get(items - 1).setQuantity(0);
+
+        Jwt jwt = Jwt.withTokenValue("token").header("alg", "RS256").subject("user1").build();
+        SecurityContextHolder.getContext().setAuthentication(new JwtAuthenticationToken(jwt, List.of()));
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        SecurityContextHolder.clearContext();
+    }
+
+    @Benchmark
+    public Order createOrder() {
+        return orderService.createOrder(BenchmarkOrders.order(items), "user1");
+    }
+
+    @Benchmark
+    public Exception rejectInvalidOrder() {
+        try {
+            orderService.createOrder(invalidOrder, "user1");
+            throw new IllegalStateException("Invalid order was accepted");
+        } catch (IllegalArgumentException e) {
+            return e;
+        }
+    }
+
+    private static OrderRepository savingRepository() {
+        AtomicLong ids = new AtomicLong();
+        return (OrderRepository) Proxy.newProxyInstance(OrderRepository.class.getClassLoader(),
+                new Class<?>[]{OrderRepository.class},
+                (proxy, method, args) -> switch (method.getName()) {
+                    case "save" -> {
+                        Order order = (Order) args[0];
+                        order.setId(ids.incrementAndGet());
+                        yield order;
+                    }
+                    case "updateStatus" -> 1;
+                    case "hashCode" -> System.identityHashCode(proxy);
+                    case "equals" -> proxy == args[0];
+                    case "toString" -> "OrderRepository stub";
+                    default -> throw new UnsupportedOperationException(method.getName());
+                });
+    }
+
+    // the service token is issued once, as the real provider reuses it until it nears expiry
+    private static ServiceTokenProvider serviceTokenProvider() {
+        ClientRegistration registration = ClientRegistration.withRegistrationId(ServiceTokenProvider.REGISTRATION_ID)
+                .clientId("order-service")
+                .authorizationGrantType(AuthorizationGrantType.CLIENT_CREDENTIALS)
+                .tokenUri("http://keycloak/token")
+                .build();
+        OAuth2AuthorizedClient client = new OAuth2AuthorizedClient(registration, ServiceTokenProvider.REGISTRATION_ID,
+                new OAuth2AccessToken(OAuth2AccessToken.TokenType.BEARER, "service-token", Instant.now(), Instant.now().plus(Duration.ofDays(1))));
+        return new ServiceTokenProvider(request -> client);
+    }
+
+    /**
+     * Answers every request with an empty 200, as product-service does for a successful reservation.
+     */
+    private static final class AcceptingRequestFactory implements ClientHttpRequestFactory {
+
+        @Override
+        public ClientHttpRequest createRequest(URI uri, HttpMethod httpMethod) {
+            return new ClientHttpRequest() {
+                private final HttpHeaders headers = new HttpHeaders();
+                private final ByteArrayOutputStream body = new ByteArrayOutputStream();
+                private final Map<String, Object> attributes = new HashMap<>();
+
+                @Override
+                public ClientHttpResponse execute() {
+                    return new OkResponse();
+                }
+
+                @Override
+                public OutputStream getBody() {
+                    return body;
+                }
+
+                @Override
+                public HttpMethod getMethod() {
+                    return httpMethod;
+                }
+
+                @Override
+                public URI getURI() {
+                    return uri;
+                }
+
+                @Override
+                public Map<String, Object> getAttributes() {
+                    return attributes;
+                }
+
+                @Override
+                public HttpHeaders getHeaders() {
+                    return headers;
+                }
+            };
+        }
+    }
+
+    private static final class OkResponse implements ClientHttpResponse {
+
+        private final HttpHeaders headers = new HttpHeaders();
+
+        @Override
+        public HttpStatusCode getStatusCode() {
+            return HttpStatus.OK;
+        }
+
+        @Override
+        public String getStatusText() {
+            return HttpStatus.OK.getReasonPhrase();
+        }
+
+        @Override
+        public InputStream getBody() {
+            return InputStream.nullInputStream();
+        }
+
+        @Override
+        public HttpHeaders getHeaders() {
+            return headers;
+        }
+
+        @Override
+        public void close() {
+        }
+    }
+}
@@ -0,0 +1,124 @@
+package ma.enset.benchmarks.order;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import ma.enset.orderservice.entities.Order;
+import ma.enset.orderservice.repository.OrderRepository;
+import ma.enset.orderservice.service.OrderImportService;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.boot.WebApplicationType;
+import org.springframework.boot.autoconfigure.ImportAutoConfiguration;
+import org.springframework.boot.autoconfigure.context.PropertyPlaceholderAutoConfiguration;
+import org.springframework.boot.autoconfigure.domain.EntityScan;
+import org.springframework.boot.autoconfigure.jackson.JacksonAutoConfiguration;
+import org.springframework.boot.autoconfigure.jdbc.DataSourceAutoConfiguration;
+import org.springframework.boot.autoconfigure.orm.jpa.HibernateJpaAutoConfiguration;
+import org.springframework.boot.autoconfigure.transaction.TransactionAutoConfiguration;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Import;
+import org.springframework.data.jpa.repository.config.EnableJpaRepositories;
+
+import javax.sql.DataSource;
+import java.io.ByteArrayInputStream;
+import java.nio.charset.StandardCharsets;
+import java.sql.Connection;
+import java.sql.Statement;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * {@link OrderImportService#importOrders} into an in-memory H2 database, reported in rows per
+ * second (an order row plus one row per item). {@code batchSize=1} is the unbatched baseline: one
+ * insert statement per row, as with the former IDENTITY ids.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class OrderImportBenchmark {
+
+    private static final int ORDERS = 2_000;
+    private static final int ITEMS = 3;
+    private static final int ROWS = ORDERS * (1 + ITEMS);
+
+    @Param({"1", "50"})
+    private int batchSize;
+
+    private ConfigurableApplicationContext context;
+    private OrderImportService orderImportService;
+    private DataSource dataSource;
+    private byte[] ndjson;
+
+    @Setup(Level.Trial)
+    public void setUp() throws Exception {
+        context = new SpringApplicationBuilder(OrderImportBenchmarkConfiguration.class)
+                .web(WebApplicationType.NONE)
+                .logStartupInfo(false)
+                .properties(Map.of(
+                        "spring.main.banner-mode", "off",
+                        "spring.datasource.url", "jdbc:h2:mem:orders-import-" + batchSize + ";DB_CLOSE_DELAY=-1",
+                        "spring.jpa.hibernate.ddl-auto", "create-drop",
+                        "spring.jpa.open-in-view", "false",
+                        "spring.jpa.properties.hibernate.jdbc.batch_size", String.valueOf(batchSize),
+                        "spring.jpa.properties.hibernate.order_inserts", "true",
+                        "order.import.chunk-size", String.valueOf(ORDERS),
+                        "logging.level.root", "WARN"))
+                .run();
+        orderImportService = context.getBean(OrderImportService.class);
+        dataSource = context.getBean(DataSource.class);
+
+        ObjectMapper objectMapper = context.getBean(ObjectMapper.class);
+        StringBuilder lines = new StringBuilder();
+        for (int i = 0; i < ORDERS; i++) {
+            Order order = BenchmarkOrders.order(ITEMS);
+            order.setUserId("user" + i % 100);
+            lines.append(objectMapper.writeValueAsString(order)).append('\n');
+        }
+        ndjson = lines.toString().getBytes(StandardCharsets.UTF_8);
+    }
+
+    // Keeps the tables from growing across iterations
+    @TearDown(Level.Iteration)
+    public void deleteOrders() throws Exception {
+        try (Connection connection = dataSource.getConnection(); Statement statement = connection.createStatement()) {
+            statement.execute("delete from order_product_items");
+            statement.execute("delete from customer_orders");
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        context.close();
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(ROWS)
+    public long importOrders() throws Exception {
+        return orderImportService.importOrders(new ByteArrayInputStream(ndjson));
+    }
+
+    @Configuration(proxyBeanMethods = false)
+    @ImportAutoConfiguration({PropertyPlaceholderAutoConfiguration.class, DataSourceAutoConfiguration.class,
+            HibernateJpaAutoConfiguration.class, TransactionAutoConfiguration.class, JacksonAutoConfiguration.class})
+    @EntityScan(basePackageClasses = Order.class)
+    @EnableJpaRepositories(basePackageClasses = OrderRepository.class)
+    @Import(OrderImportService.class)
+    static class OrderImportBenchmarkConfiguration {
+    }
+}
@@ -0,0 +1,71 @@
+package ma.enset.benchmarks.order;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import ma.enset.orderservice.entities.Order;
+import ma.enset.orderservice.entities.ProductItem;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+
+import java.time.LocalDate;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * JSON (de)serialization of {@link Order} and its {@link ProductItem}s with the object mapper
+ * Spring MVC builds for the controllers.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class OrderJsonBenchmark {
+
+    @Param({"1", "10", "100"})
+    private int items;
+
+    private ObjectMapper objectMapper;
+    private Order order;
+    private byte[] orderJson;
+    private byte[] productItemJson;
+
+    @Setup(Level.Trial)
+    public void setUp() throws JsonProcessingException {
+        objectMapper = Jackson2ObjectMapperBuilder.json().build();
+        order = BenchmarkOrders.order(items);
+        order.setId(1L);
+        order.setDate(LocalDate.of(2024, 1, 1));
+        order.setStatus("PENDING");
+        order.setAmountCents(order.getProductItems().stream().mapToLong(ProductItem::getLineTotalCents).sum());
+        order.setUserId("user1");
+        orderJson = objectMapper.writeValueAsBytes(order);
+        productItemJson = objectMapper.writeValueAsBytes(order.getProductItems().get(0));
+    }
+
+    @Benchmark
+    public byte[] serializeOrder() throws JsonProcessingException {
+        return objectMapper.writeValueAsBytes(order);
+    }
+
+    @Benchmark
+    public Order deserializeOrder() throws Exception {
+        return objectMapper.readValue(orderJson, Order.class);
+    }
+
+    @Benchmark
+    public ProductItem deserializeProductItem() throws Exception {
+        return objectMapper.readValue(productItemJson, ProductItem.class);
+    }
+}
@@ -0,0 +1,112 @@
+package ma.enset.benchmarks.product;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import ma.enset.productservice.cache.ProductCatalogCache;
+import ma.enset.productservice.entities.Product;
+import ma.enset.productservice.repository.ProductRepository;
+import ma.enset.productservice.search.ProductSearchIndex;
+import ma.enset.productservice.service.ProductService;
+import ma.enset.productservice.service.StockEventPublisher;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.boot.WebApplicationType;
+import org.springframework.boot.autoconfigure.ImportAutoConfiguration;
+import org.springframework.boot.autoconfigure.context.PropertyPlaceholderAutoConfiguration;
+import org.springframework.boot.autoconfigure.domain.EntityScan;
+import org.springframework.boot.autoconfigure.jdbc.DataSourceAutoConfiguration;
+import org.springframework.boot.autoconfigure.orm.jpa.HibernateJpaAutoConfiguration;
+import org.springframework.boot.autoconfigure.transaction.TransactionAutoConfiguration;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Import;
+import org.springframework.data.jpa.repository.config.EnableJpaRepositories;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * {@link ProductService#checkStock} and {@link ProductService#reduceStock} against an in-memory H2
+ * database, with the service, repository and stock cache wired as in product-service.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ProductStockBenchmark {
+
+    private static final int PRODUCTS = 1_000;
+    private static final int INITIAL_STOCK = 1_000_000_000;
+
+    private ConfigurableApplicationContext context;
+    private ProductService productService;
+    private List<Long> productIds;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        context = new SpringApplicationBuilder(ProductServiceBenchmarkConfiguration.class)
+                .web(WebApplicationType.NONE)
+                .logStartupInfo(false)
+                .properties(Map.of(
+                        "spring.main.banner-mode", "off",
+                        "spring.datasource.url", "jdbc:h2:mem:products;DB_CLOSE_DELAY=-1",
+                        "spring.jpa.hibernate.ddl-auto", "create-drop",
+                        "spring.jpa.open-in-view", "false",
+                        "logging.level.root", "WARN"))
+                .run();
+        productService = context.getBean(ProductService.class);
+
+        ProductRepository productRepository = context.getBean(ProductRepository.class);
+        List<Product> products = new ArrayList<>(PRODUCTS);
+        for (int i = 0; i < PRODUCTS; i++) {
+            products.add(Product.builder().name("Product " + i).description("Benchmark product").price(10.0 + i).quantity(INITIAL_STOCK).build());
+        }
+        productIds = productRepository.saveAll(products).stream().map(Product::getId).toList();
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        context.close();
+    }
+
+    @Benchmark
+    @Threads(4)
+    public boolean checkStock() {
+        return productService.checkStock(randomProduct(), 1);
+    }
+
+    @Benchmark
+    @Threads(4)
+    public void reduceStock() {
+        productService.reduceStock(randomProduct(), 1);
+    }
+
+    private Long randomProduct() {
+        return productIds.get(ThreadLocalRandom.current().nextInt(PRODUCTS));
+    }
+
+    @Configuration(proxyBeanMethods = false)
+    @ImportAutoConfiguration({PropertyPlaceholderAutoConfiguration.class, DataSourceAutoConfiguration.class,
+            HibernateJpaAutoConfiguration.class, TransactionAutoConfiguration.class})
+    @EntityScan(basePackageClasses = Product.class)
+    @EnableJpaRepositories(basePackageClasses = ProductRepository.class)
+    @Import({ProductService.class, ProductCatalogCache.class, StockEventPublisher.class, ProductSearchIndex.class, SimpleMeterRegistry.class})
+    static class ProductServiceBenchmarkConfiguration {
+    }
+}
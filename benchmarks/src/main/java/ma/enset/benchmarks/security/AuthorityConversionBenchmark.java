@@ -0,0 +1,87 @@
+package ma.enset.benchmarks.security;
+
+import ma.enset.orderservice.security.RealmRoleAuthoritiesConverter;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.core.convert.converter.Converter;
+import org.springframework.security.core.GrantedAuthority;
+import org.springframework.security.core.authority.SimpleGrantedAuthority;
+import org.springframework.security.oauth2.jwt.Jwt;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+/**
+ * Compares the original stream-based realm role converter with {@link RealmRoleAuthoritiesConverter}.
+ * Every token carries its own roles list, as tokens decoded per request do.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class AuthorityConversionBenchmark {
+
+    private static final int TOKENS = 64;
+
+    private final Converter<Jwt, Collection<GrantedAuthority>> streamConverter = AuthorityConversionBenchmark::convertWithStream;
+    private final Converter<Jwt, Collection<GrantedAuthority>> internedConverter = new RealmRoleAuthoritiesConverter();
+
+    private Jwt[] tokens;
+    private int next;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        tokens = new Jwt[TOKENS];
+        for (int i = 0; i < TOKENS; i++) {
+            List<String> roles = new ArrayList<>(i % 2 == 0 ? List.of("CLIENT") : List.of("ADMIN", "CLIENT"));
+            tokens[i] = Jwt.withTokenValue("token-" + i)
+                    .header("alg", "RS256")
+                    .subject("user-" + i)
+                    .claim("realm_access", Map.of("roles", roles))
+                    .build();
+        }
+    }
+
+    @Benchmark
+    public Collection<GrantedAuthority> streamPerRequest() {
+        return streamConverter.convert(nextToken());
+    }
+
+    @Benchmark
+    public Collection<GrantedAuthority> internedPerRoleCombination() {
+        return internedConverter.convert(nextToken());
+    }
+
+    private Jwt nextToken() {
+        next = (next + 1) % TOKENS;
+        return tokens[next];
+    }
+
+    // The converter both services used before: a new stream, list and authorities on every request
+    private static Collection<GrantedAuthority> convertWithStream(Jwt jwt) {
+        Map<String, Object> realmAccess = jwt.getClaim("realm_access");
+        if (realmAccess != null && realmAccess.get("roles") instanceof Collection) {
+            @SuppressWarnings("unchecked")
+            Collection<String> roles = (Collection<String>) realmAccess.get("roles");
+            return roles.stream()
+                    .map(role -> new SimpleGrantedAuthority("ROLE_" + role))
+                    .collect(Collectors.toList());
+        }
+        return null;
+    }
+}
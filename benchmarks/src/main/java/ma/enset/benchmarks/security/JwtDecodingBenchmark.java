@@ -0,0 +1,120 @@
+package ma.enset.benchmarks.security;
+
+import com.nimbusds.jose.JOSEException;
+import com.nimbusds.jose.JWSAlgorithm;
+import com.nimbusds.jose.JWSHeader;
+import com.nimbusds.jose.crypto.RSASSASigner;
+import com.nimbusds.jwt.JWTClaimsSet;
+import com.nimbusds.jwt.SignedJWT;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import ma.enset.orderservice.security.CachingJwtDecoder;
+import ma.enset.orderservice.security.RealmRoleAuthoritiesConverter;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.security.authentication.AbstractAuthenticationToken;
+import org.springframework.security.oauth2.jose.jws.SignatureAlgorithm;
+import org.springframework.security.oauth2.jwt.Jwt;
+import org.springframework.security.oauth2.jwt.JwtDecoder;
+import org.springframework.security.oauth2.jwt.JwtValidators;
+import org.springframework.security.oauth2.jwt.NimbusJwtDecoder;
+import org.springframework.security.oauth2.server.resource.authentication.JwtAuthenticationConverter;
+
+import java.security.KeyPair;
+import java.security.KeyPairGenerator;
+import java.security.NoSuchAlgorithmException;
+import java.security.interfaces.RSAPublicKey;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Date;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Cost of turning a bearer token into an authentication, as the resource servers do on every request:
+ * RS256 signature and claim validation, the verified-token cache in front of it, and the full
+ * decode + realm role conversion.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class JwtDecodingBenchmark {
+
+    private static final String ISSUER = "http://localhost:8088/realms/microservices-realm";
+    private static final int TOKENS = 64;
+
+    private JwtDecoder verifyingDecoder;
+    private JwtDecoder cachingDecoder;
+    private JwtAuthenticationConverter authenticationConverter;
+    private String[] tokens;
+    private int next;
+
+    @Setup(Level.Trial)
+    public void setUp() throws NoSuchAlgorithmException, JOSEException {
+        KeyPairGenerator generator = KeyPairGenerator.getInstance("RSA");
+        generator.initialize(2048);
+        KeyPair keyPair = generator.generateKeyPair();
+
+        NimbusJwtDecoder nimbusDecoder = NimbusJwtDecoder.withPublicKey((RSAPublicKey) keyPair.getPublic())
+                .signatureAlgorithm(SignatureAlgorithm.RS256)
+                .build();
+        nimbusDecoder.setJwtValidator(JwtValidators.createDefaultWithIssuer(ISSUER));
+        verifyingDecoder = nimbusDecoder;
+        cachingDecoder = new CachingJwtDecoder(nimbusDecoder, new SimpleMeterRegistry(), 10_000, Duration.ofMinutes(10));
+
+        authenticationConverter = new JwtAuthenticationConverter();
+        authenticationConverter.setJwtGrantedAuthoritiesConverter(new RealmRoleAuthoritiesConverter());
+
+        RSASSASigner signer = new RSASSASigner(keyPair.getPrivate());
+        Instant now = Instant.now();
+        tokens = new String[TOKENS];
+        for (int i = 0; i < TOKENS; i++) {
+            JWTClaimsSet claims = new JWTClaimsSet.Builder()
+                    .issuer(ISSUER)
+                    .subject("user-" + i)
+                    .claim("preferred_username", "user" + i)
+                    .claim("realm_access", Map.of("roles", i % 2 == 0 ? List.of("CLIENT") : List.of("ADMIN", "CLIENT")))
+                    .issueTime(Date.from(now))
+                    .expirationTime(Date.from(now.plus(Duration.ofHours(1))))
+                    .build();
+            SignedJWT jwt = new SignedJWT(new JWSHeader(JWSAlgorithm.RS256), claims);
+            jwt.sign(signer);
+            tokens[i] = jwt.serialize();
+        }
+        for (String token : tokens) {
+            cachingDecoder.decode(token);
+        }
+    }
+
+    @Benchmark
+    public Jwt verifyEveryRequest() {
+        return verifyingDecoder.decode(nextToken());
+    }
+
+    @Benchmark
+    public Jwt cachedVerification() {
+        return cachingDecoder.decode(nextToken());
+    }
+
+    @Benchmark
+    public AbstractAuthenticationToken cachedVerificationWithAuthorities() {
+        return authenticationConverter.convert(cachingDecoder.decode(nextToken()));
+    }
+
+    private String nextToken() {
+        next = (next + 1) % TOKENS;
+        return tokens[next];
+    }
+}
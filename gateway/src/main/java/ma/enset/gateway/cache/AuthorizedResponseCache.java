@@ -0,0 +1,269 @@
+package ma.enset.gateway.cache;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import org.reactivestreams.Publisher;
+import org.springframework.core.io.buffer.DataBuffer;
+import org.springframework.core.io.buffer.DataBufferUtils;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.server.reactive.ServerHttpRequest;
+import org.springframework.http.server.reactive.ServerHttpResponse;
+import org.springframework.http.server.reactive.ServerHttpResponseDecorator;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.GrantedAuthority;
+import org.springframework.security.oauth2.server.resource.authentication.JwtAuthenticationToken;
+import org.springframework.web.server.ServerWebExchange;
+import org.springframework.web.server.WebFilterChain;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.security.Principal;
+import java.time.Duration;
+import java.util.Base64;
+import java.util.Collection;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
+import java.util.function.Predicate;
+import java.util.regex.Pattern;
+import java.util.stream.Collectors;
+
+/**
+ * Caches successful {@code GET} responses of one route in memory and answers them with an
+ * {@code ETag}, or {@code 304 Not Modified} when the client already holds the same body.
+ * <p>
+ * Entries are keyed by the caller's realm roles plus the path and query, never by the raw token,
+ * so every user with the same roles shares them while a response is never replayed to a caller
+ * with different roles. The cache is bounded by the total size of the cached bodies. Any other
+ * method on the route is treated as a write and, once it completes, drops the entries whose path
+ * {@code staleAfterWrite} maps the written path to; writes that bypass the gateway are picked up
+ * when entries expire.
+ */
+public class AuthorizedResponseCache {
+
+    private static final String CACHE_CONTROL = "private, no-cache";
+
+    // headers owned by the transport, the per-request CORS handling or this cache
+    private static final Set<String> UNCACHED_HEADERS = Set.of(
+            "content-length", "transfer-encoding", "connection", "date", "set-cookie",
+            "cache-control", "pragma", "expires", "vary", "etag");
+
+    private final Pattern cacheablePath;
+    private final Function<String, Predicate<String>> staleAfterWrite;
+    private final long maxEntryBytes;
+    private final Cache<String, CachedResponse> responses;
+    private final AtomicLong generation = new AtomicLong();
+    private final Counter upstreamBytesSaved;
+    private final Counter clientBytesSaved;
+    private final Counter invalidations;
+
+    public AuthorizedResponseCache(String name, Pattern cacheablePath, Function<String, Predicate<String>> staleAfterWrite,
+                                   MeterRegistry meterRegistry, long maxBytes, long maxEntryBytes, Duration ttl) {
+        this.cacheablePath = cacheablePath;
+        this.staleAfterWrite = staleAfterWrite;
+        this.maxEntryBytes = maxEntryBytes;
+        this.responses = Caffeine.newBuilder()
+                .maximumWeight(maxBytes)
+                .weigher((String key, CachedResponse response) -> key.length() + response.body().length)
+                .expireAfterWrite(ttl)
+                .recordStats()
+                .build();
+        CaffeineCacheMetrics.monitor(meterRegistry, responses, name);
+        Gauge.builder("gateway.response.cache.size", responses,
+                        cache -> cache.policy().eviction().orElseThrow().weightedSize().orElse(0))
+                .description("Bytes of response bodies held in the cache")
+                .baseUnit("bytes")
+                .tag("cache", name)
+                .register(meterRegistry);
+        this.upstreamBytesSaved = bytesSavedCounter(meterRegistry, name, "upstream");
+        this.clientBytesSaved = bytesSavedCounter(meterRegistry, name, "client");
+        this.invalidations = Counter.builder("gateway.response.cache.invalidations")
+                .description("Times entries were dropped after a write")
+                .tag("cache", name)
+                .register(meterRegistry);
+    }
+
+    public Mono<Void> filter(ServerWebExchange exchange, WebFilterChain chain) {
+        ServerHttpRequest request = exchange.getRequest();
+        HttpMethod method = request.getMethod();
+        if (method != HttpMethod.GET && method != HttpMethod.HEAD && method != HttpMethod.OPTIONS) {
+            Predicate<String> stalePath = staleAfterWrite.apply(request.getPath().value());
+            return chain.filter(exchange).doFinally(signal -> invalidate(stalePath));
+        }
+        if (method != HttpMethod.GET || !cacheablePath.matcher(request.getPath().value()).matches()) {
+            return chain.filter(exchange);
+        }
+        // a response fetched while a write was in flight may predate it and is not stored
+        long startGeneration = generation.get();
+        return exchange.getPrincipal()
+                .map(AuthorizedResponseCache::roles)
+                .defaultIfEmpty("")
+                .flatMap(roles -> {
+                    String key = roles + ' ' + request.getURI().getRawPath() + '?' + Objects.toString(request.getURI().getRawQuery(), "");
+                    CachedResponse cached = responses.getIfPresent(key);
+                    if (cached != null) {
+                        upstreamBytesSaved.increment(cached.body().length);
+                        return writeCached(exchange, cached);
+                    }
+                    return chain.filter(exchange.mutate().response(new CachingResponse(exchange, key, startGeneration)).build());
+                });
+    }
+
+    /**
+     * Drops the entries whose path matches. Responses in flight are not stored afterwards, whatever
+     * their path, since they may predate the write.
+     */
+    public void invalidate(Predicate<String> stalePath) {
+        generation.incrementAndGet();
+        responses.asMap().keySet().removeIf(key -> stalePath.test(path(key)));
+        invalidations.increment();
+    }
+
+    private Mono<Void> writeCached(ServerWebExchange exchange, CachedResponse cached) {
+        ServerHttpResponse response = exchange.getResponse();
+        response.getHeaders().putAll(cached.headers());
+        if (isNotModified(exchange.getRequest(), cached.etag())) {
+            return notModified(response, cached.body().length);
+        }
+        response.setStatusCode(HttpStatus.OK);
+        response.getHeaders().setContentLength(cached.body().length);
+        return response.writeWith(Mono.just(response.bufferFactory().wrap(cached.body())));
+    }
+
+    private Mono<Void> notModified(ServerHttpResponse response, int bodyLength) {
+        clientBytesSaved.increment(bodyLength);
+        response.setStatusCode(HttpStatus.NOT_MODIFIED);
+        response.getHeaders().remove(HttpHeaders.CONTENT_LENGTH);
+        response.getHeaders().remove(HttpHeaders.CONTENT_TYPE);
+        return response.setComplete();
+    }
+
+    private void store(String key, CachedResponse response, long startGeneration) {
+        if (response.body().length > maxEntryBytes || generation.get() != startGeneration) {
+            return;
+        }
+        responses.put(key, response);
+        // a write that completed meanwhile may already have cleared the cache
+        if (generation.get() != startGeneration) {
+            responses.invalidate(key);
+        }
+    }
+
+    // keys are "<roles> <raw path>?<raw query>"; neither the raw path nor the raw query contains a space
+    private static String path(String key) {
+        int start = key.lastIndexOf(' ') + 1;
+        return key.substring(start, key.indexOf('?', start));
+    }
+
+    private static boolean isNotModified(ServerHttpRequest request, String etag) {
+        for (String candidate : request.getHeaders().getIfNoneMatch()) {
+            if (candidate.equals("*") || candidate.equals(etag) || candidate.equals("W/" + etag)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static String roles(Principal principal) {
+        Collection<String> roles = List.of();
+        if (principal instanceof JwtAuthenticationToken token) {
+            Map<String, Object> realmAccess = token.getToken().getClaimAsMap("realm_access");
+            if (realmAccess != null && realmAccess.get("roles") instanceof Collection<?> realmRoles) {
+                roles = realmRoles.stream().map(String::valueOf).toList();
+            }
+        } else if (principal instanceof Authentication authentication) {
+            roles = authentication.getAuthorities().stream().map(GrantedAuthority::getAuthority).toList();
+        }
+        return roles.stream().sorted().distinct().collect(Collectors.joining(","));
+    }
+
+    private static String etag(byte[] body) {
+        try {
+            byte[] digest = MessageDigest.getInstance("SHA-256").digest(body);
+            return '"' + Base64.getUrlEncoder().withoutPadding().encodeToString(digest) + '"';
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 is not available", e);
+        }
+    }
+
+    private static Counter bytesSavedCounter(MeterRegistry meterRegistry, String name, String leg) {
+        return Counter.builder("gateway.response.cache.bytes.saved")
+                .description("Response bytes not transferred thanks to the cache")
+                .baseUnit("bytes")
+                .tag("cache", name)
+                .tag("leg", leg)
+                .register(meterRegistry);
+    }
+
+    private record CachedResponse(HttpHeaders headers, String etag, byte[] body) {
+    }
+
+    // Buffers a 200 response from the backend, stores it and sends it on with its ETag
+    private class CachingResponse extends ServerHttpResponseDecorator {
+
+        private final ServerHttpRequest request;
+        private final String key;
+        private final long startGeneration;
+
+        CachingResponse(ServerWebExchange exchange, String key, long startGeneration) {
+            super(exchange.getResponse());
+            this.request = exchange.getRequest();
+            this.key = key;
+            this.startGeneration = startGeneration;
+        }
+
+        @Override
+        public Mono<Void> writeWith(Publisher<? extends DataBuffer> body) {
+            if (!HttpStatus.OK.equals(getStatusCode()) || getHeaders().containsKey(HttpHeaders.SET_COOKIE)) {
+                return super.writeWith(body);
+            }
+            return DataBufferUtils.join(Flux.from(body))
+                    .defaultIfEmpty(bufferFactory().wrap(new byte[0]))
+                    .flatMap(buffer -> {
+                        byte[] bytes = new byte[buffer.readableByteCount()];
+                        buffer.read(bytes);
+                        DataBufferUtils.release(buffer);
+                        String etag = etag(bytes);
+                        CachedResponse cached = new CachedResponse(cacheableHeaders(getHeaders(), etag), etag, bytes);
+                        store(key, cached, startGeneration);
+                        getHeaders().remove(HttpHeaders.PRAGMA);
+                        getHeaders().remove(HttpHeaders.EXPIRES);
+                        getHeaders().putAll(cached.headers());
+                        if (isNotModified(request, cached.etag())) {
+                            return notModified(getDelegate(), bytes.length);
+                        }
+                        return super.writeWith(Mono.just(bufferFactory().wrap(bytes)));
+                    });
+        }
+
+        @Override
+        public Mono<Void> writeAndFlushWith(Publisher<? extends Publisher<? extends DataBuffer>> body) {
+            return writeWith(Flux.from(body).flatMapSequential(part -> part));
+        }
+
+        private static HttpHeaders cacheableHeaders(HttpHeaders responseHeaders, String etag) {
+            HttpHeaders headers = new HttpHeaders();
+            responseHeaders.forEach((name, values) -> {
+                String lowerCaseName = name.toLowerCase(Locale.ROOT);
+                if (!UNCACHED_HEADERS.contains(lowerCaseName) && !lowerCaseName.startsWith("access-control-")) {
+                    headers.put(name, List.copyOf(values));
+                }
+            });
+            headers.setETag(etag);
+            headers.setCacheControl(CACHE_CONTROL);
+            return headers;
+        }
+    }
+}
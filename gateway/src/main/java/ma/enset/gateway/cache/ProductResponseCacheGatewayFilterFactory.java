@@ -0,0 +1,23 @@
+package ma.enset.gateway.cache;
+
+import org.springframework.cloud.gateway.filter.GatewayFilter;
+import org.springframework.cloud.gateway.filter.factory.AbstractGatewayFilterFactory;
+
+/**
+ * Route filter {@code ProductResponseCache}: serves product reads from the shared
+ * {@link AuthorizedResponseCache} and clears it on product writes.
+ */
+public class ProductResponseCacheGatewayFilterFactory extends AbstractGatewayFilterFactory<Object> {
+
+    private final AuthorizedResponseCache productResponseCache;
+
+    public ProductResponseCacheGatewayFilterFactory(AuthorizedResponseCache productResponseCache) {
+        super(Object.class);
+        this.productResponseCache = productResponseCache;
+    }
+
+    @Override
+    public GatewayFilter apply(Object config) {
+        return (exchange, chain) -> productResponseCache.filter(exchange, chain::filter);
+    }
+}
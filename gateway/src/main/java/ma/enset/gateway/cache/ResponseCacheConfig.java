@@ -0,0 +1,58 @@
+package ma.enset.gateway.cache;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.util.unit.DataSize;
+
+import java.time.Duration;
+import java.util.function.Predicate;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+@Configuration
+public class ResponseCacheConfig {
+
+    private static final Pattern PRODUCT_PATH = Pattern.compile("/products/(\\d+)(/.*)?");
+
+    /**
+     * Product list pages and single products; stock checks and the NDJSON export always reach
+     * product-service.
+     */
+    @Bean
+    public AuthorizedResponseCache productResponseCache(
+            MeterRegistry meterRegistry,
+            @Value("${gateway.cache.products.max-size:64MB}") DataSize maxSize,
+            @Value("${gateway.cache.products.max-entry-size:512KB}") DataSize maxEntrySize,
+            @Value("${gateway.cache.products.ttl:2s}") Duration ttl) {
+        return new AuthorizedResponseCache("productResponses", Pattern.compile("/products(/\\d+)?"),
+                ResponseCacheConfig::productsStaleAfter, meterRegistry, maxSize.toBytes(), maxEntrySize.toBytes(), ttl);
+    }
+
+    /**
+     * Cached paths a write to {@code path} makes stale. A stock change on one product (e.g.
+     * {@code PUT /products/1/reduce-stock}) only drops that product, and list pages catch up
+     * within the ttl like they do for reservations; an update or delete also drops the list pages,
+     * a creation only them. Writes that may touch any product (import, reservations) drop everything.
+     */
+    static Predicate<String> productsStaleAfter(String path) {
+        Matcher product = PRODUCT_PATH.matcher(path);
+        if (product.matches()) {
+            String productPath = "/products/" + product.group(1);
+            return product.group(2) != null
+                    ? productPath::equals
+                    : cached -> cached.equals(productPath) || cached.equals("/products");
+        }
+        if (path.equals("/products")) {
+            return "/products"::equals;
+        }
+        return cached -> true;
+    }
+
+    @Bean
+    public ProductResponseCacheGatewayFilterFactory productResponseCacheGatewayFilterFactory(
+            AuthorizedResponseCache productResponseCache) {
+        return new ProductResponseCacheGatewayFilterFactory(productResponseCache);
+    }
+}
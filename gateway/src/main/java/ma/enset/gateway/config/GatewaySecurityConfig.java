@@ -39,7 +39,8 @@ public class GatewaySecurityConfig {
 
         config.setAllowedOrigins(List.of("http://localhost:3000"));
         config.setAllowedMethods(List.of("GET", "POST", "PUT", "DELETE", "OPTIONS"));
-        config.setAllowedHeaders(List.of("Authorization", "Content-Type"));
+        config.setAllowedHeaders(List.of("Authorization", "Content-Type", "If-None-Match", "Idempotency-Key"));
+        config.setExposedHeaders(List.of("X-Total-Count", "X-Next-Cursor", "ETag", "Idempotent-Replayed", "Retry-After"));
         config.setAllowCredentials(true);
 
         UrlBasedCorsConfigurationSource source =
@@ -0,0 +1,24 @@
+package ma.enset.gateway.config;
+
+import io.opentelemetry.exporter.logging.LoggingSpanExporter;
+import io.opentelemetry.sdk.trace.export.SpanExporter;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+/**
+ * Span exporters besides OTLP, which Spring Boot configures from {@code management.otlp.tracing.*}.
+ * Every {@link SpanExporter} bean receives the finished spans.
+ */
+@Configuration
+public class TracingConfig {
+
+    /**
+     * Writes each finished span to the application log, for local runs without a collector.
+     */
+    @Bean
+    @ConditionalOnProperty(name = "tracing.exporter.logging.enabled", havingValue = "true")
+    public SpanExporter loggingSpanExporter() {
+        return LoggingSpanExporter.create();
+    }
+}
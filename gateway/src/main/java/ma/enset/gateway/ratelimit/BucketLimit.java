@@ -0,0 +1,19 @@
+package ma.enset.gateway.ratelimit;
+
+/**
+ * Admits {@code replenishRate} requests per second on average, with bursts of up to
+ * {@code burstCapacity} requests after a quiet period.
+ */
+public record BucketLimit(double replenishRate, int burstCapacity) {
+
+    public BucketLimit {
+        if (replenishRate <= 0 || burstCapacity < 1) {
+            throw new IllegalArgumentException("replenishRate must be positive and burstCapacity at least 1");
+        }
+    }
+
+    // time for one token to come back
+    long emissionIntervalNanos() {
+        return Math.max(1, Math.round(1_000_000_000 / replenishRate));
+    }
+}
@@ -0,0 +1,63 @@
+package ma.enset.gateway.ratelimit;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import reactor.core.publisher.Mono;
+
+import java.time.Duration;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.LongSupplier;
+
+/**
+ * In-memory token buckets, one {@link AtomicLong} each.
+ * <p>
+ * A bucket stores the instant at which it will be full again rather than a token count: taking a
+ * token pushes that instant one emission interval further, and is refused when it would move more
+ * than {@code burstCapacity} intervals past now. Refilling is implied by the clock, so a request
+ * is a single compare-and-set with no lock and no timer. Buckets idle for longer than
+ * {@code idleTimeout} are dropped, which is the same as finding them full.
+ */
+public class LocalTokenBucketStore implements TokenBucketStore {
+
+    private final Cache<String, AtomicLong> buckets;
+    private final LongSupplier nanoClock;
+
+    public LocalTokenBucketStore(long maxKeys, Duration idleTimeout) {
+        this(maxKeys, idleTimeout, System::nanoTime);
+    }
+
+    LocalTokenBucketStore(long maxKeys, Duration idleTimeout, LongSupplier nanoClock) {
+        this.buckets = Caffeine.newBuilder()
+                .maximumSize(maxKeys)
+                .expireAfterAccess(idleTimeout)
+                .build();
+        this.nanoClock = nanoClock;
+    }
+
+    @Override
+    public Mono<Duration> tryConsume(String key, BucketLimit limit) {
+        long waitNanos = consume(key, limit);
+        return Mono.just(waitNanos == 0 ? Duration.ZERO : Duration.ofNanos(waitNanos));
+    }
+
+    /**
+     * @return 0 when a token was taken, otherwise the nanoseconds until one is available
+     */
+    long consume(String key, BucketLimit limit) {
+        long interval = limit.emissionIntervalNanos();
+        long capacity = interval * limit.burstCapacity();
+        AtomicLong fullAt = buckets.get(key, k -> new AtomicLong(nanoClock.getAsLong()));
+        while (true) {
+            long now = nanoClock.getAsLong();
+            long current = fullAt.get();
+            long next = Math.max(current, now) + interval;
+            long excess = next - now - capacity;
+            if (excess > 0) {
+                return excess;
+            }
+            if (fullAt.compareAndSet(current, next)) {
+                return 0;
+            }
+        }
+    }
+}
@@ -0,0 +1,28 @@
+package ma.enset.gateway.ratelimit;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import java.time.Duration;
+
+@Configuration
+public class RateLimitConfig {
+
+    /**
+     * Uses the {@link TokenBucketStore} bean when one is declared, backed by a store shared between
+     * instances; otherwise buckets are local to this gateway instance, and with several instances
+     * each one admits the configured rate. Resolved here rather than with a bean condition, which on
+     * a regular configuration class depends on the order the bean definitions are registered in.
+     */
+    @Bean
+    public RateLimitGatewayFilterFactory rateLimitGatewayFilterFactory(
+            ObjectProvider<TokenBucketStore> tokenBucketStore, MeterRegistry meterRegistry,
+            @Value("${gateway.rate-limit.max-keys:100000}") long maxKeys,
+            @Value("${gateway.rate-limit.idle-timeout:10m}") Duration idleTimeout) {
+        return new RateLimitGatewayFilterFactory(
+                tokenBucketStore.getIfAvailable(() -> new LocalTokenBucketStore(maxKeys, idleTimeout)), meterRegistry);
+    }
+}
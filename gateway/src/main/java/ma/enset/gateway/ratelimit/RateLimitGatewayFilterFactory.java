@@ -0,0 +1,96 @@
+package ma.enset.gateway.ratelimit;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.cloud.gateway.filter.GatewayFilter;
+import org.springframework.cloud.gateway.filter.factory.AbstractGatewayFilterFactory;
+import org.springframework.cloud.gateway.route.Route;
+import org.springframework.cloud.gateway.support.ServerWebExchangeUtils;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.server.reactive.ServerHttpResponse;
+import org.springframework.web.server.ServerWebExchange;
+import reactor.core.publisher.Mono;
+
+import java.net.InetSocketAddress;
+import java.security.Principal;
+import java.time.Duration;
+import java.util.List;
+
+/**
+ * Route filter {@code RateLimit}: one token bucket per route and JWT subject, so a client flooding
+ * a route only drains its own bucket. Refused requests get {@code 429 Too Many Requests} with a
+ * {@code Retry-After} in seconds and never reach the backend.
+ */
+public class RateLimitGatewayFilterFactory extends AbstractGatewayFilterFactory<RateLimitGatewayFilterFactory.Config> {
+
+    private final TokenBucketStore tokenBucketStore;
+    private final MeterRegistry meterRegistry;
+
+    public RateLimitGatewayFilterFactory(TokenBucketStore tokenBucketStore, MeterRegistry meterRegistry) {
+        super(Config.class);
+        this.tokenBucketStore = tokenBucketStore;
+        this.meterRegistry = meterRegistry;
+    }
+
+    @Override
+    public List<String> shortcutFieldOrder() {
+        return List.of("replenishRate", "burstCapacity");
+    }
+
+    @Override
+    public GatewayFilter apply(Config config) {
+        BucketLimit limit = new BucketLimit(config.getReplenishRate(), config.getBurstCapacity());
+        return (exchange, chain) -> {
+            Route route = exchange.getAttribute(ServerWebExchangeUtils.GATEWAY_ROUTE_ATTR);
+            String routeId = route != null ? route.getId() : "unknown";
+            return exchange.getPrincipal()
+                    .map(Principal::getName)
+                    .switchIfEmpty(Mono.fromSupplier(() -> clientAddress(exchange)))
+                    .flatMap(subject -> tokenBucketStore.tryConsume(routeId + ':' + subject, limit))
+                    .flatMap(wait -> {
+                        if (wait.isZero()) {
+                            meterRegistry.counter("gateway.ratelimit.requests", "route", routeId, "result", "allowed").increment();
+                            return chain.filter(exchange);
+                        }
+                        meterRegistry.counter("gateway.ratelimit.requests", "route", routeId, "result", "rejected").increment();
+                        return tooManyRequests(exchange.getResponse(), wait);
+                    });
+        };
+    }
+
+    private static Mono<Void> tooManyRequests(ServerHttpResponse response, Duration wait) {
+        response.setStatusCode(HttpStatus.TOO_MANY_REQUESTS);
+        // whole seconds, rounded up so a client honouring it finds a token
+        long seconds = Math.max(1, (wait.toMillis() + 999) / 1000);
+        response.getHeaders().set(HttpHeaders.RETRY_AFTER, String.valueOf(seconds));
+        return response.setComplete();
+    }
+
+    // Routes behind authentication always have a subject; this only covers permitted routes
+    private static String clientAddress(ServerWebExchange exchange) {
+        InetSocketAddress remoteAddress = exchange.getRequest().getRemoteAddress();
+        return remoteAddress != null ? remoteAddress.getAddress().getHostAddress() : "unknown";
+    }
+
+    public static class Config {
+
+        private double replenishRate = 10;
+        private int burstCapacity = 20;
+
+        public double getReplenishRate() {
+            return replenishRate;
+        }
+
+        public void setReplenishRate(double replenishRate) {
+            this.replenishRate = replenishRate;
+        }
+
+        public int getBurstCapacity() {
+            return burstCapacity;
+        }
+
+        public void setBurstCapacity(int burstCapacity) {
+            this.burstCapacity = burstCapacity;
+        }
+    }
+}
@@ -0,0 +1,20 @@
+package ma.enset.gateway.ratelimit;
+
+import reactor.core.publisher.Mono;
+
+import java.time.Duration;
+
+/**
+ * Holds the token buckets of {@link RateLimitGatewayFilterFactory}. The default
+ * {@link LocalTokenBucketStore} keeps them in this gateway instance; declaring another
+ * implementation as a bean, backed by a store shared between instances, replaces it.
+ */
+public interface TokenBucketStore {
+
+    /**
+     * Takes one token from the bucket identified by {@code key}.
+     *
+     * @return {@link Duration#ZERO} when a token was taken, otherwise how long until one is available
+     */
+    Mono<Duration> tryConsume(String key, BucketLimit limit);
+}
@@ -0,0 +1,113 @@
+package ma.enset.gateway.security;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.Expiry;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import org.springframework.security.oauth2.jwt.Jwt;
+import org.springframework.security.oauth2.jwt.JwtException;
+import org.springframework.security.oauth2.jwt.ReactiveJwtDecoder;
+import reactor.core.publisher.Mono;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Clock;
+import java.time.Duration;
+import java.util.Base64;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * {@link ReactiveJwtDecoder} that remembers tokens it has already verified.
+ * <p>
+ * Entries are keyed by the SHA-256 of the raw token, so a hit is only possible for the exact same
+ * signed token, and they expire with the token's {@code exp} claim. Tokens that fail validation are
+ * never cached.
+ */
+public class CachingReactiveJwtDecoder implements ReactiveJwtDecoder {
+
+    private final ReactiveJwtDecoder delegate;
+    private final Clock clock;
+    private final Cache<String, Jwt> verifiedTokens;
+    private final Timer hitTimer;
+    private final Timer missTimer;
+    private final Timer invalidTimer;
+
+    public CachingReactiveJwtDecoder(ReactiveJwtDecoder delegate, MeterRegistry meterRegistry, long maxSize, Duration maxTtl) {
+        this(delegate, meterRegistry, maxSize, maxTtl, Clock.systemUTC());
+    }
+
+    CachingReactiveJwtDecoder(ReactiveJwtDecoder delegate, MeterRegistry meterRegistry, long maxSize, Duration maxTtl, Clock clock) {
+        this.delegate = delegate;
+        this.clock = clock;
+        this.verifiedTokens = Caffeine.newBuilder()
+                .maximumSize(maxSize)
+                .expireAfter(new TokenExpiry(clock, maxTtl))
+                .recordStats()
+                .build();
+        this.hitTimer = validationTimer(meterRegistry, "hit");
+        this.missTimer = validationTimer(meterRegistry, "miss");
+        this.invalidTimer = validationTimer(meterRegistry, "invalid");
+        CaffeineCacheMetrics.monitor(meterRegistry, verifiedTokens, "verifiedJwts");
+    }
+
+    @Override
+    public Mono<Jwt> decode(String token) throws JwtException {
+        long start = System.nanoTime();
+        String key = sha256(token);
+        Jwt cached = verifiedTokens.getIfPresent(key);
+        if (cached != null && clock.instant().isBefore(cached.getExpiresAt())) {
+            hitTimer.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+            return Mono.just(cached);
+        }
+        return delegate.decode(token)
+                .doOnNext(jwt -> {
+                    if (jwt.getExpiresAt() != null) {
+                        verifiedTokens.put(key, jwt);
+                    }
+                    missTimer.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+                })
+                .doOnError(JwtException.class, e -> invalidTimer.record(System.nanoTime() - start, TimeUnit.NANOSECONDS));
+    }
+
+    private static Timer validationTimer(MeterRegistry meterRegistry, String result) {
+        return Timer.builder("security.jwt.validation")
+                .description("Time spent validating bearer tokens")
+                .tag("result", result)
+                .register(meterRegistry);
+    }
+
+    private static String sha256(String token) {
+        try {
+            byte[] digest = MessageDigest.getInstance("SHA-256").digest(token.getBytes(StandardCharsets.US_ASCII));
+            return Base64.getEncoder().encodeToString(digest);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 is not available", e);
+        }
+    }
+
+    // Keeps each token until its exp claim, capped by maxTtl
+    private record TokenExpiry(Clock clock, Duration maxTtl) implements Expiry<String, Jwt> {
+
+        @Override
+        public long expireAfterCreate(String key, Jwt jwt, long currentTime) {
+            Duration untilExpiry = Duration.between(clock.instant(), jwt.getExpiresAt());
+            if (untilExpiry.isNegative()) {
+                return 0;
+            }
+            return untilExpiry.compareTo(maxTtl) < 0 ? untilExpiry.toNanos() : maxTtl.toNanos();
+        }
+
+        @Override
+        public long expireAfterUpdate(String key, Jwt jwt, long currentTime, long currentDuration) {
+            return expireAfterCreate(key, jwt, currentTime);
+        }
+
+        @Override
+        public long expireAfterRead(String key, Jwt jwt, long currentTime, long currentDuration) {
+            return currentDuration;
+        }
+    }
+}
@@ -0,0 +1,76 @@
+package ma.enset.gateway.security;
+
+import com.nimbusds.jose.KeySourceException;
+import com.nimbusds.jose.jwk.JWKMatcher;
+import com.nimbusds.jose.jwk.JWKSelector;
+import com.nimbusds.jose.jwk.source.JWKSource;
+import com.nimbusds.jose.jwk.source.JWKSourceBuilder;
+import com.nimbusds.jose.proc.SecurityContext;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.security.oauth2.jwt.JwtValidators;
+import org.springframework.security.oauth2.jwt.NimbusReactiveJwtDecoder;
+import org.springframework.security.oauth2.jwt.ReactiveJwtDecoder;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Schedulers;
+
+import java.net.MalformedURLException;
+import java.net.URI;
+import java.time.Duration;
+
+@Configuration
+public class JwtDecoderConfig {
+
+    private static final Logger logger = LoggerFactory.getLogger(JwtDecoderConfig.class);
+
+    @Value("${spring.security.oauth2.resourceserver.jwt.jwk-set-uri}")
+    private String jwkSetUri;
+
+    @Value("${spring.security.oauth2.resourceserver.jwt.issuer-uri}")
+    private String issuerUri;
+
+    /**
+     * JWK set cached in memory and refreshed by a background task before it expires,
+     * so the event loop only ever reads the cached keys.
+     */
+    @Bean
+    public JWKSource<SecurityContext> jwkSource(
+            @Value("${security.jwt.jwk-set.ttl:15m}") Duration ttl,
+            @Value("${security.jwt.jwk-set.refresh-ahead:1m}") Duration refreshAhead,
+            @Value("${security.jwt.jwk-set.refresh-timeout:5s}") Duration refreshTimeout) throws MalformedURLException {
+        JWKSource<SecurityContext> jwkSource = JWKSourceBuilder.<SecurityContext>create(URI.create(jwkSetUri).toURL())
+                .cache(ttl.toMillis(), refreshTimeout.toMillis())
+                .refreshAheadCache(refreshAhead.toMillis(), true)
+                .build();
+        Mono.fromRunnable(() -> prefetch(jwkSource)).subscribeOn(Schedulers.boundedElastic()).subscribe();
+        return jwkSource;
+    }
+
+    @Bean
+    public ReactiveJwtDecoder reactiveJwtDecoder(JWKSource<SecurityContext> jwkSource, MeterRegistry meterRegistry,
+                                                 @Value("${security.jwt.cache.max-size:10000}") long maxSize,
+                                                 @Value("${security.jwt.cache.max-ttl:10m}") Duration maxTtl) {
+        // a key lookup only blocks when an unknown key id forces a refresh, so it is kept off the event loop
+        NimbusReactiveJwtDecoder nimbusJwtDecoder = NimbusReactiveJwtDecoder
+                .withJwkSource(signedJwt -> Mono.fromCallable(() -> jwkSource.get(new JWKSelector(JWKMatcher.forJWSHeader(signedJwt.getHeader())), null))
+                        .subscribeOn(Schedulers.boundedElastic())
+                        .flatMapMany(Flux::fromIterable))
+                .build();
+        nimbusJwtDecoder.setJwtValidator(JwtValidators.createDefaultWithIssuer(issuerUri));
+        return new CachingReactiveJwtDecoder(nimbusJwtDecoder, meterRegistry, maxSize, maxTtl);
+    }
+
+    private void prefetch(JWKSource<SecurityContext> jwkSource) {
+        try {
+            int keys = jwkSource.get(new JWKSelector(new JWKMatcher.Builder().build()), null).size();
+            logger.info("Prefetched {} signing keys from {}", keys, jwkSetUri);
+        } catch (KeySourceException e) {
+            logger.warn("Could not prefetch JWK set from {}, it will be loaded on first use: {}", jwkSetUri, e.getMessage());
+        }
+    }
+}
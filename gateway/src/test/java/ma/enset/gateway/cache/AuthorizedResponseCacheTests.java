@@ -0,0 +1,149 @@
+package ma.enset.gateway.cache;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.mock.http.server.reactive.MockServerHttpRequest;
+import org.springframework.mock.web.server.MockServerWebExchange;
+import org.springframework.security.oauth2.jwt.Jwt;
+import org.springframework.security.oauth2.server.resource.authentication.JwtAuthenticationToken;
+import org.springframework.web.server.ServerWebExchange;
+import org.springframework.web.server.WebFilterChain;
+import reactor.core.publisher.Mono;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.regex.Pattern;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class AuthorizedResponseCacheTests {
+
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private final AuthorizedResponseCache cache = new AuthorizedResponseCache("productResponses",
+            Pattern.compile("/products(/\\d+)?"), ResponseCacheConfig::productsStaleAfter, meterRegistry,
+            1024 * 1024, 1024, Duration.ofMinutes(1));
+    private final AtomicInteger backendCalls = new AtomicInteger();
+
+    @Test
+    void servesRepeatedReadsFromTheCacheWithAnETag() {
+        MockServerWebExchange first = get("/products/1");
+        send(first, "alice", "CLIENT", backend("{\"id\":1}"));
+        MockServerWebExchange second = get("/products/1");
+        send(second, "bob", "CLIENT", backend("{\"id\":1}"));
+
+        assertThat(backendCalls).hasValue(1);
+        assertThat(second.getResponse().getStatusCode()).isEqualTo(HttpStatus.OK);
+        assertThat(second.getResponse().getBodyAsString().block()).isEqualTo("{\"id\":1}");
+        assertThat(second.getResponse().getHeaders().getETag()).isEqualTo(first.getResponse().getHeaders().getETag()).isNotNull();
+        assertThat(second.getResponse().getHeaders().getFirst("X-Next-Cursor")).isEqualTo("1");
+        assertThat(first.getResponse().getHeaders().getCacheControl()).isEqualTo("private, no-cache");
+        assertThat(meterRegistry.get("gateway.response.cache.bytes.saved").tag("leg", "upstream").counter().count()).isEqualTo(8);
+    }
+
+    @Test
+    void answersNotModifiedWhenTheClientHasTheBody() {
+        MockServerWebExchange first = get("/products");
+        send(first, "alice", "CLIENT", backend("[]"));
+        String etag = first.getResponse().getHeaders().getETag();
+
+        MockServerWebExchange revalidation = MockServerWebExchange.from(MockServerHttpRequest.get("/products").ifNoneMatch(etag));
+        send(revalidation, "alice", "CLIENT", backend("[]"));
+
+        assertThat(revalidation.getResponse().getStatusCode()).isEqualTo(HttpStatus.NOT_MODIFIED);
+        assertThat(revalidation.getResponse().getBodyAsString().block()).isEmpty();
+        assertThat(backendCalls).hasValue(1);
+    }
+
+    @Test
+    void keysEntriesByRoles() {
+        send(get("/products/1"), "alice", "CLIENT", backend("{\"id\":1}"));
+        send(get("/products/1"), "root", "ADMIN", backend("{\"id\":1}"));
+
+        assertThat(backendCalls).hasValue(2);
+    }
+
+    @Test
+    void updatesDropTheProductAndTheListPages() {
+        send(get("/products/1"), "alice", "CLIENT", backend("{\"id\":1}"));
+        send(get("/products/2"), "alice", "CLIENT", backend("{\"id\":2}"));
+        send(get("/products"), "alice", "CLIENT", backend("[]"));
+        send(write(MockServerHttpRequest.put("/products/1")), "root", "ADMIN", backend("{\"id\":1}"));
+        send(get("/products/1"), "alice", "CLIENT", backend("{\"id\":1}"));
+        send(get("/products/2"), "alice", "CLIENT", backend("{\"id\":2}"));
+        send(get("/products"), "alice", "CLIENT", backend("[]"));
+
+        assertThat(backendCalls).hasValue(6);
+    }
+
+    @Test
+    void stockChangesOnlyDropTheirProduct() {
+        send(get("/products/1"), "alice", "CLIENT", backend("{\"id\":1}"));
+        send(get("/products/2"), "alice", "CLIENT", backend("{\"id\":2}"));
+        send(get("/products"), "alice", "CLIENT", backend("[]"));
+        send(write(MockServerHttpRequest.put("/products/1/reduce-stock?quantity=1")), "alice", "CLIENT", backend(""));
+        send(get("/products/1"), "alice", "CLIENT", backend("{\"id\":1}"));
+        send(get("/products/2"), "alice", "CLIENT", backend("{\"id\":2}"));
+        send(get("/products"), "alice", "CLIENT", backend("[]"));
+
+        assertThat(backendCalls).hasValue(5);
+    }
+
+    @Test
+    void importsClearTheCache() {
+        send(get("/products/1"), "alice", "CLIENT", backend("{\"id\":1}"));
+        send(write(MockServerHttpRequest.post("/products/import")), "root", "ADMIN", backend("{}"));
+        send(get("/products/1"), "alice", "CLIENT", backend("{\"id\":1}"));
+
+        assertThat(backendCalls).hasValue(3);
+    }
+
+    @Test
+    void doesNotCacheErrorsOrOtherPaths() {
+        send(get("/products/1/stock"), "alice", "CLIENT", backend("true"));
+        send(get("/products/1/stock"), "alice", "CLIENT", backend("true"));
+        WebFilterChain notFound = exchange -> {
+            backendCalls.incrementAndGet();
+            exchange.getResponse().setStatusCode(HttpStatus.NOT_FOUND);
+            return exchange.getResponse().setComplete();
+        };
+        send(get("/products/2"), "alice", "CLIENT", notFound);
+        send(get("/products/2"), "alice", "CLIENT", notFound);
+
+        assertThat(backendCalls).hasValue(4);
+    }
+
+    private WebFilterChain backend(String body) {
+        return exchange -> {
+            backendCalls.incrementAndGet();
+            exchange.getResponse().setStatusCode(HttpStatus.OK);
+            exchange.getResponse().getHeaders().setContentType(MediaType.APPLICATION_JSON);
+            exchange.getResponse().getHeaders().setCacheControl("no-cache, no-store, max-age=0, must-revalidate");
+            exchange.getResponse().getHeaders().set("X-Next-Cursor", "1");
+            byte[] bytes = body.getBytes(StandardCharsets.UTF_8);
+            return exchange.getResponse().writeWith(Mono.just(exchange.getResponse().bufferFactory().wrap(bytes)));
+        };
+    }
+
+    private void send(MockServerWebExchange exchange, String user, String role, WebFilterChain backend) {
+        Jwt jwt = Jwt.withTokenValue("token-" + user)
+                .header("alg", "none")
+                .subject(user)
+                .claim("realm_access", Map.of("roles", List.of(role)))
+                .build();
+        ServerWebExchange authenticated = exchange.mutate().principal(Mono.just(new JwtAuthenticationToken(jwt))).build();
+        cache.filter(authenticated, backend).block();
+    }
+
+    private static MockServerWebExchange write(MockServerHttpRequest.BodyBuilder request) {
+        return MockServerWebExchange.from(request.build());
+    }
+
+    private static MockServerWebExchange get(String path) {
+        return MockServerWebExchange.from(MockServerHttpRequest.get(path));
+    }
+}
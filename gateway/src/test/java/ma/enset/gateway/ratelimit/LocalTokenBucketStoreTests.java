@@ -0,0 +1,164 @@
+package ma.enset.gateway.ratelimit;
+
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class LocalTokenBucketStoreTests {
+
+    private static final BucketLimit TEN_PER_SECOND = new BucketLimit(10, 20);
+
+    private final AtomicLong now = new AtomicLong();
+    private final LocalTokenBucketStore store = new LocalTokenBucketStore(1000, Duration.ofMinutes(10), now::get);
+
+    @Test
+    void admitsABurstThenTheReplenishRate() {
+        for (int i = 0; i < 20; i++) {
+            assertThat(store.consume("orders:alice", TEN_PER_SECOND)).isZero();
+        }
+        assertThat(store.consume("orders:alice", TEN_PER_SECOND)).isEqualTo(TimeUnit.MILLISECONDS.toNanos(100));
+
+        now.addAndGet(TimeUnit.MILLISECONDS.toNanos(100));
+        assertThat(store.consume("orders:alice", TEN_PER_SECOND)).isZero();
+        assertThat(store.consume("orders:alice", TEN_PER_SECOND)).isPositive();
+    }
+
+    @Test
+    void refillsUpToTheBurstCapacityOnly() {
+        store.consume("orders:alice", TEN_PER_SECOND);
+        now.addAndGet(TimeUnit.MINUTES.toNanos(5));
+
+        int admitted = 0;
+        while (store.consume("orders:alice", TEN_PER_SECOND) == 0) {
+            admitted++;
+        }
+        assertThat(admitted).isEqualTo(20);
+    }
+
+    @Test
+    void bucketsAreIndependentPerKey() {
+        for (int i = 0; i < 20; i++) {
+            store.consume("orders:alice", TEN_PER_SECOND);
+        }
+
+        assertThat(store.consume("orders:alice", TEN_PER_SECOND)).isPositive();
+        assertThat(store.consume("orders:bob", TEN_PER_SECOND)).isZero();
+        assertThat(store.consume("products:alice", TEN_PER_SECOND)).isZero();
+    }
+
+    @Test
+    void concurrentCallersNeverExceedTheBurst() throws InterruptedException {
+        LongAdder admitted = new LongAdder();
+        runConcurrently(16, () -> {
+            for (int i = 0; i < 1000; i++) {
+                if (store.consume("orders:alice", TEN_PER_SECOND) == 0) {
+                    admitted.increment();
+                }
+            }
+        });
+
+        // the fake clock does not move, so exactly the burst gets through
+        assertThat(admitted.sum()).isEqualTo(20);
+    }
+
+    /**
+     * Load test on the real clock: one client floods from 8 threads while 4 others send below the
+     * limit. The flooder is held to burst + rate x duration and the others are all admitted.
+     */
+    @Test
+    void floodingClientDoesNotStarveOthers() throws InterruptedException {
+        LocalTokenBucketStore realStore = new LocalTokenBucketStore(1000, Duration.ofMinutes(10));
+        BucketLimit limit = new BucketLimit(50, 10);
+        long durationNanos = TimeUnit.SECONDS.toNanos(1);
+        long start = System.nanoTime();
+        LongAdder flooderAdmitted = new LongAdder();
+        LongAdder flooderRejected = new LongAdder();
+        List<LongAdder> politeAdmitted = new ArrayList<>();
+        List<LongAdder> politeSent = new ArrayList<>();
+        List<Runnable> clients = new ArrayList<>();
+        for (int i = 0; i < 8; i++) {
+            clients.add(() -> {
+                while (System.nanoTime() - start < durationNanos) {
+                    if (realStore.consume("orders:flooder", limit) == 0) {
+                        flooderAdmitted.increment();
+                    } else {
+                        flooderRejected.increment();
+                    }
+                }
+            });
+        }
+        for (int i = 0; i < 4; i++) {
+            String key = "orders:user-" + i;
+            LongAdder admitted = new LongAdder();
+            LongAdder sent = new LongAdder();
+            politeAdmitted.add(admitted);
+            politeSent.add(sent);
+            // 25 requests per second, half the limit
+            clients.add(() -> {
+                while (System.nanoTime() - start < durationNanos) {
+                    sent.increment();
+                    if (realStore.consume(key, limit) == 0) {
+                        admitted.increment();
+                    }
+                    sleep(40);
+                }
+            });
+        }
+
+        runConcurrently(clients);
+
+        double elapsedSeconds = (System.nanoTime() - start) / 1e9;
+        assertThat(flooderRejected.sum()).isPositive();
+        assertThat(flooderAdmitted.sum()).isLessThanOrEqualTo(10 + Math.round(50 * elapsedSeconds) + 1);
+        for (int i = 0; i < politeSent.size(); i++) {
+            assertThat(politeAdmitted.get(i).sum()).isEqualTo(politeSent.get(i).sum());
+        }
+    }
+
+    private static void runConcurrently(int threads, Runnable task) throws InterruptedException {
+        List<Runnable> tasks = new ArrayList<>();
+        for (int i = 0; i < threads; i++) {
+            tasks.add(task);
+        }
+        runConcurrently(tasks);
+    }
+
+    private static void runConcurrently(List<Runnable> tasks) throws InterruptedException {
+        CountDownLatch ready = new CountDownLatch(tasks.size());
+        CountDownLatch go = new CountDownLatch(1);
+        try (ExecutorService executor = Executors.newFixedThreadPool(tasks.size())) {
+            for (Runnable task : tasks) {
+                executor.execute(() -> {
+                    ready.countDown();
+                    try {
+                        go.await();
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                        return;
+                    }
+                    task.run();
+                });
+            }
+            ready.await();
+            go.countDown();
+        }
+    }
+
+    private static void sleep(long millis) {
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -0,0 +1,118 @@
+package ma.enset.gateway.ratelimit;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.springframework.cloud.gateway.filter.GatewayFilter;
+import org.springframework.cloud.gateway.filter.GatewayFilterChain;
+import org.springframework.cloud.gateway.route.Route;
+import org.springframework.cloud.gateway.support.ServerWebExchangeUtils;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.mock.http.server.reactive.MockServerHttpRequest;
+import org.springframework.mock.web.server.MockServerWebExchange;
+import org.springframework.security.oauth2.jwt.Jwt;
+import org.springframework.security.oauth2.server.resource.authentication.JwtAuthenticationToken;
+import org.springframework.web.server.ServerWebExchange;
+import reactor.core.publisher.Mono;
+
+import java.net.InetSocketAddress;
+import java.time.Duration;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class RateLimitGatewayFilterFactoryTests {
+
+    private static final Route ORDERS = Route.async()
+            .id("order-service")
+            .uri("http://order-service")
+            .predicate(exchange -> true)
+            .build();
+
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    // the clock never moves, so a drained bucket stays drained
+    private final GatewayFilter filter = new RateLimitGatewayFilterFactory(
+            new LocalTokenBucketStore(1000, Duration.ofMinutes(10), () -> 0), meterRegistry).apply(config(0.4, 2));
+    private final AtomicInteger backendCalls = new AtomicInteger();
+    private final GatewayFilterChain backend = exchange -> {
+        backendCalls.incrementAndGet();
+        return Mono.empty();
+    };
+
+    @Test
+    void refusesRequestsOverTheBurstWithRetryAfter() {
+        send(authenticated("alice", "10.0.0.1"));
+        send(authenticated("alice", "10.0.0.1"));
+        MockServerWebExchange refused = authenticated("alice", "10.0.0.1");
+        send(refused);
+
+        assertThat(backendCalls).hasValue(2);
+        assertThat(refused.getResponse().getStatusCode()).isEqualTo(HttpStatus.TOO_MANY_REQUESTS);
+        // 2.5 s until the next token, rounded up to whole seconds
+        assertThat(refused.getResponse().getHeaders().getFirst(HttpHeaders.RETRY_AFTER)).isEqualTo("3");
+        assertThat(meterRegistry.get("gateway.ratelimit.requests")
+                .tags("route", "order-service", "result", "rejected").counter().count()).isEqualTo(1);
+    }
+
+    @Test
+    void keysAuthenticatedRequestsByJwtSubject() {
+        send(authenticated("alice", "10.0.0.1"));
+        send(authenticated("alice", "10.0.0.1"));
+        // same subject from another address: same bucket
+        MockServerWebExchange aliceElsewhere = authenticated("alice", "10.0.0.2");
+        send(aliceElsewhere);
+        // another subject from the same address: its own bucket
+        MockServerWebExchange bob = authenticated("bob", "10.0.0.1");
+        send(bob);
+
+        assertThat(aliceElsewhere.getResponse().getStatusCode()).isEqualTo(HttpStatus.TOO_MANY_REQUESTS);
+        assertThat(bob.getResponse().getStatusCode()).isNotEqualTo(HttpStatus.TOO_MANY_REQUESTS);
+        assertThat(backendCalls).hasValue(3);
+    }
+
+    @Test
+    void keysAnonymousRequestsByClientAddress() {
+        send(anonymous("10.0.0.1"));
+        send(anonymous("10.0.0.1"));
+        MockServerWebExchange sameAddress = anonymous("10.0.0.1");
+        send(sameAddress);
+        MockServerWebExchange otherAddress = anonymous("10.0.0.2");
+        send(otherAddress);
+
+        assertThat(sameAddress.getResponse().getStatusCode()).isEqualTo(HttpStatus.TOO_MANY_REQUESTS);
+        assertThat(otherAddress.getResponse().getStatusCode()).isNotEqualTo(HttpStatus.TOO_MANY_REQUESTS);
+        assertThat(backendCalls).hasValue(3);
+    }
+
+    private void send(ServerWebExchange exchange) {
+        exchange.getAttributes().put(ServerWebExchangeUtils.GATEWAY_ROUTE_ATTR, ORDERS);
+        filter.filter(exchange, backend).block();
+    }
+
+    private static MockServerWebExchange authenticated(String subject, String address) {
+        Jwt jwt = Jwt.withTokenValue("token-" + subject)
+                .header("alg", "none")
+                .subject(subject)
+                .build();
+        return MockServerWebExchange.builder(request(address))
+                .principal(new JwtAuthenticationToken(jwt))
+                .build();
+    }
+
+    private static MockServerWebExchange anonymous(String address) {
+        return MockServerWebExchange.from(request(address));
+    }
+
+    private static MockServerHttpRequest request(String address) {
+        return MockServerHttpRequest.get("/orders")
+                .remoteAddress(new InetSocketAddress(address, 40000))
+                .build();
+    }
+
+    private static RateLimitGatewayFilterFactory.Config config(double replenishRate, int burstCapacity) {
+        RateLimitGatewayFilterFactory.Config config = new RateLimitGatewayFilterFactory.Config();
+        config.setReplenishRate(replenishRate);
+        config.setBurstCapacity(burstCapacity);
+        return config;
+    }
+}
@@ -0,0 +1,44 @@
+package ma.enset.orderservice.config;
+
+import java.util.function.Supplier;
+
+/**
+ * Sends the reads of the current thread to the primary even inside read-only transactions, for
+ * reads that must see the latest committed writes. Without replicas every read goes to the
+ * primary anyway and this has no effect.
+ */
+public final class PrimaryReads implements AutoCloseable {
+
+    private static final ThreadLocal<Integer> depth = ThreadLocal.withInitial(() -> 0);
+
+    private PrimaryReads() {
+    }
+
+    /**
+     * Reads from the primary until the returned scope is closed; scopes may be nested.
+     */
+    public static PrimaryReads open() {
+        depth.set(depth.get() + 1);
+        return new PrimaryReads();
+    }
+
+    public static <T> T call(Supplier<T> reads) {
+        try (PrimaryReads ignored = open()) {
+            return reads.get();
+        }
+    }
+
+    static boolean required() {
+        return depth.get() > 0;
+    }
+
+    @Override
+    public void close() {
+        int remaining = depth.get() - 1;
+        if (remaining == 0) {
+            depth.remove();
+        } else {
+            depth.set(remaining);
+        }
+    }
+}
@@ -0,0 +1,118 @@
+package ma.enset.orderservice.config;
+
+import io.github.resilience4j.bulkhead.Bulkhead;
+import io.github.resilience4j.circuitbreaker.CircuitBreaker;
+import io.github.resilience4j.core.IntervalFunction;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.HttpRequest;
+import org.springframework.http.client.ClientHttpRequestExecution;
+import org.springframework.http.client.ClientHttpRequestInterceptor;
+import org.springframework.http.client.ClientHttpResponse;
+import org.springframework.web.client.HttpServerErrorException;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Guards every call to product-service with a bulkhead and a circuit breaker. Idempotent
+ * requests (the stock checks) are also retried on I/O errors and 5xx responses, with jittered
+ * exponential backoff and only while the {@link RetryBudget} allows it.
+ * <p>
+ * 4xx responses are business rejections and count as successes for the circuit breaker.
+ */
+class ProductServiceResilienceInterceptor implements ClientHttpRequestInterceptor {
+
+    private static final Logger logger = LoggerFactory.getLogger(ProductServiceResilienceInterceptor.class);
+
+    private final CircuitBreaker circuitBreaker;
+    private final Bulkhead bulkhead;
+    private final RetryBudget retryBudget;
+    private final int maxAttempts;
+    private final IntervalFunction backoff;
+    private final Counter retries;
+    private final Counter retriesDenied;
+
+    ProductServiceResilienceInterceptor(CircuitBreaker circuitBreaker, Bulkhead bulkhead, RetryBudget retryBudget,
+                                        int maxAttempts, IntervalFunction backoff, MeterRegistry meterRegistry) {
+        this.circuitBreaker = circuitBreaker;
+        this.bulkhead = bulkhead;
+        this.retryBudget = retryBudget;
+        this.maxAttempts = maxAttempts;
+        this.backoff = backoff;
+        this.retries = meterRegistry.counter("product.service.retries", "result", "retried");
+        this.retriesDenied = meterRegistry.counter("product.service.retries", "result", "budget_exhausted");
+        meterRegistry.gauge("product.service.retry.budget", retryBudget, RetryBudget::tokens);
+    }
+
+    @Override
+    public ClientHttpResponse intercept(HttpRequest request, byte[] body, ClientHttpRequestExecution execution) throws IOException {
+        retryBudget.deposit();
+        boolean idempotent = request.getMethod() == HttpMethod.GET;
+        for (int attempt = 1; ; attempt++) {
+            try {
+                ClientHttpResponse response = guarded(request, body, execution);
+                if (!idempotent || !response.getStatusCode().is5xxServerError() || !mayRetry(request, attempt)) {
+                    return response;
+                }
+                response.close();
+            } catch (IOException e) {
+                if (!idempotent || !mayRetry(request, attempt)) {
+                    throw e;
+                }
+            }
+            pause(attempt);
+        }
+    }
+
+    private ClientHttpResponse guarded(HttpRequest request, byte[] body, ClientHttpRequestExecution execution) throws IOException {
+        bulkhead.acquirePermission();
+        try {
+            circuitBreaker.acquirePermission();
+            long start = circuitBreaker.getCurrentTimestamp();
+            try {
+                ClientHttpResponse response = execution.execute(request, body);
+                long duration = circuitBreaker.getCurrentTimestamp() - start;
+                if (response.getStatusCode().is5xxServerError()) {
+                    circuitBreaker.onError(duration, circuitBreaker.getTimestampUnit(),
+                            new HttpServerErrorException(response.getStatusCode()));
+                } else {
+                    circuitBreaker.onSuccess(duration, circuitBreaker.getTimestampUnit());
+                }
+                return response;
+            } catch (IOException | RuntimeException e) {
+                circuitBreaker.onError(circuitBreaker.getCurrentTimestamp() - start, circuitBreaker.getTimestampUnit(), e);
+                throw e;
+            }
+        } finally {
+            bulkhead.onComplete();
+        }
+    }
+
+    private boolean mayRetry(HttpRequest request, int attempt) {
+        if (attempt >= maxAttempts) {
+            return false;
+        }
+        if (!retryBudget.tryWithdraw()) {
+            logger.warn("Retry budget exhausted, not retrying {} {}", request.getMethod(), request.getURI().getPath());
+            retriesDenied.increment();
+            return false;
+        }
+        logger.debug("Retrying {} {} (attempt {})", request.getMethod(), request.getURI().getPath(), attempt + 1);
+        retries.increment();
+        return true;
+    }
+
+    private void pause(int attempt) throws InterruptedIOException {
+        try {
+            TimeUnit.MILLISECONDS.sleep(backoff.apply(attempt));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while backing off");
+        }
+    }
+}
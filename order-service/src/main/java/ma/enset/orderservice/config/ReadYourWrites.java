@@ -0,0 +1,37 @@
+package ma.enset.orderservice.config;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+
+/**
+ * Users who created an order within the last {@code window}. Their requests read from the primary
+ * (see {@link ReadYourWritesFilter}), so the order they just placed shows up in their order list
+ * even while the replicas are still catching up.
+ */
+@Component
+public class ReadYourWrites {
+
+    private final Cache<String, Boolean> recentWriters;
+
+    public ReadYourWrites(@Value("${datasource.replicas.read-your-writes-window:5s}") Duration window) {
+        this.recentWriters = Caffeine.newBuilder()
+                .expireAfterWrite(window)
+                .maximumSize(100_000)
+                .build();
+    }
+
+    /**
+     * Called once the user's write is committed.
+     */
+    public void recordWrite(String userId) {
+        recentWriters.put(userId, Boolean.TRUE);
+    }
+
+    public boolean wroteRecently(String userId) {
+        return recentWriters.getIfPresent(userId) != null;
+    }
+}
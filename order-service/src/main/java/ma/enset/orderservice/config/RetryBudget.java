@@ -0,0 +1,42 @@
+package ma.enset.orderservice.config;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Token bucket that bounds retries to a fraction of the calls made: every call deposits
+ * {@code ratio} of a token and every retry withdraws a whole one. When product-service is down,
+ * retries therefore add at most {@code ratio} extra load instead of multiplying it.
+ */
+class RetryBudget {
+
+    private static final long SCALE = 1000;
+
+    private final long deposit;
+    private final long capacity;
+    private final AtomicLong balance;
+
+    RetryBudget(double ratio, int maxTokens) {
+        this.deposit = Math.round(ratio * SCALE);
+        this.capacity = maxTokens * SCALE;
+        this.balance = new AtomicLong(capacity);
+    }
+
+    void deposit() {
+        balance.accumulateAndGet(deposit, (current, amount) -> Math.min(capacity, current + amount));
+    }
+
+    boolean tryWithdraw() {
+        long current;
+        do {
+            current = balance.get();
+            if (current < SCALE) {
+                return false;
+            }
+        } while (!balance.compareAndSet(current, current - SCALE));
+        return true;
+    }
+
+    double tokens() {
+        return (double) balance.get() / SCALE;
+    }
+}
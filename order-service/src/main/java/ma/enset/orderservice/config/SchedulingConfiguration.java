@@ -0,0 +1,12 @@
+package ma.enset.orderservice.config;
+
+import org.springframework.context.annotation.Configuration;
+import org.springframework.scheduling.annotation.EnableScheduling;
+
+/**
+ * Background jobs: the async order dispatcher, the purge of expired idempotency keys and replica health checks.
+ */
+@Configuration
+@EnableScheduling
+public class SchedulingConfiguration {
+}
@@ -0,0 +1,26 @@
+package ma.enset.orderservice.config;
+
+import ma.enset.orderservice.security.ServiceTokenProvider;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.security.oauth2.client.AuthorizedClientServiceOAuth2AuthorizedClientManager;
+import org.springframework.security.oauth2.client.OAuth2AuthorizedClientService;
+import org.springframework.security.oauth2.client.registration.ClientRegistrationRepository;
+
+/**
+ * order-service's own token, used for every stock reservation: product-service scopes reservation
+ * idempotency keys per caller, so the request and its retries by
+ * {@link ma.enset.orderservice.service.OrderOutboxDispatcher} must come from the same principal.
+ */
+@Configuration
+public class ServiceAccountConfiguration {
+
+    // outside a request the manager backed by the authorized-client service is the one to use;
+    // its default provider handles client_credentials and renews the token shortly before expiry
+    @Bean
+    public ServiceTokenProvider serviceTokenProvider(ClientRegistrationRepository clientRegistrationRepository,
+                                                     OAuth2AuthorizedClientService authorizedClientService) {
+        return new ServiceTokenProvider(new AuthorizedClientServiceOAuth2AuthorizedClientManager(
+                clientRegistrationRepository, authorizedClientService));
+    }
+}
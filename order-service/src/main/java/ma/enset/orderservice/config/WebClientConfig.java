@@ -1,20 +1,112 @@
 package ma.enset.orderservice.config;
 
+import io.github.resilience4j.bulkhead.BulkheadRegistry;
+import io.github.resilience4j.circuitbreaker.CircuitBreakerRegistry;
+import io.github.resilience4j.core.IntervalFunction;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.instrument.binder.httpcomponents.hc5.PoolingHttpClientConnectionManagerMetricsBinder;
+import org.apache.hc.client5.http.config.ConnectionConfig;
+import org.apache.hc.client5.http.config.RequestConfig;
+import org.apache.hc.client5.http.impl.classic.CloseableHttpClient;
+import org.apache.hc.client5.http.impl.classic.HttpClients;
+import org.apache.hc.client5.http.impl.io.PoolingHttpClientConnectionManager;
+import org.apache.hc.core5.util.TimeValue;
+import org.apache.hc.core5.util.Timeout;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.http.client.HttpComponentsClientHttpRequestFactory;
 import org.springframework.web.client.RestClient;
 
+import java.time.Duration;
+
 @Configuration
 public class WebClientConfig {
 
+    private static final String PRODUCT_SERVICE = "product-service";
+
     @Value("${product.service.url:http://localhost:8081}")
     private String productServiceUrl;
 
     @Bean
-    public RestClient restClient(RestClient.Builder builder) {
+    public RestClient restClient(RestClient.Builder builder, CloseableHttpClient productServiceHttpClient,
+                                 ProductServiceResilienceInterceptor productServiceResilienceInterceptor) {
         return builder
                 .baseUrl(productServiceUrl)
+                .requestFactory(new HttpComponentsClientHttpRequestFactory(productServiceHttpClient))
+                .requestInterceptor(productServiceResilienceInterceptor)
+                .build();
+    }
+
+    /**
+     * Circuit breaker and bulkhead come from the {@code resilience4j.*} instances named
+     * {@value #PRODUCT_SERVICE}, which also publishes their state on the actuator endpoints.
+     */
+    @Bean
+    ProductServiceResilienceInterceptor productServiceResilienceInterceptor(
+            CircuitBreakerRegistry circuitBreakerRegistry, BulkheadRegistry bulkheadRegistry, MeterRegistry meterRegistry,
+            @Value("${product.service.retry.max-attempts:3}") int maxAttempts,
+            @Value("${product.service.retry.initial-backoff:50ms}") Duration initialBackoff,
+            @Value("${product.service.retry.budget.ratio:0.1}") double budgetRatio,
+            @Value("${product.service.retry.budget.max-tokens:10}") int budgetMaxTokens) {
+        return new ProductServiceResilienceInterceptor(
+                circuitBreakerRegistry.circuitBreaker(PRODUCT_SERVICE),
+                bulkheadRegistry.bulkhead(PRODUCT_SERVICE),
+                new RetryBudget(budgetRatio, budgetMaxTokens),
+                maxAttempts,
+                IntervalFunction.ofExponentialRandomBackoff(initialBackoff, 2.0, 0.5),
+                meterRegistry);
+    }
+
+    /**
+     * Connection pool for calls to product-service. Pool usage is published under
+     * {@code httpcomponents.httpclient.pool.*} and the time spent waiting for a connection as
+     * {@code httpcomponents.httpclient.pool.wait}.
+     */
+    @Bean(destroyMethod = "close")
+    public PoolingHttpClientConnectionManager productServiceConnectionManager(
+            MeterRegistry meterRegistry,
+            @Value("${product.service.http.max-connections:100}") int maxConnections,
+            @Value("${product.service.http.max-connections-per-route:50}") int maxConnectionsPerRoute,
+            @Value("${product.service.http.connect-timeout:2s}") Duration connectTimeout,
+            @Value("${product.service.http.read-timeout:5s}") Duration readTimeout,
+            @Value("${product.service.http.validate-after-inactivity:2s}") Duration validateAfterInactivity,
+            @Value("${product.service.http.time-to-live:5m}") Duration timeToLive) {
+        Timer waitTimer = Timer.builder("httpcomponents.httpclient.pool.wait")
+                .description("Time spent waiting for a pooled connection")
+                .tag("httpclient", PRODUCT_SERVICE)
+                .register(meterRegistry);
+        PoolingHttpClientConnectionManager connectionManager = new LeaseTimingConnectionManager(waitTimer);
+        connectionManager.setMaxTotal(maxConnections);
+        connectionManager.setDefaultMaxPerRoute(maxConnectionsPerRoute);
+        connectionManager.setDefaultConnectionConfig(ConnectionConfig.custom()
+                .setConnectTimeout(Timeout.of(connectTimeout))
+                .setSocketTimeout(Timeout.of(readTimeout))
+                .setValidateAfterInactivity(TimeValue.of(validateAfterInactivity))
+                .setTimeToLive(TimeValue.of(timeToLive))
+                .build());
+        new PoolingHttpClientConnectionManagerMetricsBinder(connectionManager, PRODUCT_SERVICE).bindTo(meterRegistry);
+        return connectionManager;
+    }
+
+    @Bean(destroyMethod = "close")
+    public CloseableHttpClient productServiceHttpClient(
+            PoolingHttpClientConnectionManager productServiceConnectionManager,
+            @Value("${product.service.http.connection-request-timeout:1s}") Duration connectionRequestTimeout,
+            @Value("${product.service.http.keep-alive:15s}") Duration keepAlive,
+            @Value("${product.service.http.idle-timeout:10s}") Duration idleTimeout) {
+        return HttpClients.custom()
+                .setConnectionManager(productServiceConnectionManager)
+                .setDefaultRequestConfig(RequestConfig.custom()
+                        .setConnectionRequestTimeout(Timeout.of(connectionRequestTimeout))
+                        // fallback when product-service does not announce its own keep-alive timeout
+                        .setConnectionKeepAlive(TimeValue.of(keepAlive))
+                        .build())
+                // retries are decided by ProductServiceResilienceInterceptor, within its budget
+                .disableAutomaticRetries()
+                .evictIdleConnections(TimeValue.of(idleTimeout))
+                .evictExpiredConnections()
                 .build();
     }
-}
\ No newline at end of file
+}
@@ -1,14 +1,34 @@
 package ma.enset.orderservice.controller;
 
 import ma.enset.orderservice.entities.Order;
+import ma.enset.orderservice.model.OrderImportResult;
+import ma.enset.orderservice.model.OrderStats;
+import ma.enset.orderservice.model.OrderSubmission;
+import ma.enset.orderservice.service.OrderExportService;
+import ma.enset.orderservice.service.OrderIdempotencyService;
+import ma.enset.orderservice.service.OrderImportService;
 import ma.enset.orderservice.service.OrderService;
+import ma.enset.orderservice.service.OrderStatsService;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.web.PageableDefault;
+import org.springframework.data.web.SortDefault;
+import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.access.prepost.PreAuthorize;
 import org.springframework.security.core.Authentication;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+import org.springframework.web.servlet.support.ServletUriComponentsBuilder;
 
+import java.io.IOException;
+import java.io.InputStream;
+import java.time.LocalDate;
 import java.util.List;
 
 @RestController
@@ -17,20 +37,54 @@ public class OrderController {
 
     private static final Logger logger = LoggerFactory.getLogger(OrderController.class);
 
+    static final String TOTAL_COUNT_HEADER = "X-Total-Count";
+    static final String NEXT_CURSOR_HEADER = "X-Next-Cursor";
+    static final String IDEMPOTENCY_KEY_HEADER = "Idempotency-Key";
+    static final String IDEMPOTENT_REPLAYED_HEADER = "Idempotent-Replayed";
+    private static final Sort KEYSET_ORDER = Sort.by(Sort.Direction.DESC, "id");
+
     private final OrderService orderService;
+    private final OrderExportService orderExportService;
+    private final OrderImportService orderImportService;
+    private final OrderStatsService orderStatsService;
+    private final OrderIdempotencyService orderIdempotencyService;
 
-    public OrderController(OrderService orderService) {
+    public OrderController(OrderService orderService, OrderExportService orderExportService,
+                           OrderImportService orderImportService, OrderStatsService orderStatsService,
+                           OrderIdempotencyService orderIdempotencyService) {
         this.orderService = orderService;
+        this.orderExportService = orderExportService;
+        this.orderImportService = orderImportService;
+        this.orderStatsService = orderStatsService;
+        this.orderIdempotencyService = orderIdempotencyService;
     }
 
     @PostMapping
     @PreAuthorize("hasRole('CLIENT')")
-    public ResponseEntity<Order> createOrder(@RequestBody Order order, Authentication authentication) {
+    public ResponseEntity<Order> createOrder(@RequestBody Order order,
+                                             @RequestHeader(name = IDEMPOTENCY_KEY_HEADER, required = false) String idempotencyKey,
+                                             Authentication authentication) {
         String username = authentication.getName();
         logger.info("User {} creating order", username);
         try {
-            Order created = orderService.createOrder(order, username);
-            return ResponseEntity.ok(created);
+            // with a key, a retried request gets the first request's order instead of a second one
+            OrderSubmission submission = idempotencyKey == null
+                    ? new OrderSubmission(orderService.createOrder(order, username), false)
+                    : orderIdempotencyService.submit(username, idempotencyKey, order, () -> orderService.createOrder(order, username));
+            Order created = submission.order();
+            ResponseEntity.BodyBuilder response;
+            if ("PENDING".equals(created.getStatus())) {
+                // async mode, or a sync reservation handed to the outbox: follow the Location, or
+                // GET /orders/{id}/status, for the outcome
+                response = ResponseEntity.accepted()
+                        .location(ServletUriComponentsBuilder.fromCurrentRequest().path("/{id}").buildAndExpand(created.getId()).toUri());
+            } else {
+                response = ResponseEntity.ok();
+            }
+            if (submission.replayed()) {
+                response.header(IDEMPOTENT_REPLAYED_HEADER, "true");
+            }
+            return response.body(created);
         } catch (Exception e) {
             logger.error("Error creating order for user {}: {}", username, e.getMessage());
             throw e;
@@ -39,17 +93,74 @@ public class OrderController {
 
     @GetMapping
     @PreAuthorize("hasRole('CLIENT')")
-    public ResponseEntity<List<Order>> getMyOrders(Authentication authentication) {
+    public ResponseEntity<List<Order>> getMyOrders(
+            @RequestParam(required = false) Long before,
+            @PageableDefault(size = 20)
+            @SortDefault.SortDefaults({
+                    @SortDefault(sort = "date", direction = Sort.Direction.DESC),
+                    @SortDefault(sort = "id", direction = Sort.Direction.DESC)
+            }) Pageable pageable,
+            Authentication authentication) {
         String username = authentication.getName();
         logger.info("User {} fetching their orders", username);
-        return ResponseEntity.ok(orderService.getOrdersByUser(username));
+        if (before != null) {
+            return withNextCursor(ResponseEntity.ok(), orderService.getOrdersByUserBefore(username, before, pageable.getPageSize()), pageable);
+        }
+        Page<Order> page = orderService.getOrdersByUser(username, pageable);
+        ResponseEntity.BodyBuilder response = ResponseEntity.ok().header(TOTAL_COUNT_HEADER, String.valueOf(page.getTotalElements()));
+        // the last id only continues the listing when the page is in the id order the keyset query uses
+        if (KEYSET_ORDER.equals(pageable.getSort())) {
+            return withNextCursor(response, page.getContent(), pageable);
+        }
+        return response.body(page.getContent());
     }
 
     @GetMapping("/all")
     @PreAuthorize("hasRole('ADMIN')")
-    public ResponseEntity<List<Order>> getAllOrders(Authentication authentication) {
+    public ResponseEntity<List<Order>> getAllOrders(
+            @RequestParam(required = false) Long before,
+            @PageableDefault(size = 50) Pageable pageable,
+            Authentication authentication) {
         logger.info("Admin {} fetching all orders", authentication.getName());
-        return ResponseEntity.ok(orderService.getAllOrders());
+        List<Order> orders = orderService.getAllOrdersBefore(before != null ? before : Long.MAX_VALUE, pageable.getPageSize());
+        return withNextCursor(ResponseEntity.ok(), orders, pageable);
+    }
+
+    @GetMapping(value = "/all/export", produces = MediaType.APPLICATION_NDJSON_VALUE)
+    @PreAuthorize("hasRole('ADMIN')")
+    public ResponseEntity<StreamingResponseBody> exportAllOrders(Authentication authentication) {
+        logger.info("Admin {} exporting all orders", authentication.getName());
+        return ResponseEntity.ok()
+                .contentType(MediaType.APPLICATION_NDJSON)
+                .body(orderExportService::exportOrders);
+    }
+
+    @PostMapping(value = "/import", consumes = MediaType.APPLICATION_NDJSON_VALUE)
+    @PreAuthorize("hasRole('ADMIN')")
+    public ResponseEntity<OrderImportResult> importOrders(InputStream body, Authentication authentication) throws IOException {
+        logger.info("Admin {} importing orders", authentication.getName());
+        return ResponseEntity.ok(new OrderImportResult(orderImportService.importOrders(body)));
+    }
+
+    @GetMapping("/stats")
+    @PreAuthorize("hasRole('ADMIN')")
+    public ResponseEntity<OrderStats> getStats(
+            @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate from,
+            @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate to,
+            @RequestParam(defaultValue = "10") int top,
+            Authentication authentication) {
+        logger.info("Admin {} fetching order stats from {} to {}", authentication.getName(), from, to);
+        return ResponseEntity.ok(orderStatsService.getStats(from, to, top));
+    }
+
+    // "status" events carrying [{orderId, userId, status}] for the caller's orders, or all orders for admins
+    @GetMapping(value = "/events", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    @PreAuthorize("hasRole('CLIENT') or hasRole('ADMIN')")
+    public SseEmitter streamOrderEvents(Authentication authentication) {
+        boolean admin = authentication.getAuthorities().stream()
+                .anyMatch(authority -> "ROLE_ADMIN".equals(authority.getAuthority()));
+        logger.info("User {} subscribing to {} order events", authentication.getName(), admin ? "all" : "their");
+        return orderService.subscribeToOrders(admin ? null : authentication.getName());
     }
 
     @GetMapping("/{id}")
@@ -58,4 +169,19 @@ public class OrderController {
         logger.info("User {} fetching order {}", authentication.getName(), id);
         return ResponseEntity.ok(orderService.getOrderById(id));
     }
+
+    @GetMapping(value = "/{id}/status", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    @PreAuthorize("hasRole('CLIENT') or hasRole('ADMIN')")
+    public SseEmitter streamOrderStatus(@PathVariable Long id, Authentication authentication) {
+        logger.info("User {} subscribing to status of order {}", authentication.getName(), id);
+        return orderService.subscribeToStatus(id);
+    }
+
+    // A full page means there may be more rows; the last id is the keyset cursor for the next call
+    private ResponseEntity<List<Order>> withNextCursor(ResponseEntity.BodyBuilder response, List<Order> orders, Pageable pageable) {
+        if (!orders.isEmpty() && orders.size() == pageable.getPageSize()) {
+            response.header(NEXT_CURSOR_HEADER, String.valueOf(orders.get(orders.size() - 1).getId()));
+        }
+        return response.body(orders);
+    }
 }
@@ -1,31 +1,49 @@
 package ma.enset.orderservice.entities;
 
+import com.fasterxml.jackson.annotation.JsonProperty;
+import com.fasterxml.jackson.databind.annotation.JsonDeserialize;
+import com.fasterxml.jackson.databind.annotation.JsonSerialize;
 import jakarta.persistence.*;
 import lombok.AllArgsConstructor;
 import lombok.Builder;
 import lombok.Data;
 import lombok.NoArgsConstructor;
+import ma.enset.orderservice.model.Cents;
+
 import java.time.LocalDate;
 import java.util.List;
 
 @Entity
-@Table(name = "customer_orders")
+@Table(name = "customer_orders", indexes = {
+        @Index(name = "idx_customer_orders_user_id_date", columnList = "user_id, date"),
+        // the /orders/stats date range; grouping by status or user needs no access to the table
+        @Index(name = "idx_customer_orders_date", columnList = "date, status, user_id, amount_cents")
+})
 @Data
 @NoArgsConstructor
 @AllArgsConstructor
 @Builder
 public class Order {
+    // pooled sequence: ids are reserved 50 at a time, so orders and their items can be inserted in JDBC batches
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "customer_orders_seq")
+    @SequenceGenerator(name = "customer_orders_seq", sequenceName = "customer_orders_seq", allocationSize = 50)
     private Long id;
     private LocalDate date;
     private String status;
-    private Double amount;
+
+    // total in cents, the sum of the items' line totals; "amount" in JSON
+    @Column(name = "amount_cents")
+    @JsonProperty("amount")
+    @JsonSerialize(using = Cents.Serializer.class)
+    @JsonDeserialize(using = Cents.Deserializer.class)
+    private long amountCents;
 
     @Column(name = "user_id")
     private String userId;
 
     @ElementCollection
-    @CollectionTable(name = "order_product_items", joinColumns = @JoinColumn(name = "order_id"))
+    @CollectionTable(name = "order_product_items", joinColumns = @JoinColumn(name = "order_id"),
+            indexes = @Index(name = "idx_order_product_items_order", columnList = "order_id, product_id, quantity, line_total_cents"))
     private List<ProductItem> productItems;
 }
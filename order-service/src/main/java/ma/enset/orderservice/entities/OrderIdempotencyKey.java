@@ -0,0 +1,49 @@
+package ma.enset.orderservice.entities;
+
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import org.hibernate.annotations.JdbcTypeCode;
+import org.hibernate.type.SqlTypes;
+
+import java.time.Instant;
+
+/**
+ * {@code Idempotency-Key} of a {@code POST /orders}, claimed before the order is created. The
+ * unique constraint lets only one of several concurrent duplicates claim a key; the created order
+ * is stored as JSON so a replay is answered from this row alone.
+ */
+@Entity
+@Table(name = "order_idempotency_keys",
+        uniqueConstraints = @UniqueConstraint(name = "uk_order_idempotency_keys_user_key", columnNames = {"user_id", "idempotency_key"}),
+        indexes = @Index(name = "idx_order_idempotency_keys_expires_at", columnList = "expires_at"))
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class OrderIdempotencyKey {
+    @Id
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "order_idempotency_keys_seq")
+    @SequenceGenerator(name = "order_idempotency_keys_seq", sequenceName = "order_idempotency_keys_seq", allocationSize = 50)
+    private Long id;
+
+    @Column(name = "user_id", nullable = false)
+    private String userId;
+
+    @Column(name = "idempotency_key", nullable = false)
+    private String idempotencyKey;
+
+    // SHA-256 of the request body, so a key reused for a different order is refused
+    @Column(name = "request_hash", nullable = false, length = 64)
+    private String requestHash;
+
+    // the created order as JSON; null while the first request is still in flight
+    @JdbcTypeCode(SqlTypes.LONG32VARCHAR)
+    private String response;
+
+    // end of the in-flight lease while processing, then end of the replay window
+    @Column(name = "expires_at", nullable = false)
+    private Instant expiresAt;
+}
@@ -0,0 +1,38 @@
+package ma.enset.orderservice.entities;
+
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.Instant;
+
+/**
+ * Stock reservation still owed to product-service for an order accepted in async mode. Written in
+ * the same transaction as the order and deleted once the order is confirmed or rejected.
+ */
+@Entity
+@Table(name = "order_outbox", indexes = @Index(name = "idx_order_outbox_available_at", columnList = "available_at"))
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class OrderOutbox {
+    @Id
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "order_outbox_seq")
+    @SequenceGenerator(name = "order_outbox_seq", sequenceName = "order_outbox_seq", allocationSize = 50)
+    private Long id;
+
+    @Column(name = "order_id", nullable = false, unique = true)
+    private Long orderId;
+
+    private int attempts;
+
+    // not claimable before this instant: set to the retry time on failure and to the lease end while in flight
+    @Column(name = "available_at", nullable = false)
+    private Instant availableAt;
+
+    @Column(length = 1000)
+    private String lastError;
+}
@@ -1,16 +1,38 @@
 package ma.enset.orderservice.entities;
 
+import com.fasterxml.jackson.annotation.JsonProperty;
+import com.fasterxml.jackson.databind.annotation.JsonDeserialize;
+import com.fasterxml.jackson.databind.annotation.JsonSerialize;
+import jakarta.persistence.Column;
 import jakarta.persistence.Embeddable;
-import lombok.AllArgsConstructor;
 import lombok.Data;
 import lombok.NoArgsConstructor;
+import ma.enset.orderservice.model.Cents;
 
 @Embeddable
 @Data
 @NoArgsConstructor
-@AllArgsConstructor
 public class ProductItem {
     private Long productId;
     private int quantity;
-    private double price;
+
+    // unit price in cents; "price" in JSON
+    @Column(name = "price_cents")
+    @JsonProperty("price")
+    @JsonSerialize(using = Cents.Serializer.class)
+    @JsonDeserialize(using = Cents.Deserializer.class)
+    private long priceCents;
+
+    // price * quantity, stored so order and revenue totals can be summed in SQL
+    @Column(name = "line_total_cents")
+    @JsonProperty(value = "lineTotal", access = JsonProperty.Access.READ_ONLY)
+    @JsonSerialize(using = Cents.Serializer.class)
+    private long lineTotalCents;
+
+    public ProductItem(Long productId, int quantity, long priceCents) {
+        this.productId = productId;
+        this.quantity = quantity;
+        this.priceCents = priceCents;
+        this.lineTotalCents = Math.multiplyExact(priceCents, quantity);
+    }
 }
@@ -0,0 +1,21 @@
+package ma.enset.orderservice.exception;
+
+import org.springframework.http.HttpStatus;
+
+/**
+ * An {@code Idempotency-Key} that cannot be honoured: the first request with it is still in flight
+ * (409), or the key was already used for a different order (422).
+ */
+public class IdempotencyConflictException extends RuntimeException {
+
+    private final HttpStatus status;
+
+    public IdempotencyConflictException(HttpStatus status, String message) {
+        super(message);
+        this.status = status;
+    }
+
+    public HttpStatus getStatus() {
+        return status;
+    }
+}
@@ -0,0 +1,12 @@
+package ma.enset.orderservice.exception;
+
+/**
+ * product-service refused the stock for an order (insufficient stock, unknown product): nothing was
+ * reserved, so the order can safely be submitted again.
+ */
+public class StockRejectedException extends RuntimeException {
+
+    public StockRejectedException(String message) {
+        super(message);
+    }
+}
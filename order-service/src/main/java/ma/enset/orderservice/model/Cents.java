@@ -0,0 +1,60 @@
+package ma.enset.orderservice.model;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.databind.DeserializationContext;
+import com.fasterxml.jackson.databind.JsonDeserializer;
+import com.fasterxml.jackson.databind.JsonSerializer;
+import com.fasterxml.jackson.databind.SerializerProvider;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+
+/**
+ * Money is held as a {@code long} number of cents, so sums are exact and need no allocation. On the
+ * wire it stays a decimal number ({@code 12.34}); values with more than two decimals are rejected
+ * rather than rounded.
+ */
+public final class Cents {
+
+    private Cents() {
+    }
+
+    public static long fromDecimal(BigDecimal amount) {
+        return amount.setScale(2, RoundingMode.UNNECESSARY).unscaledValue().longValueExact();
+    }
+
+    public static BigDecimal toDecimal(long cents) {
+        return BigDecimal.valueOf(cents, 2);
+    }
+
+    public static class Serializer extends JsonSerializer<Long> {
+        @Override
+        public void serialize(Long cents, JsonGenerator generator, SerializerProvider provider) throws IOException {
+            generator.writeNumber(toDecimal(cents));
+        }
+    }
+
+    public static class Deserializer extends JsonDeserializer<Long> {
+        @Override
+        public Long deserialize(JsonParser parser, DeserializationContext context) throws IOException {
+            try {
+                if (parser.currentToken() == JsonToken.VALUE_NUMBER_INT) {
+                    return Math.multiplyExact(parser.getLongValue(), 100L);
+                }
+                if (parser.currentToken() == JsonToken.VALUE_NUMBER_FLOAT) {
+                    return fromDecimal(parser.getDecimalValue());
+                }
+                if (parser.currentToken() == JsonToken.VALUE_STRING) {
+                    return fromDecimal(new BigDecimal(parser.getText().trim()));
+                }
+            } catch (ArithmeticException | NumberFormatException e) {
+                throw context.weirdStringException(parser.getText(), Long.class,
+                        "expected an amount with at most two decimals");
+            }
+            return (Long) context.handleUnexpectedToken(Long.class, parser);
+        }
+    }
+}
@@ -0,0 +1,6 @@
+package ma.enset.orderservice.model;
+
+import java.util.List;
+
+public record ClaimedOrder(Long outboxId, int attempts, Long orderId, String userId, List<StockReservation> reservations) {
+}
@@ -0,0 +1,4 @@
+package ma.enset.orderservice.model;
+
+public record OrderImportResult(long imported) {
+}
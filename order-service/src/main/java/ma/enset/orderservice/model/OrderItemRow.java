@@ -0,0 +1,11 @@
+package ma.enset.orderservice.model;
+
+import java.time.LocalDate;
+
+/**
+ * One row of the flattened customer_orders / order_product_items join used by the streaming export.
+ * Item columns are null for orders without items.
+ */
+public record OrderItemRow(Long orderId, LocalDate date, String status, long amountCents, String userId,
+                           Long productId, Integer quantity, Long priceCents) {
+}
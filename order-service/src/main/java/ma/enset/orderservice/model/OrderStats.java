@@ -0,0 +1,20 @@
+package ma.enset.orderservice.model;
+
+import com.fasterxml.jackson.annotation.JsonProperty;
+import com.fasterxml.jackson.databind.annotation.JsonSerialize;
+
+import java.time.LocalDate;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Order statistics over {@code [from, to]}. Revenue, product and user figures only count confirmed
+ * orders, whose stock was reserved; {@code ordersByStatus} counts every order.
+ */
+public record OrderStats(LocalDate from, LocalDate to,
+                         @JsonProperty("revenue") @JsonSerialize(using = Cents.Serializer.class) long revenueCents,
+                         long orders,
+                         Map<String, Long> ordersByStatus,
+                         List<ProductSales> topProducts,
+                         List<UserSales> topUsers) {
+}
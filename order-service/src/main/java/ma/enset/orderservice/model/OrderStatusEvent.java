@@ -0,0 +1,4 @@
+package ma.enset.orderservice.model;
+
+public record OrderStatusEvent(Long orderId, String userId, String status) {
+}
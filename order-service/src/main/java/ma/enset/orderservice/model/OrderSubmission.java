@@ -0,0 +1,10 @@
+package ma.enset.orderservice.model;
+
+import ma.enset.orderservice.entities.Order;
+
+/**
+ * Order answered to a {@code POST /orders}; {@code replayed} when it was stored by an earlier
+ * request with the same {@code Idempotency-Key}.
+ */
+public record OrderSubmission(Order order, boolean replayed) {
+}
@@ -0,0 +1,4 @@
+package ma.enset.orderservice.model;
+
+public record StatusCount(String status, long orders, long amountCents) {
+}
@@ -0,0 +1,4 @@
+package ma.enset.orderservice.model;
+
+public record StockReservation(Long productId, int quantity) {
+}
@@ -0,0 +1,8 @@
+package ma.enset.orderservice.model;
+
+import com.fasterxml.jackson.annotation.JsonProperty;
+import com.fasterxml.jackson.databind.annotation.JsonSerialize;
+
+public record UserSales(String userId, long orders,
+                        @JsonProperty("revenue") @JsonSerialize(using = Cents.Serializer.class) long revenueCents) {
+}
@@ -0,0 +1,38 @@
+package ma.enset.orderservice.repository;
+
+import ma.enset.orderservice.entities.OrderIdempotencyKey;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.Instant;
+import java.util.Optional;
+
+public interface OrderIdempotencyKeyRepository extends JpaRepository<OrderIdempotencyKey, Long> {
+
+    // served by the (user_id, idempotency_key) unique index
+    Optional<OrderIdempotencyKey> findByUserIdAndIdempotencyKey(String userId, String idempotencyKey);
+
+    @Transactional
+    @Modifying
+    @Query("update OrderIdempotencyKey k set k.response = :response, k.expiresAt = :expiresAt where k.id = :id")
+    int complete(@Param("id") Long id, @Param("response") String response, @Param("expiresAt") Instant expiresAt);
+
+    @Transactional
+    @Modifying
+    @Query("delete from OrderIdempotencyKey k where k.id = :id")
+    int release(@Param("id") Long id);
+
+    @Transactional
+    @Modifying
+    @Query("delete from OrderIdempotencyKey k where k.expiresAt <= :now")
+    int deleteExpired(@Param("now") Instant now);
+
+    // only removes the row if it is still expired, so a key another request just reclaimed is kept
+    @Transactional
+    @Modifying
+    @Query("delete from OrderIdempotencyKey k where k.id = :id and k.expiresAt <= :now")
+    int deleteIfExpired(@Param("id") Long id, @Param("now") Instant now);
+}
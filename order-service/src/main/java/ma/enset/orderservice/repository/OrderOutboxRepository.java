@@ -0,0 +1,27 @@
+package ma.enset.orderservice.repository;
+
+import jakarta.persistence.LockModeType;
+import jakarta.persistence.QueryHint;
+import ma.enset.orderservice.entities.OrderOutbox;
+import org.hibernate.jpa.SpecHints;
+import org.springframework.data.domain.Limit;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Lock;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
+import org.springframework.data.repository.query.Param;
+
+import java.time.Instant;
+import java.util.List;
+
+public interface OrderOutboxRepository extends JpaRepository<OrderOutbox, Long> {
+
+    /**
+     * Locks the oldest due entries, skipping rows another dispatcher already holds, so several
+     * order-service instances can poll the same table without claiming the same orders.
+     */
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @QueryHints(@QueryHint(name = SpecHints.HINT_SPEC_LOCK_TIMEOUT, value = "-2"))
+    @Query("select o from OrderOutbox o where o.availableAt <= :now order by o.availableAt")
+    List<OrderOutbox> findDue(@Param("now") Instant now, Limit limit);
+}
@@ -1,7 +1,76 @@
 package ma.enset.orderservice.repository;
 
+import jakarta.persistence.QueryHint;
 import ma.enset.orderservice.entities.Order;
+import ma.enset.orderservice.model.OrderItemRow;
+import ma.enset.orderservice.model.ProductSales;
+import ma.enset.orderservice.model.StatusCount;
+import ma.enset.orderservice.model.UserSales;
+import org.hibernate.jpa.HibernateHints;
+import org.springframework.data.domain.Limit;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.jpa.repository.EntityGraph;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
+import org.springframework.data.repository.query.Param;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.LocalDate;
+import java.util.Collection;
+import java.util.List;
+import java.util.Optional;
+import java.util.stream.Stream;
 
 public interface OrderRepository extends JpaRepository<Order, Long> {
+
+    // Pages over ids only; fetch-joining the item collection here would make Hibernate paginate in memory
+    @Query(value = "select o.id from Order o where o.userId = :userId",
+            countQuery = "select count(o) from Order o where o.userId = :userId")
+    Page<Long> findIdsByUserId(@Param("userId") String userId, Pageable pageable);
+
+    @Query("select o.id from Order o where o.userId = :userId and o.id < :beforeId order by o.id desc")
+    List<Long> findIdsByUserIdBefore(@Param("userId") String userId, @Param("beforeId") Long beforeId, Pageable pageable);
+
+    @Query("select o.id from Order o where o.id < :beforeId order by o.id desc")
+    List<Long> findIdsBefore(@Param("beforeId") Long beforeId, Pageable pageable);
+
+    // The statistics queries below scan the date range on idx_customer_orders_date. countByStatus and
+    // findTopUsers only need its columns; findTopProducts still reads each order row for the id it joins
+    // on, and then the item columns from idx_order_product_items_order
+
+    @Query("select new ma.enset.orderservice.model.StatusCount(o.status, count(o), coalesce(sum(o.amountCents), 0)) " +
+            "from Order o where o.date between :from and :to group by o.status")
+    List<StatusCount> countByStatus(@Param("from") LocalDate from, @Param("to") LocalDate to);
+
+    @Query("select new ma.enset.orderservice.model.ProductSales(i.productId, sum(i.quantity), sum(i.lineTotalCents)) " +
+            "from Order o join o.productItems i " +
+            "where o.date between :from and :to and o.status = 'CONFIRMED' " +
+            "group by i.productId order by sum(i.quantity) desc, i.productId")
+    List<ProductSales> findTopProducts(@Param("from") LocalDate from, @Param("to") LocalDate to, Limit limit);
+
+    @Query("select new ma.enset.orderservice.model.UserSales(o.userId, count(o), sum(o.amountCents)) " +
+            "from Order o where o.date between :from and :to and o.status = 'CONFIRMED' " +
+            "group by o.userId order by sum(o.amountCents) desc, o.userId")
+    List<UserSales> findTopUsers(@Param("from") LocalDate from, @Param("to") LocalDate to, Limit limit);
+
+    @Query("select o.status from Order o where o.id = :id")
+    Optional<String> findStatusById(@Param("id") Long id);
+
+    @Transactional
+    @Modifying(flushAutomatically = true, clearAutomatically = true)
+    @Query("update Order o set o.status = :status where o.id = :id")
+    int updateStatus(@Param("id") Long id, @Param("status") String status);
+
+    @EntityGraph(attributePaths = "productItems")
+    List<Order> findByIdIn(Collection<Long> ids, Sort sort);
+
+    // Scalar rows keep the persistence context empty, so the export runs in constant memory
+    @QueryHints(@QueryHint(name = HibernateHints.HINT_FETCH_SIZE, value = "1000"))
+    @Query("select new ma.enset.orderservice.model.OrderItemRow(o.id, o.date, o.status, o.amountCents, o.userId, " +
+            "i.productId, i.quantity, i.priceCents) from Order o left join o.productItems i order by o.id")
+    Stream<OrderItemRow> streamAllOrderItems();
 }
@@ -0,0 +1,119 @@
+package ma.enset.orderservice.security;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.Expiry;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import org.springframework.security.oauth2.jwt.Jwt;
+import org.springframework.security.oauth2.jwt.JwtDecoder;
+import org.springframework.security.oauth2.jwt.JwtException;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Clock;
+import java.time.Duration;
+import java.util.Base64;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * {@link JwtDecoder} that remembers tokens it has already verified.
+ * <p>
+ * Entries are keyed by the SHA-256 of the raw token, so a hit is only possible for the exact same
+ * signed token, and they expire with the token's {@code exp} claim. Tokens that fail validation are
+ * never cached.
+ */
+public class CachingJwtDecoder implements JwtDecoder {
+
+    private final JwtDecoder delegate;
+    private final Clock clock;
+    private final Cache<String, Jwt> verifiedTokens;
+    private final Timer hitTimer;
+    private final Timer missTimer;
+    private final Timer invalidTimer;
+
+    public CachingJwtDecoder(JwtDecoder delegate, MeterRegistry meterRegistry, long maxSize, Duration maxTtl) {
+        this(delegate, meterRegistry, maxSize, maxTtl, Clock.systemUTC());
+    }
+
+    CachingJwtDecoder(JwtDecoder delegate, MeterRegistry meterRegistry, long maxSize, Duration maxTtl, Clock clock) {
+        this.delegate = delegate;
+        this.clock = clock;
+        this.verifiedTokens = Caffeine.newBuilder()
+                .maximumSize(maxSize)
+                .expireAfter(new TokenExpiry(clock, maxTtl))
+                .recordStats()
+                .build();
+        this.hitTimer = validationTimer(meterRegistry, "hit");
+        this.missTimer = validationTimer(meterRegistry, "miss");
+        this.invalidTimer = validationTimer(meterRegistry, "invalid");
+        CaffeineCacheMetrics.monitor(meterRegistry, verifiedTokens, "verifiedJwts");
+    }
+
+    @Override
+    public Jwt decode(String token) throws JwtException {
+        long start = System.nanoTime();
+        String key = sha256(token);
+        Jwt cached = verifiedTokens.getIfPresent(key);
+        if (cached != null && !isExpired(cached)) {
+            hitTimer.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+            return cached;
+        }
+        try {
+            Jwt jwt = delegate.decode(token);
+            if (jwt.getExpiresAt() != null) {
+                verifiedTokens.put(key, jwt);
+            }
+            missTimer.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+            return jwt;
+        } catch (JwtException e) {
+            invalidTimer.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+            throw e;
+        }
+    }
+
+    private boolean isExpired(Jwt jwt) {
+        return !clock.instant().isBefore(jwt.getExpiresAt());
+    }
+
+    private static Timer validationTimer(MeterRegistry meterRegistry, String result) {
+        return Timer.builder("security.jwt.validation")
+                .description("Time spent validating bearer tokens")
+                .tag("result", result)
+                .register(meterRegistry);
+    }
+
+    private static String sha256(String token) {
+        try {
+            byte[] digest = MessageDigest.getInstance("SHA-256").digest(token.getBytes(StandardCharsets.US_ASCII));
+            return Base64.getEncoder().encodeToString(digest);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 is not available", e);
+        }
+    }
+
+    // Keeps each token until its exp claim, capped by maxTtl
+    private record TokenExpiry(Clock clock, Duration maxTtl) implements Expiry<String, Jwt> {
+
+        @Override
+        public long expireAfterCreate(String key, Jwt jwt, long currentTime) {
+            Duration untilExpiry = Duration.between(clock.instant(), jwt.getExpiresAt());
+            if (untilExpiry.isNegative()) {
+                return 0;
+            }
+            return untilExpiry.compareTo(maxTtl) < 0 ? untilExpiry.toNanos() : maxTtl.toNanos();
+        }
+
+        @Override
+        public long expireAfterUpdate(String key, Jwt jwt, long currentTime, long currentDuration) {
+            return expireAfterCreate(key, jwt, currentTime);
+        }
+
+        @Override
+        public long expireAfterRead(String key, Jwt jwt, long currentTime, long currentDuration) {
+            return currentDuration;
+        }
+    }
+}
@@ -0,0 +1,31 @@
+package ma.enset.orderservice.security;
+
+import org.springframework.security.oauth2.client.OAuth2AuthorizeRequest;
+import org.springframework.security.oauth2.client.OAuth2AuthorizedClient;
+import org.springframework.security.oauth2.client.OAuth2AuthorizedClientManager;
+
+/**
+ * Access token of order-service's own service account, for calls made outside any user request.
+ * The token is obtained with the client-credentials grant and reused until it is about to expire.
+ */
+public class ServiceTokenProvider {
+
+    public static final String REGISTRATION_ID = "order-service";
+
+    private final OAuth2AuthorizedClientManager authorizedClientManager;
+
+    public ServiceTokenProvider(OAuth2AuthorizedClientManager authorizedClientManager) {
+        this.authorizedClientManager = authorizedClientManager;
+    }
+
+    public String getAuthorizationHeader() {
+        OAuth2AuthorizedClient client = authorizedClientManager.authorize(OAuth2AuthorizeRequest
+                .withClientRegistrationId(REGISTRATION_ID)
+                .principal(REGISTRATION_ID)
+                .build());
+        if (client == null) {
+            throw new IllegalStateException("No access token for client registration " + REGISTRATION_ID);
+        }
+        return "Bearer " + client.getAccessToken().getTokenValue();
+    }
+}
@@ -0,0 +1,99 @@
+package ma.enset.orderservice.service;
+
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executor;
+
+/**
+ * One SSE subscriber with a bounded buffer. Values waiting to be sent are kept per key, so a burst
+ * of updates to the same key reaches the client as its latest value, and a slow client costs at
+ * most {@code maxPending} entries. Past that it is disconnected: the client reconnects and reloads
+ * instead of receiving an ever older backlog.
+ * <p>
+ * Sends run on {@code executor}, one drain at a time per subscriber, so a client that stops reading
+ * only blocks its own drain; what arrives meanwhile is merged into the next batch.
+ */
+class CoalescingEmitter<K, V> {
+
+    private final SseEmitter emitter;
+    private final String eventName;
+    private final int maxPending;
+    private final Executor executor;
+    private final Map<K, V> pending = new LinkedHashMap<>();
+    private boolean draining;
+    private boolean closed;
+
+    CoalescingEmitter(SseEmitter emitter, String eventName, int maxPending, Executor executor) {
+        this.emitter = emitter;
+        this.eventName = eventName;
+        this.maxPending = maxPending;
+        this.executor = executor;
+    }
+
+    SseEmitter emitter() {
+        return emitter;
+    }
+
+    /**
+     * Queues {@code value}, replacing any value still pending for {@code key}.
+     *
+     * @return false when the subscriber is closed, or has just been closed for falling too far behind
+     */
+    boolean offer(K key, V value) {
+        boolean overflow = false;
+        boolean startDrain = false;
+        synchronized (this) {
+            if (closed) {
+                return false;
+            }
+            pending.put(key, value);
+            if (pending.size() > maxPending) {
+                closed = true;
+                pending.clear();
+                overflow = true;
+            } else if (!draining) {
+                draining = true;
+                startDrain = true;
+            }
+        }
+        if (overflow) {
+            emitter.complete();
+            return false;
+        }
+        if (startDrain) {
+            executor.execute(this::drain);
+        }
+        return true;
+    }
+
+    synchronized void close() {
+        closed = true;
+        pending.clear();
+    }
+
+    private void drain() {
+        while (true) {
+            List<V> batch;
+            synchronized (this) {
+                if (closed || pending.isEmpty()) {
+                    draining = false;
+                    return;
+                }
+                batch = new ArrayList<>(pending.values());
+                pending.clear();
+            }
+            try {
+                emitter.send(SseEmitter.event().name(eventName).data(batch));
+            } catch (IOException | IllegalStateException e) {
+                close();
+                emitter.completeWithError(e);
+                return;
+            }
+        }
+    }
+}
@@ -0,0 +1,91 @@
+package ma.enset.orderservice.service;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.fasterxml.jackson.databind.SequenceWriter;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import ma.enset.orderservice.entities.Order;
+import ma.enset.orderservice.entities.ProductItem;
+import ma.enset.orderservice.model.OrderItemRow;
+import ma.enset.orderservice.repository.OrderRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.stream.Stream;
+
+@Service
+public class OrderExportService {
+
+    private static final Logger logger = LoggerFactory.getLogger(OrderExportService.class);
+
+    private final OrderRepository orderRepository;
+    private final ObjectMapper objectMapper;
+
+    public OrderExportService(OrderRepository orderRepository, ObjectMapper objectMapper) {
+        this.orderRepository = orderRepository;
+        this.objectMapper = objectMapper;
+    }
+
+    /**
+     * Writes every order as newline-delimited JSON while reading them from a database cursor.
+     * Only the order currently being assembled is held in memory.
+     *
+     * @return the number of exported orders
+     */
+    @Transactional(readOnly = true)
+    public long exportOrders(OutputStream out) throws IOException {
+        logger.info("Exporting all orders");
+        long exported = 0;
+        try (Stream<OrderItemRow> rows = orderRepository.streamAllOrderItems();
+             SequenceWriter writer = ndjsonWriter().writeValues(out)) {
+            Order current = null;
+            for (Iterator<OrderItemRow> it = rows.iterator(); it.hasNext(); ) {
+                OrderItemRow row = it.next();
+                if (current == null || !current.getId().equals(row.orderId())) {
+                    if (current != null) {
+                        writer.write(current);
+                        exported++;
+                    }
+                    current = toOrder(row);
+                }
+                if (row.productId() != null) {
+                    current.getProductItems().add(new ProductItem(row.productId(), row.quantity(), row.priceCents()));
+                }
+            }
+            if (current != null) {
+                writer.write(current);
+                exported++;
+                writer.flush();
+                out.write('\n');
+            }
+        }
+        logger.info("Exported {} orders", exported);
+        return exported;
+    }
+
+    // Buffers output instead of flushing after every order, and leaves closing the response stream to the container
+    private ObjectWriter ndjsonWriter() {
+        return objectMapper.writer()
+                .without(SerializationFeature.FLUSH_AFTER_WRITE_VALUE)
+                .without(JsonGenerator.Feature.AUTO_CLOSE_TARGET)
+                .withRootValueSeparator("\n");
+    }
+
+    private Order toOrder(OrderItemRow row) {
+        return Order.builder()
+                .id(row.orderId())
+                .date(row.date())
+                .status(row.status())
+                .amountCents(row.amountCents())
+                .userId(row.userId())
+                .productItems(new ArrayList<>())
+                .build();
+    }
+}
@@ -0,0 +1,163 @@
+package ma.enset.orderservice.service;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import ma.enset.orderservice.config.PrimaryReads;
+import ma.enset.orderservice.entities.Order;
+import ma.enset.orderservice.entities.OrderIdempotencyKey;
+import ma.enset.orderservice.exception.IdempotencyConflictException;
+import ma.enset.orderservice.exception.StockRejectedException;
+import ma.enset.orderservice.model.OrderSubmission;
+import ma.enset.orderservice.repository.OrderIdempotencyKeyRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.http.HttpStatus;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.HexFormat;
+import java.util.Optional;
+import java.util.function.Supplier;
+
+/**
+ * Makes {@code POST /orders} safe to retry. The first request with a key claims it, creates the
+ * order and stores the result; a retry with the same key gets the stored order back from one
+ * indexed lookup, without checking or reserving stock again.
+ * <p>
+ * Claims are short committed inserts, outside the order's own work: a concurrent duplicate hits
+ * the unique constraint and is told the order is in progress. A claim is released only when its
+ * request failed without taking any stock (invalid order, stock refused), so the client can fix it
+ * and retry. After any other failure the stock may already be reserved: the claim is kept, retries
+ * are told the order is in progress, and the key can be reused once the lease runs out, as with a
+ * claim left behind by a crash.
+ */
+@Service
+public class OrderIdempotencyService {
+
+    private static final Logger logger = LoggerFactory.getLogger(OrderIdempotencyService.class);
+
+    static final int MAX_KEY_LENGTH = 255;
+
+    private final OrderIdempotencyKeyRepository keyRepository;
+    private final ObjectMapper objectMapper;
+    private final Duration ttl;
+    private final Duration lease;
+    private final Counter replays;
+
+    public OrderIdempotencyService(OrderIdempotencyKeyRepository keyRepository, ObjectMapper objectMapper,
+                                   MeterRegistry meterRegistry,
+                                   @Value("${order.idempotency.ttl:24h}") Duration ttl,
+                                   @Value("${order.idempotency.lease:30s}") Duration lease) {
+        this.keyRepository = keyRepository;
+        this.objectMapper = objectMapper;
+        this.ttl = ttl;
+        this.lease = lease;
+        this.replays = Counter.builder("orders.idempotency.replays")
+                .description("Order submissions answered from a stored result")
+                .register(meterRegistry);
+    }
+
+    /**
+     * Runs {@code createOrder} once per user and key within the TTL and returns its order, or the
+     * order stored by an earlier request with the same key.
+     */
+    public OrderSubmission submit(String userId, String idempotencyKey, Order request, Supplier<Order> createOrder) {
+        if (idempotencyKey.isBlank() || idempotencyKey.length() > MAX_KEY_LENGTH) {
+            throw new IllegalArgumentException("Idempotency-Key must be 1 to " + MAX_KEY_LENGTH + " characters");
+        }
+        // hashed before createOrder fills in the status, date and totals
+        String requestHash = hash(request);
+        Instant now = Instant.now();
+
+        // keys are looked up on the primary: a replica may not have the claim or the stored response yet
+        Optional<OrderIdempotencyKey> existing = PrimaryReads.call(() -> keyRepository.findByUserIdAndIdempotencyKey(userId, idempotencyKey));
+        if (existing.isPresent()) {
+            if (existing.get().getExpiresAt().isAfter(now)) {
+                return replay(existing.get(), requestHash);
+            }
+            keyRepository.deleteIfExpired(existing.get().getId(), now);
+        }
+
+        OrderIdempotencyKey claim;
+        try {
+            claim = keyRepository.saveAndFlush(OrderIdempotencyKey.builder()
+                    .userId(userId)
+                    .idempotencyKey(idempotencyKey)
+                    .requestHash(requestHash)
+                    .expiresAt(now.plus(lease))
+                    .build());
+        } catch (DataIntegrityViolationException e) {
+            // a concurrent request with the same key claimed it first
+            return replay(PrimaryReads.call(() -> keyRepository.findByUserIdAndIdempotencyKey(userId, idempotencyKey))
+                    .orElseThrow(() -> inProgress(idempotencyKey)), requestHash);
+        }
+
+        Order created;
+        try {
+            created = createOrder.get();
+        } catch (IllegalArgumentException | StockRejectedException e) {
+            keyRepository.release(claim.getId());
+            throw e;
+        } catch (RuntimeException e) {
+            logger.warn("Order for idempotency key {} of user {} failed with an unknown outcome, key held until {}",
+                    idempotencyKey, userId, claim.getExpiresAt());
+            throw e;
+        }
+        keyRepository.complete(claim.getId(), toJson(created), Instant.now().plus(ttl));
+        return new OrderSubmission(created, false);
+    }
+
+    @Scheduled(fixedDelayString = "${order.idempotency.purge-interval:10m}")
+    public void purgeExpired() {
+        int purged = keyRepository.deleteExpired(Instant.now());
+        if (purged > 0) {
+            logger.info("Purged {} expired idempotency keys", purged);
+        }
+    }
+
+    private OrderSubmission replay(OrderIdempotencyKey key, String requestHash) {
+        if (!key.getRequestHash().equals(requestHash)) {
+            throw new IdempotencyConflictException(HttpStatus.UNPROCESSABLE_ENTITY,
+                    "Idempotency-Key " + key.getIdempotencyKey() + " was already used for a different order");
+        }
+        if (key.getResponse() == null) {
+            throw inProgress(key.getIdempotencyKey());
+        }
+        logger.info("Replaying order for idempotency key {} of user {}", key.getIdempotencyKey(), key.getUserId());
+        replays.increment();
+        try {
+            return new OrderSubmission(objectMapper.readValue(key.getResponse(), Order.class), true);
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException("Unreadable stored order for idempotency key " + key.getIdempotencyKey(), e);
+        }
+    }
+
+    private static IdempotencyConflictException inProgress(String idempotencyKey) {
+        return new IdempotencyConflictException(HttpStatus.CONFLICT,
+                "An order with Idempotency-Key " + idempotencyKey + " is still being processed");
+    }
+
+    private String hash(Order request) {
+        try {
+            return HexFormat.of().formatHex(MessageDigest.getInstance("SHA-256").digest(objectMapper.writeValueAsBytes(request)));
+        } catch (JsonProcessingException | NoSuchAlgorithmException e) {
+            throw new IllegalStateException("Cannot hash order request", e);
+        }
+    }
+
+    private String toJson(Order order) {
+        try {
+            return objectMapper.writeValueAsString(order);
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException("Cannot store order " + order.getId(), e);
+        }
+    }
+}
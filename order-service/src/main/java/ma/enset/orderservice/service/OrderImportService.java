@@ -0,0 +1,109 @@
+package ma.enset.orderservice.service;
+
+import com.fasterxml.jackson.databind.MappingIterator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import jakarta.persistence.EntityManager;
+import ma.enset.orderservice.entities.Order;
+import ma.enset.orderservice.entities.ProductItem;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+
+@Service
+public class OrderImportService {
+
+    private static final Logger logger = LoggerFactory.getLogger(OrderImportService.class);
+
+    private final EntityManager entityManager;
+    private final TransactionTemplate transactionTemplate;
+    private final ObjectMapper objectMapper;
+    private final int chunkSize;
+    private final int batchSize;
+
+    public OrderImportService(EntityManager entityManager, PlatformTransactionManager transactionManager,
+                              ObjectMapper objectMapper,
+                              @Value("${order.import.chunk-size:5000}") int chunkSize,
+                              @Value("${spring.jpa.properties.hibernate.jdbc.batch_size:50}") int batchSize) {
+        this.entityManager = entityManager;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.objectMapper = objectMapper;
+        this.chunkSize = chunkSize;
+        this.batchSize = batchSize;
+    }
+
+    /**
+     * Reads orders as newline-delimited JSON, in the format written by {@link OrderExportService},
+     * and inserts them as new orders. Every {@code chunkSize} orders are committed in one
+     * transaction, flushed in JDBC batches of {@code batchSize}; chunks committed before an invalid
+     * order stay imported.
+     *
+     * @return the number of imported orders
+     */
+    public long importOrders(InputStream in) throws IOException {
+        logger.info("Importing orders");
+        long imported = 0;
+        List<Order> chunk = new ArrayList<>(chunkSize);
+        try (MappingIterator<Order> orders = objectMapper.readerFor(Order.class).readValues(in)) {
+            while (orders.hasNextValue()) {
+                chunk.add(prepareOrder(orders.nextValue(), imported + chunk.size() + 1));
+                if (chunk.size() == chunkSize) {
+                    imported += persist(chunk);
+                    chunk.clear();
+                }
+            }
+        }
+        if (!chunk.isEmpty()) {
+            imported += persist(chunk);
+        }
+        logger.info("Imported {} orders", imported);
+        return imported;
+    }
+
+    // Flushing and clearing per batch keeps the persistence context, and with it dirty checking, small
+    private int persist(List<Order> chunk) {
+        transactionTemplate.executeWithoutResult(status -> {
+            for (int i = 0; i < chunk.size(); i++) {
+                entityManager.persist(chunk.get(i));
+                if ((i + 1) % batchSize == 0) {
+                    entityManager.flush();
+                    entityManager.clear();
+                }
+            }
+        });
+        logger.debug("Committed {} imported orders", chunk.size());
+        return chunk.size();
+    }
+
+    private Order prepareOrder(Order order, long line) {
+        if (order.getUserId() == null || order.getUserId().isBlank()) {
+            throw new IllegalArgumentException("Order " + line + ": user ID cannot be empty");
+        }
+        if (order.getProductItems() == null || order.getProductItems().isEmpty()) {
+            throw new IllegalArgumentException("Order " + line + ": order must contain at least one product");
+        }
+        for (ProductItem item : order.getProductItems()) {
+            if (item.getProductId() == null || item.getQuantity() <= 0 || item.getPriceCents() <= 0) {
+                throw new IllegalArgumentException("Order " + line + ": invalid product item " + item);
+            }
+        }
+        // exported ids belong to the source database; imported orders get new ones
+        order.setId(null);
+        order.setAmountCents(OrderService.applyLineTotals(order.getProductItems()));
+        if (order.getDate() == null) {
+            order.setDate(LocalDate.now());
+        }
+        if (order.getStatus() == null) {
+            order.setStatus("PENDING");
+        }
+        return order;
+    }
+}
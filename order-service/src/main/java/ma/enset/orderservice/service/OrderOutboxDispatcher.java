@@ -0,0 +1,142 @@
+package ma.enset.orderservice.service;
+
+import io.micrometer.context.ContextExecutorService;
+import io.micrometer.context.ContextSnapshotFactory;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import ma.enset.orderservice.model.ClaimedOrder;
+import ma.enset.orderservice.security.ServiceTokenProvider;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpHeaders;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.web.client.HttpClientErrorException;
+import org.springframework.web.client.RestClient;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Reserves stock for orders accepted in async mode, and for sync orders whose reservation ended
+ * with an unknown outcome. Due outbox entries are claimed in batches and
+ * sent to product-service concurrently; each reservation carries the order as its idempotency key,
+ * so an entry redelivered after a crash or an expired lease never reserves stock twice.
+ * <p>
+ * A business rejection marks the order REJECTED; any other failure (product-service down, circuit
+ * open, conflict) reschedules the entry with capped exponential backoff.
+ */
+@Component
+public class OrderOutboxDispatcher {
+
+    private static final Logger logger = LoggerFactory.getLogger(OrderOutboxDispatcher.class);
+
+    static final String IDEMPOTENCY_KEY_HEADER = "Idempotency-Key";
+
+    // statuses product-service answers when the reservation itself is invalid; retrying will not help
+    static final Set<Integer> REJECTIONS = Set.of(400, 404, 422);
+
+    private final OrderOutboxService outboxService;
+    private final RestClient restClient;
+    private final ServiceTokenProvider serviceTokenProvider;
+    private final OrderStatusNotifier statusNotifier;
+    private final int batchSize;
+    private final Duration lease;
+    private final Duration initialBackoff;
+    private final Duration maxBackoff;
+    private final Counter confirmed;
+    private final Counter rejected;
+    private final Counter retried;
+
+    public OrderOutboxDispatcher(OrderOutboxService outboxService, RestClient restClient,
+                                 ServiceTokenProvider serviceTokenProvider, OrderStatusNotifier statusNotifier,
+                                 MeterRegistry meterRegistry,
+                                 @Value("${order.async.batch-size:50}") int batchSize,
+                                 @Value("${order.async.lease:30s}") Duration lease,
+                                 @Value("${order.async.initial-backoff:1s}") Duration initialBackoff,
+                                 @Value("${order.async.max-backoff:1m}") Duration maxBackoff) {
+        this.outboxService = outboxService;
+        this.restClient = restClient;
+        this.serviceTokenProvider = serviceTokenProvider;
+        this.statusNotifier = statusNotifier;
+        this.batchSize = batchSize;
+        this.lease = lease;
+        this.initialBackoff = initialBackoff;
+        this.maxBackoff = maxBackoff;
+        this.confirmed = meterRegistry.counter("orders.async.dispatched", "result", "confirmed");
+        this.rejected = meterRegistry.counter("orders.async.dispatched", "result", "rejected");
+        this.retried = meterRegistry.counter("orders.async.dispatched", "result", "retried");
+    }
+
+    // Drains full batches back to back, then waits for the next poll
+    @Scheduled(fixedDelayString = "${order.async.poll-interval:500ms}")
+    public void dispatch() {
+        List<ClaimedOrder> batch;
+        do {
+            batch = outboxService.claimDue(batchSize, lease);
+            if (batch.isEmpty()) {
+                return;
+            }
+            logger.debug("Dispatching {} order reservations", batch.size());
+            // reservations are traced as children of the scheduled run that claimed them
+            try (ExecutorService executor = ContextExecutorService.wrap(Executors.newVirtualThreadPerTaskExecutor(),
+                    ContextSnapshotFactory.builder().build())) {
+                for (ClaimedOrder claimed : batch) {
+                    executor.submit(() -> process(claimed));
+                }
+            }
+        } while (batch.size() == batchSize);
+    }
+
+    private void process(ClaimedOrder claimed) {
+        try {
+            restClient.post()
+                    .uri("/products/stock/reservations")
+                    .header(HttpHeaders.AUTHORIZATION, serviceTokenProvider.getAuthorizationHeader())
+                    .header(IDEMPOTENCY_KEY_HEADER, idempotencyKey(claimed.orderId()))
+                    .body(claimed.reservations())
+                    .retrieve()
+                    .toBodilessEntity();
+            finish(claimed, "CONFIRMED");
+            confirmed.increment();
+        } catch (HttpClientErrorException e) {
+            if (!REJECTIONS.contains(e.getStatusCode().value())) {
+                retry(claimed, e.getStatusCode() + " " + e.getResponseBodyAsString());
+                return;
+            }
+            logger.info("Stock reservation rejected for order {}: {}", claimed.orderId(), e.getResponseBodyAsString());
+            finish(claimed, "REJECTED");
+            rejected.increment();
+        } catch (RuntimeException e) {
+            retry(claimed, e.toString());
+        }
+    }
+
+    // the same key for the sync attempt and every redelivery, so product-service applies the order once
+    static String idempotencyKey(Long orderId) {
+        return "order-" + orderId;
+    }
+
+    private void finish(ClaimedOrder claimed, String status) {
+        outboxService.complete(claimed, status);
+        statusNotifier.statusChanged(claimed.orderId(), claimed.userId(), status);
+        logger.info("Order {} {}", claimed.orderId(), status);
+    }
+
+    private void retry(ClaimedOrder claimed, String error) {
+        Duration delay = backoff(claimed.attempts());
+        logger.warn("Reservation for order {} failed (attempt {}), retrying in {}: {}",
+                claimed.orderId(), claimed.attempts() + 1, delay, error);
+        outboxService.reschedule(claimed, delay, error);
+        retried.increment();
+    }
+
+    private Duration backoff(int attempts) {
+        Duration delay = initialBackoff.multipliedBy(1L << Math.min(attempts, 20));
+        return delay.compareTo(maxBackoff) > 0 ? maxBackoff : delay;
+    }
+}
@@ -0,0 +1,105 @@
+package ma.enset.orderservice.service;
+
+import ma.enset.orderservice.entities.Order;
+import ma.enset.orderservice.entities.OrderOutbox;
+import ma.enset.orderservice.model.ClaimedOrder;
+import ma.enset.orderservice.model.StockReservation;
+import ma.enset.orderservice.repository.OrderOutboxRepository;
+import ma.enset.orderservice.repository.OrderRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.data.domain.Limit;
+import org.springframework.data.domain.Sort;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+/**
+ * Transactional side of the async order pipeline: each method is one short local transaction, so
+ * no database connection or row lock is held while product-service is being called.
+ */
+@Service
+public class OrderOutboxService {
+
+    private static final Logger logger = LoggerFactory.getLogger(OrderOutboxService.class);
+
+    private final OrderRepository orderRepository;
+    private final OrderOutboxRepository outboxRepository;
+
+    public OrderOutboxService(OrderRepository orderRepository, OrderOutboxRepository outboxRepository) {
+        this.orderRepository = orderRepository;
+        this.outboxRepository = outboxRepository;
+    }
+
+    @Transactional
+    public Order saveWithOutbox(Order order) {
+        Order savedOrder = orderRepository.save(order);
+        enqueue(savedOrder.getId());
+        return savedOrder;
+    }
+
+    /**
+     * Hands an order that is already saved to {@link OrderOutboxDispatcher}, which reserves its
+     * stock on its next run.
+     */
+    @Transactional
+    public void enqueue(Long orderId) {
+        outboxRepository.save(OrderOutbox.builder()
+                .orderId(orderId)
+                .availableAt(Instant.now())
+                .build());
+    }
+
+    /**
+     * Claims up to {@code limit} due entries by pushing their availability past {@code lease}: if
+     * the dispatcher dies mid-flight they become due again once the lease runs out.
+     */
+    @Transactional
+    public List<ClaimedOrder> claimDue(int limit, Duration lease) {
+        Instant now = Instant.now();
+        List<OrderOutbox> due = outboxRepository.findDue(now, Limit.of(limit));
+        if (due.isEmpty()) {
+            return List.of();
+        }
+        Map<Long, Order> orders = orderRepository.findByIdIn(due.stream().map(OrderOutbox::getOrderId).toList(), Sort.unsorted())
+                .stream()
+                .collect(Collectors.toMap(Order::getId, Function.identity()));
+
+        List<ClaimedOrder> claimed = new ArrayList<>(due.size());
+        for (OrderOutbox entry : due) {
+            Order order = orders.get(entry.getOrderId());
+            if (order == null) {
+                logger.warn("Dropping outbox entry {} for missing order {}", entry.getId(), entry.getOrderId());
+                outboxRepository.delete(entry);
+                continue;
+            }
+            entry.setAvailableAt(now.plus(lease));
+            claimed.add(new ClaimedOrder(entry.getId(), entry.getAttempts(), order.getId(), order.getUserId(), order.getProductItems().stream()
+                    .map(item -> new StockReservation(item.getProductId(), item.getQuantity()))
+                    .toList()));
+        }
+        return claimed;
+    }
+
+    @Transactional
+    public void complete(ClaimedOrder claimed, String status) {
+        orderRepository.updateStatus(claimed.orderId(), status);
+        outboxRepository.deleteById(claimed.outboxId());
+    }
+
+    @Transactional
+    public void reschedule(ClaimedOrder claimed, Duration delay, String error) {
+        outboxRepository.findById(claimed.outboxId()).ifPresent(entry -> {
+            entry.setAttempts(claimed.attempts() + 1);
+            entry.setAvailableAt(Instant.now().plus(delay));
+            entry.setLastError(error != null && error.length() > 1000 ? error.substring(0, 1000) : error);
+        });
+    }
+}
@@ -1,14 +1,31 @@
 package ma.enset.orderservice.service;
 
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import ma.enset.orderservice.config.PrimaryReads;
+import ma.enset.orderservice.config.ReadYourWrites;
 import ma.enset.orderservice.entities.Order;
 import ma.enset.orderservice.entities.ProductItem;
+import ma.enset.orderservice.exception.StockRejectedException;
+import ma.enset.orderservice.model.StockReservation;
 import ma.enset.orderservice.repository.OrderRepository;
+import ma.enset.orderservice.security.ServiceTokenProvider;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageImpl;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Sort;
 import org.springframework.security.core.context.SecurityContextHolder;
 import org.springframework.security.oauth2.server.resource.authentication.JwtAuthenticationToken;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.web.client.HttpClientErrorException;
 import org.springframework.web.client.RestClient;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
 
 import java.time.LocalDate;
 import java.util.List;
@@ -21,10 +38,49 @@ public class OrderService {
 
     private final OrderRepository orderRepository;
     private final RestClient restClient;
+    private final StockAvailabilityChecker stockAvailabilityChecker;
+    private final boolean stockPrecheck;
+    private final OrderOutboxService orderOutboxService;
+    private final ServiceTokenProvider serviceTokenProvider;
+    private final OrderStatusNotifier orderStatusNotifier;
+    private final ReadYourWrites readYourWrites;
+    private final boolean asyncOrders;
+    private final MeterRegistry meterRegistry;
+    private final Timer validationTimer;
+    private final Timer stockCheckTimer;
+    private final Timer stockReservationTimer;
+    private final Timer persistTimer;
+    private final Counter stockRejections;
+    private final Counter stockHandoffs;
 
-    public OrderService(OrderRepository orderRepository, RestClient restClient) {
+    public OrderService(OrderRepository orderRepository, RestClient restClient,
+                        StockAvailabilityChecker stockAvailabilityChecker,
+                        @Value("${order.stock-check.enabled:false}") boolean stockPrecheck,
+                        OrderOutboxService orderOutboxService, ServiceTokenProvider serviceTokenProvider,
+                        OrderStatusNotifier orderStatusNotifier,
+                        ReadYourWrites readYourWrites,
+                        @Value("${order.async.enabled:false}") boolean asyncOrders,
+                        MeterRegistry meterRegistry) {
         this.orderRepository = orderRepository;
         this.restClient = restClient;
+        this.stockAvailabilityChecker = stockAvailabilityChecker;
+        this.stockPrecheck = stockPrecheck;
+        this.orderOutboxService = orderOutboxService;
+        this.serviceTokenProvider = serviceTokenProvider;
+        this.orderStatusNotifier = orderStatusNotifier;
+        this.readYourWrites = readYourWrites;
+        this.asyncOrders = asyncOrders;
+        this.meterRegistry = meterRegistry;
+        this.validationTimer = phaseTimer(meterRegistry, "validation");
+        this.stockCheckTimer = phaseTimer(meterRegistry, "stock_check");
+        this.stockReservationTimer = phaseTimer(meterRegistry, "stock_reservation");
+        this.persistTimer = phaseTimer(meterRegistry, "persist");
+        this.stockRejections = Counter.builder("orders.stock.rejections")
+                .description("Orders refused because product-service could not reserve their stock")
+                .register(meterRegistry);
+        this.stockHandoffs = Counter.builder("orders.stock.handoffs")
+                .description("Sync orders whose reservation outcome was unknown, left to the outbox dispatcher")
+                .register(meterRegistry);
     }
 
     private String getBearerToken() {
@@ -35,60 +91,168 @@ public class OrderService {
         return null;
     }
 
+    /**
+     * Creates the order, timing the whole call as {@code orders.create} and each step as
+     * {@code orders.create.phase}.
+     */
     public Order createOrder(Order order, String username) {
-        validateOrder(order);
+        Timer.Sample sample = Timer.start(meterRegistry);
+        String outcome = "error";
+        try {
+            Order created = doCreateOrder(order, username);
+            outcome = "success";
+            return created;
+        } finally {
+            sample.stop(Timer.builder("orders.create")
+                    .description("Time to create an order")
+                    .tag("mode", asyncOrders ? "async" : "sync")
+                    .tag("outcome", outcome)
+                    .register(meterRegistry));
+        }
+    }
+
+    private Order doCreateOrder(Order order, String username) {
+        validationTimer.record(() -> validateOrder(order));
         logger.info("User {} creating order with {} items", username, order.getProductItems().size());
 
+        if (asyncOrders) {
+            // one local transaction: the order and its outbox entry; stock is reserved in the background
+            Order savedOrder = persistTimer.record(() -> orderOutboxService.saveWithOutbox(preparePendingOrder(order, username)));
+            logger.info("Order {} accepted for user {}", savedOrder.getId(), username);
+            readYourWrites.recordWrite(username);
+            orderStatusNotifier.statusChanged(savedOrder.getId(), username, savedOrder.getStatus());
+            return savedOrder;
+        }
+
         String authHeader = getBearerToken();
 
-        // Check stock for each product
-        for (ProductItem item : order.getProductItems()) {
-            Boolean stockAvailable = restClient.get()
-                    .uri("/products/{id}/stock?quantity={qty}", item.getProductId(), item.getQuantity())
-                    .header("Authorization", authHeader)
-                    .retrieve()
-                    .body(Boolean.class);
-            if (!Boolean.TRUE.equals(stockAvailable)) {
-                logger.error("Insufficient stock for product {} requested by user {}", item.getProductId(), username);
-                throw new RuntimeException("Insufficient stock for product " + item.getProductId());
-            }
+        // Optional per-item pre-check, run in parallel: rejects with the unavailable product
+        // before the reservation takes any row locks on product-service
+        if (stockPrecheck) {
+            stockCheckTimer.record(() -> stockAvailabilityChecker.checkAll(order.getProductItems(), authHeader));
         }
 
-        // Calculate total
-        double total = order.getProductItems().stream()
-                .mapToDouble(item -> item.getPrice() * item.getQuantity())
-                .sum();
-        order.setAmount(total);
-        order.setDate(LocalDate.now());
-        order.setStatus("PENDING");
-        order.setUserId(username);
-
-        Order savedOrder = orderRepository.save(order);
+        // Persisted as PENDING before the stock is taken: once product-service has committed the
+        // reservation there is always an order that accounts for it
+        Order savedOrder = persistTimer.record(() -> orderRepository.save(preparePendingOrder(order, username)));
         logger.info("Order {} created for user {}", savedOrder.getId(), username);
+        readYourWrites.recordWrite(username);
+        orderStatusNotifier.statusChanged(savedOrder.getId(), username, savedOrder.getStatus());
 
-        // Reduce stock
-        for (ProductItem item : order.getProductItems()) {
-            restClient.put()
-                    .uri("/products/{id}/reduce-stock?quantity={qty}", item.getProductId(), item.getQuantity())
-                    .header("Authorization", authHeader)
+        // Reserve stock for all products in a single call
+        List<StockReservation> reservations = order.getProductItems().stream()
+                .map(item -> new StockReservation(item.getProductId(), item.getQuantity()))
+                .collect(Collectors.toList());
+        if (stockReservationTimer.record(() -> reserveStock(savedOrder, reservations, username))) {
+            finish(savedOrder, "CONFIRMED");
+        }
+        return savedOrder;
+    }
+
+    /**
+     * Reserves the order's stock with order-service's token and the order as idempotency key, the
+     * same request {@link OrderOutboxDispatcher} sends. Returns false when the outcome is unknown:
+     * the order stays PENDING and is handed to the dispatcher, whose retries product-service
+     * recognises as this reservation.
+     */
+    private boolean reserveStock(Order order, List<StockReservation> reservations, String username) {
+        try {
+            restClient.post()
+                    .uri("/products/stock/reservations")
+                    .header("Authorization", serviceTokenProvider.getAuthorizationHeader())
+                    .header(OrderOutboxDispatcher.IDEMPOTENCY_KEY_HEADER, OrderOutboxDispatcher.idempotencyKey(order.getId()))
+                    .body(reservations)
                     .retrieve()
                     .toBodilessEntity();
-            logger.debug("Reduced stock for product {} by {} for order {}", item.getProductId(), item.getQuantity(), savedOrder.getId());
+            return true;
+        } catch (HttpClientErrorException e) {
+            if (OrderOutboxDispatcher.REJECTIONS.contains(e.getStatusCode().value())) {
+                stockRejections.increment();
+                logger.error("Stock reservation rejected for order {} of user {}: {}", order.getId(), username, e.getResponseBodyAsString());
+                finish(order, "REJECTED");
+                throw new StockRejectedException(e.getResponseBodyAsString());
+            }
+            handOff(order, username, e.getStatusCode() + " " + e.getResponseBodyAsString());
+            return false;
+        } catch (RuntimeException e) {
+            handOff(order, username, e.toString());
+            return false;
         }
+    }
 
-        return savedOrder;
+    // the reservation may or may not have been applied: the dispatcher retries it under the same key
+    private void handOff(Order order, String username, String error) {
+        logger.warn("Stock reservation for order {} of user {} has an unknown outcome, handed to the outbox: {}",
+                order.getId(), username, error);
+        orderOutboxService.enqueue(order.getId());
+        stockHandoffs.increment();
     }
 
-    public List<Order> getOrdersByUser(String username) {
-        logger.info("Fetching orders for user {}", username);
-        return orderRepository.findAll().stream()
-                .filter(order -> username.equals(order.getUserId()))
-                .collect(Collectors.toList());
+    private void finish(Order order, String status) {
+        orderRepository.updateStatus(order.getId(), status);
+        order.setStatus(status);
+        orderStatusNotifier.statusChanged(order.getId(), order.getUserId(), status);
+    }
+
+    /**
+     * Streams the order's final status once stock has been reserved or rejected. Orders that are
+     * already past PENDING get their status immediately.
+     */
+    public SseEmitter subscribeToStatus(Long id) {
+        // subscribe before reading, so a status published in between is not missed
+        SseEmitter emitter = orderStatusNotifier.subscribe(id);
+        // from the primary: a lagging replica could still say PENDING after the final status was published
+        String status = PrimaryReads.call(() -> orderRepository.findStatusById(id)).orElse(null);
+        if (status == null) {
+            orderStatusNotifier.unsubscribe(id, emitter);
+            logger.error("Order not found with id: {}", id);
+            throw new RuntimeException("Order not found");
+        }
+        if (!"PENDING".equals(status)) {
+            orderStatusNotifier.publish(id, status);
+        }
+        return emitter;
+    }
+
+    /**
+     * Streams status changes of the user's orders, or of all orders when {@code username} is null.
+     */
+    public SseEmitter subscribeToOrders(String username) {
+        return orderStatusNotifier.subscribeToOrders(username);
     }
 
-    public List<Order> getAllOrders() {
-        logger.info("Fetching all orders");
-        return orderRepository.findAll();
+    @Transactional(readOnly = true)
+    public Page<Order> getOrdersByUser(String username, Pageable pageable) {
+        logger.info("Fetching orders page {} for user {}", pageable.getPageNumber(), username);
+        Page<Long> ids = orderRepository.findIdsByUserId(username, pageable);
+        if (ids.isEmpty()) {
+            return new PageImpl<>(List.of(), pageable, ids.getTotalElements());
+        }
+        return new PageImpl<>(orderRepository.findByIdIn(ids.getContent(), pageable.getSort()), pageable, ids.getTotalElements());
+    }
+
+    /**
+     * Keyset variant of {@link #getOrdersByUser(String, Pageable)}: returns up to {@code limit} orders
+     * older than {@code beforeId}, newest first, without counting or skipping rows.
+     */
+    @Transactional(readOnly = true)
+    public List<Order> getOrdersByUserBefore(String username, Long beforeId, int limit) {
+        logger.info("Fetching orders before {} for user {}", beforeId, username);
+        List<Long> ids = orderRepository.findIdsByUserIdBefore(username, beforeId, PageRequest.ofSize(limit));
+        if (ids.isEmpty()) {
+            return List.of();
+        }
+        return orderRepository.findByIdIn(ids, Sort.by(Sort.Direction.DESC, "id"));
+    }
+
+    @Transactional(readOnly = true)
+    public List<Order> getAllOrdersBefore(Long beforeId, int limit) {
+        logger.info("Fetching all orders before {}", beforeId);
+        List<Long> ids = orderRepository.findIdsBefore(beforeId, PageRequest.ofSize(limit));
+        if (ids.isEmpty()) {
+            return List.of();
+        }
+        return orderRepository.findByIdIn(ids, Sort.by(Sort.Direction.DESC, "id"));
     }
 
     public Order getOrderById(Long id) {
@@ -99,6 +263,33 @@ public class OrderService {
         });
     }
 
+    private Order preparePendingOrder(Order order, String username) {
+        order.setAmountCents(applyLineTotals(order.getProductItems()));
+        order.setDate(LocalDate.now());
+        order.setStatus("PENDING");
+        order.setUserId(username);
+        return order;
+    }
+
+    /**
+     * Stores each item's line total and returns their sum, all in exact cents.
+     */
+    static long applyLineTotals(List<ProductItem> items) {
+        long total = 0;
+        for (ProductItem item : items) {
+            item.setLineTotalCents(Math.multiplyExact(item.getPriceCents(), item.getQuantity()));
+            total = Math.addExact(total, item.getLineTotalCents());
+        }
+        return total;
+    }
+
+    private static Timer phaseTimer(MeterRegistry meterRegistry, String phase) {
+        return Timer.builder("orders.create.phase")
+                .description("Time spent in each step of order creation")
+                .tag("phase", phase)
+                .register(meterRegistry);
+    }
+
     private void validateOrder(Order order) {
         if (order.getProductItems() == null || order.getProductItems().isEmpty()) {
             throw new IllegalArgumentException("Order must contain at least one product");
@@ -110,7 +301,7 @@ public class OrderService {
             if (item.getQuantity() <= 0) {
                 throw new IllegalArgumentException("Quantity must be positive");
             }
-            if (item.getPrice() <= 0) {
+            if (item.getPriceCents() <= 0) {
                 throw new IllegalArgumentException("Price must be positive");
             }
         }
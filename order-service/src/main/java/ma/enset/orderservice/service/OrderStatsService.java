@@ -0,0 +1,58 @@
+package ma.enset.orderservice.service;
+
+import ma.enset.orderservice.model.OrderStats;
+import ma.enset.orderservice.model.StatusCount;
+import ma.enset.orderservice.repository.OrderRepository;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.Limit;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.LocalDate;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+@Service
+public class OrderStatsService {
+
+    private static final String CONFIRMED = "CONFIRMED";
+
+    private final OrderRepository orderRepository;
+    private final int maxTop;
+
+    public OrderStatsService(OrderRepository orderRepository,
+                             @Value("${order.stats.max-top:100}") int maxTop) {
+        this.orderRepository = orderRepository;
+        this.maxTop = maxTop;
+    }
+
+    /**
+     * Aggregates orders dated within {@code [from, to]} in the database: three grouped queries,
+     * whatever the number of orders, returning at most one row per status plus {@code top}
+     * products and users.
+     */
+    @Transactional(readOnly = true)
+    public OrderStats getStats(LocalDate from, LocalDate to, int top) {
+        if (from.isAfter(to)) {
+            throw new IllegalArgumentException("from must not be after to");
+        }
+        if (top < 1 || top > maxTop) {
+            throw new IllegalArgumentException("top must be between 1 and " + maxTop);
+        }
+        List<StatusCount> statusCounts = orderRepository.countByStatus(from, to);
+        Map<String, Long> ordersByStatus = new TreeMap<>();
+        long orders = 0;
+        long revenueCents = 0;
+        for (StatusCount count : statusCounts) {
+            ordersByStatus.put(count.status(), count.orders());
+            orders += count.orders();
+            if (CONFIRMED.equals(count.status())) {
+                revenueCents += count.amountCents();
+            }
+        }
+        return new OrderStats(from, to, revenueCents, orders, ordersByStatus,
+                orderRepository.findTopProducts(from, to, Limit.of(top)),
+                orderRepository.findTopUsers(from, to, Limit.of(top)));
+    }
+}
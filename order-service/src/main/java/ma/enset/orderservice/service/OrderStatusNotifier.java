@@ -0,0 +1,141 @@
+package ma.enset.orderservice.service;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import ma.enset.orderservice.model.OrderStatusEvent;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Pushes the final status of an order to clients waiting on {@code GET /orders/{id}/status}, and
+ * every status change of a user's orders to their {@code GET /orders/events} streams (all orders
+ * for admins). Subscriptions are in memory: a client whose stream times out, or is connected to
+ * another instance than the one that changed the order, falls back to {@code GET /orders}.
+ */
+@Component
+public class OrderStatusNotifier {
+
+    private static final Logger logger = LoggerFactory.getLogger(OrderStatusNotifier.class);
+
+    private final ConcurrentMap<Long, List<SseEmitter>> subscribers = new ConcurrentHashMap<>();
+    private final ConcurrentMap<String, List<CoalescingEmitter<Long, OrderStatusEvent>>> userStreams = new ConcurrentHashMap<>();
+    private final List<CoalescingEmitter<Long, OrderStatusEvent>> allOrdersStreams = new CopyOnWriteArrayList<>();
+    private final ExecutorService senders = Executors.newVirtualThreadPerTaskExecutor();
+    private final Duration timeout;
+    private final Duration eventsTimeout;
+    private final int maxPending;
+
+    public OrderStatusNotifier(@Value("${order.async.status-timeout:30s}") Duration timeout,
+                               @Value("${order.events.timeout:30m}") Duration eventsTimeout,
+                               @Value("${order.events.max-pending:256}") int maxPending,
+                               MeterRegistry meterRegistry) {
+        this.timeout = timeout;
+        this.eventsTimeout = eventsTimeout;
+        this.maxPending = maxPending;
+        meterRegistry.gauge("orders.events.subscribers", this, notifier -> notifier.allOrdersStreams.size()
+                + notifier.userStreams.values().stream().mapToInt(List::size).sum());
+    }
+
+    public SseEmitter subscribe(Long orderId) {
+        SseEmitter emitter = new SseEmitter(timeout.toMillis());
+        // compute is atomic with the remove in publish, so a subscriber is never added to an already published list
+        subscribers.compute(orderId, (id, emitters) -> {
+            List<SseEmitter> list = emitters != null ? emitters : new CopyOnWriteArrayList<>();
+            list.add(emitter);
+            return list;
+        });
+        emitter.onCompletion(() -> unsubscribe(orderId, emitter));
+        emitter.onTimeout(() -> unsubscribe(orderId, emitter));
+        emitter.onError(e -> unsubscribe(orderId, emitter));
+        return emitter;
+    }
+
+    public void unsubscribe(Long orderId, SseEmitter emitter) {
+        subscribers.computeIfPresent(orderId, (id, emitters) -> {
+            emitters.remove(emitter);
+            return emitters.isEmpty() ? null : emitters;
+        });
+    }
+
+    public void publish(Long orderId, String status) {
+        List<SseEmitter> emitters = subscribers.remove(orderId);
+        if (emitters == null) {
+            return;
+        }
+        logger.debug("Notifying {} subscribers that order {} is {}", emitters.size(), orderId, status);
+        for (SseEmitter emitter : emitters) {
+            try {
+                emitter.send(SseEmitter.event().name("status").data(status));
+                emitter.complete();
+            } catch (IOException | IllegalStateException e) {
+                emitter.completeWithError(e);
+            }
+        }
+    }
+
+    /**
+     * Streams {@code status} events for the user's orders, or for every order when {@code userId}
+     * is null. Each event carries the orders that changed since the previous one, at their latest status.
+     */
+    public SseEmitter subscribeToOrders(String userId) {
+        CoalescingEmitter<Long, OrderStatusEvent> subscriber =
+                new CoalescingEmitter<>(new SseEmitter(eventsTimeout.toMillis()), "status", maxPending, senders);
+        if (userId == null) {
+            allOrdersStreams.add(subscriber);
+        } else {
+            userStreams.computeIfAbsent(userId, id -> new CopyOnWriteArrayList<>()).add(subscriber);
+        }
+        Runnable unsubscribe = () -> {
+            subscriber.close();
+            removeStream(userId, subscriber);
+        };
+        subscriber.emitter().onCompletion(unsubscribe);
+        subscriber.emitter().onTimeout(unsubscribe);
+        subscriber.emitter().onError(e -> unsubscribe.run());
+        return subscriber.emitter();
+    }
+
+    /**
+     * Publishes a committed status change to the order's waiters and to its user's and admins' streams.
+     */
+    public void statusChanged(Long orderId, String userId, String status) {
+        if (!"PENDING".equals(status)) {
+            publish(orderId, status);
+        }
+        OrderStatusEvent event = new OrderStatusEvent(orderId, userId, status);
+        if (userId != null) {
+            offer(userId, userStreams.getOrDefault(userId, List.of()), event);
+        }
+        offer(null, allOrdersStreams, event);
+    }
+
+    private void offer(String userId, List<CoalescingEmitter<Long, OrderStatusEvent>> streams, OrderStatusEvent event) {
+        for (CoalescingEmitter<Long, OrderStatusEvent> stream : streams) {
+            if (!stream.offer(event.orderId(), event)) {
+                removeStream(userId, stream);
+            }
+        }
+    }
+
+    private void removeStream(String userId, CoalescingEmitter<Long, OrderStatusEvent> stream) {
+        if (userId == null) {
+            allOrdersStreams.remove(stream);
+            return;
+        }
+        userStreams.computeIfPresent(userId, (id, streams) -> {
+            streams.remove(stream);
+            return streams.isEmpty() ? null : streams;
+        });
+    }
+}
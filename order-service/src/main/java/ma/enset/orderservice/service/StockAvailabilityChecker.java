@@ -0,0 +1,108 @@
+package ma.enset.orderservice.service;
+
+import io.micrometer.context.ContextExecutorService;
+import io.micrometer.context.ContextSnapshotFactory;
+import ma.enset.orderservice.entities.ProductItem;
+import ma.enset.orderservice.exception.StockRejectedException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.web.client.HttpClientErrorException;
+import org.springframework.web.client.RestClient;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+
+@Service
+public class StockAvailabilityChecker {
+
+    private static final Logger logger = LoggerFactory.getLogger(StockAvailabilityChecker.class);
+
+    private final RestClient restClient;
+    private final Duration deadline;
+    private final int maxInFlight;
+
+    public StockAvailabilityChecker(RestClient restClient,
+                                    @Value("${order.stock-check.deadline:2s}") Duration deadline,
+                                    @Value("${order.stock-check.max-in-flight:8}") int maxInFlight) {
+        this.restClient = restClient;
+        this.deadline = deadline;
+        this.maxInFlight = maxInFlight;
+    }
+
+    /**
+     * Checks every product of an order concurrently on virtual threads, at most {@code maxInFlight}
+     * at a time, so the order waits for its slowest item rather than the sum of all of them.
+     * The first unavailable product or the overall deadline cancels the checks still running.
+     */
+    public void checkAll(List<ProductItem> items, String authHeader) {
+        // one call per product, even if it appears on several lines
+        Map<Long, Integer> quantities = new LinkedHashMap<>();
+        items.forEach(item -> quantities.merge(item.getProductId(), item.getQuantity(), Integer::sum));
+
+        long deadlineNanos = System.nanoTime() + deadline.toNanos();
+        Semaphore permits = new Semaphore(maxInFlight);
+        // the checks run under the caller's trace, so each call to product-service is a child span
+        try (ExecutorService executor = ContextExecutorService.wrap(Executors.newVirtualThreadPerTaskExecutor(),
+                ContextSnapshotFactory.builder().build())) {
+            CompletionService<Void> completion = new ExecutorCompletionService<>(executor);
+            List<Future<Void>> checks = new ArrayList<>(quantities.size());
+            quantities.forEach((productId, quantity) -> checks.add(completion.submit(() -> {
+                permits.acquire();
+                try {
+                    check(productId, quantity, authHeader);
+                    return null;
+                } finally {
+                    permits.release();
+                }
+            })));
+            try {
+                for (int i = 0; i < checks.size(); i++) {
+                    Future<Void> done = completion.poll(deadlineNanos - System.nanoTime(), TimeUnit.NANOSECONDS);
+                    if (done == null) {
+                        logger.error("Stock check for {} products exceeded {} ms", checks.size(), deadline.toMillis());
+                        throw new RuntimeException("Stock check timed out");
+                    }
+                    done.get();
+                }
+            } catch (ExecutionException e) {
+                throw e.getCause() instanceof RuntimeException cause ? cause : new RuntimeException(e.getCause());
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new RuntimeException("Stock check interrupted");
+            } finally {
+                checks.forEach(check -> check.cancel(true));
+            }
+        }
+    }
+
+    private void check(Long productId, int quantity, String authHeader) {
+        Boolean available;
+        try {
+            available = restClient.get()
+                    .uri("/products/{id}/stock?quantity={quantity}", productId, quantity)
+                    .header("Authorization", authHeader)
+                    .retrieve()
+                    .body(Boolean.class);
+        } catch (HttpClientErrorException e) {
+            logger.error("Stock check rejected for product {}: {}", productId, e.getResponseBodyAsString());
+            throw new StockRejectedException(e.getResponseBodyAsString());
+        }
+        if (!Boolean.TRUE.equals(available)) {
+            logger.warn("Insufficient stock for product {} (requested {})", productId, quantity);
+            throw new StockRejectedException("Insufficient stock for product " + productId);
+        }
+    }
+}
@@ -0,0 +1,189 @@
+package ma.enset.orderservice.config;
+
+import com.sun.net.httpserver.HttpServer;
+import io.github.resilience4j.bulkhead.Bulkhead;
+import io.github.resilience4j.bulkhead.BulkheadConfig;
+import io.github.resilience4j.bulkhead.BulkheadFullException;
+import io.github.resilience4j.circuitbreaker.CallNotPermittedException;
+import io.github.resilience4j.circuitbreaker.CircuitBreaker;
+import io.github.resilience4j.circuitbreaker.CircuitBreakerConfig;
+import io.github.resilience4j.core.IntervalFunction;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.apache.hc.client5.http.impl.classic.HttpClients;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.client.HttpComponentsClientHttpRequestFactory;
+import org.springframework.web.client.HttpServerErrorException;
+import org.springframework.web.client.RestClient;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.time.Duration;
+import java.util.Queue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+/**
+ * Runs the interceptor against a stub product-service whose status codes and latency are scripted per test.
+ */
+class ProductServiceResilienceInterceptorTests {
+
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private final Queue<Integer> statuses = new ConcurrentLinkedQueue<>();
+    private final AtomicInteger calls = new AtomicInteger();
+    private final CountDownLatch release = new CountDownLatch(1);
+    private volatile boolean blocking;
+
+    private HttpServer productService;
+    private CircuitBreaker circuitBreaker;
+
+    @BeforeEach
+    void startProductService() throws IOException {
+        productService = HttpServer.create(new InetSocketAddress("localhost", 0), 0);
+        productService.setExecutor(Executors.newVirtualThreadPerTaskExecutor());
+        productService.createContext("/products/", exchange -> {
+            calls.incrementAndGet();
+            exchange.getRequestBody().readAllBytes();
+            if (blocking) {
+                try {
+                    release.await(5, TimeUnit.SECONDS);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+            Integer status = statuses.poll();
+            byte[] body = "true".getBytes();
+            exchange.getResponseHeaders().add("Content-Type", "application/json");
+            exchange.sendResponseHeaders(status != null ? status : 200, body.length);
+            exchange.getResponseBody().write(body);
+            exchange.close();
+        });
+        productService.start();
+        circuitBreaker = CircuitBreaker.of("product-service", CircuitBreakerConfig.custom()
+                .slidingWindowSize(4)
+                .minimumNumberOfCalls(4)
+                .failureRateThreshold(50)
+                .waitDurationInOpenState(Duration.ofMinutes(1))
+                .build());
+    }
+
+    @AfterEach
+    void stopProductService() {
+        release.countDown();
+        productService.stop(0);
+    }
+
+    @Test
+    void retriesStockChecksOnServerErrors() {
+        statuses.add(503);
+        statuses.add(502);
+        RestClient restClient = restClient(new RetryBudget(0.1, 10), 10);
+
+        Boolean available = restClient.get().uri("/products/1/stock?quantity=1").retrieve().body(Boolean.class);
+
+        assertThat(available).isTrue();
+        assertThat(calls).hasValue(3);
+        assertThat(meterRegistry.get("product.service.retries").tag("result", "retried").counter().count()).isEqualTo(2);
+    }
+
+    @Test
+    void neverRetriesReservations() {
+        statuses.add(503);
+        RestClient restClient = restClient(new RetryBudget(0.1, 10), 10);
+
+        assertThatThrownBy(() -> restClient.post().uri("/products/stock/reservations").body("[]").retrieve().toBodilessEntity())
+                .isInstanceOf(HttpServerErrorException.class);
+        assertThat(calls).hasValue(1);
+    }
+
+    @Test
+    void stopsRetryingWhenTheBudgetIsSpent() {
+        for (int i = 0; i < 6; i++) {
+            statuses.add(503);
+        }
+        RestClient restClient = restClient(new RetryBudget(0.1, 1), 10);
+
+        assertThatThrownBy(() -> restClient.get().uri("/products/1/stock?quantity=1").retrieve().body(Boolean.class))
+                .isInstanceOf(HttpServerErrorException.class);
+        assertThatThrownBy(() -> restClient.get().uri("/products/1/stock?quantity=1").retrieve().body(Boolean.class))
+                .isInstanceOf(HttpServerErrorException.class);
+
+        // one retry from the saved-up token, none after
+        assertThat(calls).hasValue(3);
+        assertThat(meterRegistry.get("product.service.retries").tag("result", "budget_exhausted").counter().count()).isEqualTo(2);
+    }
+
+    @Test
+    void opensTheCircuitAfterRepeatedFailures() {
+        for (int i = 0; i < 4; i++) {
+            statuses.add(500);
+        }
+        RestClient restClient = restClient(new RetryBudget(0, 0), 10);
+        for (int i = 0; i < 4; i++) {
+            assertThatThrownBy(() -> restClient.post().uri("/products/stock/reservations").body("[]").retrieve().toBodilessEntity())
+                    .isInstanceOf(HttpServerErrorException.class);
+        }
+
+        assertThat(circuitBreaker.getState()).isEqualTo(CircuitBreaker.State.OPEN);
+        assertThatThrownBy(() -> restClient.get().uri("/products/1/stock?quantity=1").retrieve().body(Boolean.class))
+                .isInstanceOf(CallNotPermittedException.class);
+        assertThat(calls).hasValue(4);
+    }
+
+    @Test
+    void businessRejectionsDoNotTripTheCircuit() {
+        for (int i = 0; i < 4; i++) {
+            statuses.add(400);
+        }
+        RestClient restClient = restClient(new RetryBudget(0.1, 10), 10);
+        for (int i = 0; i < 4; i++) {
+            assertThatThrownBy(() -> restClient.post().uri("/products/stock/reservations").body("[]").retrieve().toBodilessEntity());
+        }
+
+        assertThat(circuitBreaker.getState()).isEqualTo(CircuitBreaker.State.CLOSED);
+    }
+
+    @Test
+    void bulkheadRejectsCallsBeyondTheConcurrencyCap() throws InterruptedException {
+        blocking = true;
+        RestClient restClient = restClient(new RetryBudget(0.1, 10), 2);
+        CompletableFuture<?> first = CompletableFuture.runAsync(() -> restClient.get().uri("/products/1/stock?quantity=1").retrieve().body(Boolean.class));
+        CompletableFuture<?> second = CompletableFuture.runAsync(() -> restClient.get().uri("/products/2/stock?quantity=1").retrieve().body(Boolean.class));
+        awaitCalls(2);
+
+        assertThatThrownBy(() -> restClient.get().uri("/products/3/stock?quantity=1").retrieve().body(Boolean.class))
+                .isInstanceOf(BulkheadFullException.class);
+
+        release.countDown();
+        CompletableFuture.allOf(first, second).join();
+        assertThat(calls).hasValue(2);
+    }
+
+    private RestClient restClient(RetryBudget retryBudget, int maxConcurrentCalls) {
+        Bulkhead bulkhead = Bulkhead.of("product-service", BulkheadConfig.custom()
+                .maxConcurrentCalls(maxConcurrentCalls)
+                .maxWaitDuration(Duration.ZERO)
+                .build());
+        return RestClient.builder()
+                .baseUrl("http://localhost:" + productService.getAddress().getPort())
+                .requestFactory(new HttpComponentsClientHttpRequestFactory(HttpClients.custom().disableAutomaticRetries().build()))
+                .requestInterceptor(new ProductServiceResilienceInterceptor(circuitBreaker, bulkhead, retryBudget, 3,
+                        IntervalFunction.ofExponentialRandomBackoff(Duration.ofMillis(10), 2.0, 0.5), meterRegistry))
+                .build();
+    }
+
+    private void awaitCalls(int expected) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(2);
+        while (calls.get() < expected && System.nanoTime() < deadline) {
+            Thread.sleep(10);
+        }
+    }
+}
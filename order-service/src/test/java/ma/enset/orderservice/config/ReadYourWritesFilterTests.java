@@ -0,0 +1,148 @@
+package ma.enset.orderservice.config;
+
+import com.zaxxer.hikari.HikariDataSource;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import ma.enset.orderservice.entities.Order;
+import ma.enset.orderservice.entities.ProductItem;
+import ma.enset.orderservice.repository.OrderOutboxRepository;
+import ma.enset.orderservice.repository.OrderRepository;
+import ma.enset.orderservice.service.OrderOutboxService;
+import ma.enset.orderservice.service.OrderService;
+import ma.enset.orderservice.service.OrderStatusNotifier;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.boot.test.context.TestConfiguration;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Import;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.security.authentication.TestingAuthenticationToken;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Runs against an in-memory primary and a replica that {@link #replicate()} brings up to date,
+ * so orders created during a test are only on the primary.
+ */
+@DataJpaTest(properties = {
+        "spring.datasource.url=jdbc:h2:mem:orders-primary;DB_CLOSE_DELAY=-1",
+        "datasource.replicas.urls=" + ReadYourWritesFilterTests.REPLICA_URL})
+@AutoConfigureTestDatabase(replace = AutoConfigureTestDatabase.Replace.NONE)
+@Import({ReplicaDataSourceConfiguration.class, ReadYourWrites.class, OrderOutboxService.class,
+        OrderStatusNotifier.class, SimpleMeterRegistry.class, ReadYourWritesFilterTests.AsyncOrders.class})
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+class ReadYourWritesFilterTests {
+
+    static final String REPLICA_URL = "jdbc:h2:mem:orders-replica;DB_CLOSE_DELAY=-1";
+
+    @Autowired
+    private OrderRepository orderRepository;
+
+    @Autowired
+    private OrderOutboxRepository outboxRepository;
+
+    @Autowired
+    private ReadYourWrites readYourWrites;
+
+    @Autowired
+    private HikariDataSource primaryDataSource;
+
+    @Autowired
+    private OrderService orderService;
+
+    @BeforeEach
+    void setUp() throws SQLException {
+        replicate();
+    }
+
+    @AfterEach
+    void tearDown() {
+        SecurityContextHolder.clearContext();
+        outboxRepository.deleteAll();
+        orderRepository.deleteAll();
+    }
+
+    @Test
+    void ordersAreListedFromThePrimaryRightAfterTheirCreation() throws Exception {
+        Order order = orderService.createOrder(order(), "alice");
+
+        // outside the filter, read-only transactions still read the lagging replica
+        assertThat(orderService.getOrdersByUser("alice", PageRequest.of(0, 10))).isEmpty();
+        assertThat(ordersListedFor("alice")).containsExactly(order.getId());
+    }
+
+    @Test
+    void otherUsersKeepReadingTheReplica() throws Exception {
+        orderService.createOrder(order(), "alice");
+
+        assertThat(ordersListedFor("bob")).isEmpty();
+        assertThat(readYourWrites.wroteRecently("bob")).isFalse();
+    }
+
+    // the ids of alice's orders, as listed during a request of the given user
+    private List<Long> ordersListedFor(String user) throws Exception {
+        SecurityContextHolder.getContext().setAuthentication(new TestingAuthenticationToken(user, null));
+        List<Long> ids = new ArrayList<>();
+        new ReadYourWritesFilter(readYourWrites).doFilter(new MockHttpServletRequest(), new MockHttpServletResponse(),
+                (request, response) -> orderService.getOrdersByUser("alice", PageRequest.of(0, 10))
+                        .forEach(order -> ids.add(order.getId())));
+        return ids;
+    }
+
+    @TestConfiguration(proxyBeanMethods = false)
+    static class AsyncOrders {
+
+        // async mode: creating an order only writes it and its outbox entry
+        @Bean
+        OrderService orderService(OrderRepository orderRepository, OrderOutboxService outboxService,
+                                  OrderStatusNotifier statusNotifier, ReadYourWrites readYourWrites,
+                                  SimpleMeterRegistry meterRegistry) {
+            return new OrderService(orderRepository, null, null, false, outboxService, null, statusNotifier,
+                    readYourWrites, true, meterRegistry);
+        }
+    }
+
+    private static Order order() {
+        List<ProductItem> items = new ArrayList<>();
+        items.add(new ProductItem(1L, 2, 1000));
+        return Order.builder().productItems(items).build();
+    }
+
+    // copies the primary's tables and rows over the replica
+    private void replicate() throws SQLException {
+        List<String> script = new ArrayList<>();
+        try (Connection primary = primaryDataSource.getConnection();
+             Statement statement = primary.createStatement();
+             ResultSet rows = statement.executeQuery("SCRIPT")) {
+            while (rows.next()) {
+                script.add(rows.getString(1));
+            }
+        }
+        try (Connection replica = DriverManager.getConnection(REPLICA_URL, "admin", "password");
+             Statement statement = replica.createStatement()) {
+            statement.execute("DROP ALL OBJECTS");
+            for (String sql : script) {
+                // the script recreates the primary's user, which already owns the replica
+                if (!sql.startsWith("CREATE USER")) {
+                    statement.execute(sql);
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,125 @@
+package ma.enset.orderservice.config;
+
+import com.zaxxer.hikari.HikariDataSource;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import ma.enset.orderservice.entities.Order;
+import ma.enset.orderservice.entities.ProductItem;
+import ma.enset.orderservice.repository.OrderRepository;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Two in-memory databases stand in for a primary and its replica; {@link #replicate()} copies the
+ * primary over the replica, so between two calls the replica lags behind. The second replica URL
+ * points to a database that does not exist.
+ */
+@DataJpaTest(properties = {
+        "spring.datasource.url=jdbc:h2:mem:routing-primary;DB_CLOSE_DELAY=-1",
+        "datasource.replicas.urls=" + ReplicaDataSourceTests.REPLICA_URL + ",jdbc:h2:mem:routing-missing;IFEXISTS=TRUE"})
+@AutoConfigureTestDatabase(replace = AutoConfigureTestDatabase.Replace.NONE)
+@Import({ReplicaDataSourceConfiguration.class, SimpleMeterRegistry.class})
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+class ReplicaDataSourceTests {
+
+    static final String REPLICA_URL = "jdbc:h2:mem:routing-replica;DB_CLOSE_DELAY=-1";
+
+    @Autowired
+    private OrderRepository orderRepository;
+
+    @Autowired
+    private HikariDataSource primaryDataSource;
+
+    @Autowired
+    private ReplicaDataSource replicaDataSource;
+
+    @Autowired
+    private SimpleMeterRegistry meterRegistry;
+
+    @BeforeEach
+    void setUp() throws SQLException {
+        replicate();
+    }
+
+    @AfterEach
+    void tearDown() {
+        orderRepository.deleteAll();
+    }
+
+    @Test
+    void readOnlyTransactionsUseTheReplicaAndWritesThePrimary() throws SQLException {
+        Order order = orderRepository.save(order());
+
+        // repository reads run in read-only transactions
+        assertThat(orderRepository.findById(order.getId())).isEmpty();
+        assertThat(PrimaryReads.call(() -> orderRepository.findById(order.getId()))).isPresent();
+
+        replicate();
+        assertThat(orderRepository.findById(order.getId())).get()
+                .extracting(Order::getUserId).isEqualTo("alice");
+    }
+
+    @Test
+    void replicaThatCannotConnectIsExcluded() {
+        replicaDataSource.checkHealth();
+
+        for (int i = 0; i < 4; i++) {
+            assertThat(orderRepository.count()).isZero();
+        }
+        assertThat(meterRegistry.get("datasource.replica.healthy").tag("pool", "order-service-replica-1").gauge().value()).isEqualTo(1);
+        assertThat(meterRegistry.get("datasource.replica.healthy").tag("pool", "order-service-replica-2").gauge().value()).isZero();
+        assertThat(meterRegistry.get("datasource.replica.fallbacks").counter().count()).isZero();
+        assertThat(meterRegistry.get("hikaricp.connections").tag("pool", "order-service-replica-1").gauge()).isNotNull();
+    }
+
+    private static Order order() {
+        List<ProductItem> items = new ArrayList<>();
+        items.add(new ProductItem(1L, 2, 1000));
+        return Order.builder()
+                .date(LocalDate.now())
+                .status("PENDING")
+                .userId("alice")
+                .amountCents(2000)
+                .productItems(items)
+                .build();
+    }
+
+    // copies the primary's tables and rows over the replica
+    private void replicate() throws SQLException {
+        List<String> script = new ArrayList<>();
+        try (Connection primary = primaryDataSource.getConnection();
+             Statement statement = primary.createStatement();
+             ResultSet rows = statement.executeQuery("SCRIPT")) {
+            while (rows.next()) {
+                script.add(rows.getString(1));
+            }
+        }
+        try (Connection replica = DriverManager.getConnection(REPLICA_URL, "admin", "password");
+             Statement statement = replica.createStatement()) {
+            statement.execute("DROP ALL OBJECTS");
+            for (String sql : script) {
+                // the script recreates the primary's user, which already owns the replica
+                if (!sql.startsWith("CREATE USER")) {
+                    statement.execute(sql);
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,118 @@
+package ma.enset.orderservice.config;
+
+import com.sun.net.httpserver.HttpServer;
+import io.github.resilience4j.bulkhead.Bulkhead;
+import io.github.resilience4j.circuitbreaker.CircuitBreaker;
+import io.github.resilience4j.core.IntervalFunction;
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.apache.hc.client5.http.config.ConnectionConfig;
+import org.apache.hc.client5.http.impl.classic.CloseableHttpClient;
+import org.apache.hc.client5.http.impl.io.PoolingHttpClientConnectionManager;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.web.client.ResourceAccessException;
+import org.springframework.web.client.RestClient;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.time.Duration;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class WebClientConfigTests {
+
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private final WebClientConfig config = new WebClientConfig();
+
+    private HttpServer productService;
+    private PoolingHttpClientConnectionManager connectionManager;
+    private CloseableHttpClient httpClient;
+    private RestClient restClient;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        productService = HttpServer.create(new InetSocketAddress("localhost", 0), 0);
+        productService.setExecutor(Executors.newVirtualThreadPerTaskExecutor());
+        productService.createContext("/slow", exchange -> {
+            try {
+                Thread.sleep(500);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            exchange.sendResponseHeaders(200, -1);
+            exchange.close();
+        });
+        productService.createContext("/fast", exchange -> {
+            exchange.sendResponseHeaders(200, -1);
+            exchange.close();
+        });
+        productService.start();
+
+        ReflectionTestUtils.setField(config, "productServiceUrl", "http://localhost:" + productService.getAddress().getPort());
+        connectionManager = config.productServiceConnectionManager(meterRegistry, 1, 1,
+                Duration.ofSeconds(1), Duration.ofSeconds(1), Duration.ofSeconds(2), Duration.ofMinutes(5));
+        httpClient = config.productServiceHttpClient(connectionManager,
+                Duration.ofMillis(200), Duration.ofSeconds(15), Duration.ofSeconds(10));
+        restClient = config.restClient(RestClient.builder(), httpClient, new ProductServiceResilienceInterceptor(
+                CircuitBreaker.ofDefaults("product-service"), Bulkhead.ofDefaults("product-service"),
+                new RetryBudget(0, 0), 1, IntervalFunction.ofDefaults(), meterRegistry));
+    }
+
+    @AfterEach
+    void tearDown() throws IOException {
+        httpClient.close();
+        productService.stop(0);
+    }
+
+    @Test
+    void reusesPooledConnections() {
+        for (int i = 0; i < 5; i++) {
+            restClient.get().uri("/fast").retrieve().toBodilessEntity();
+        }
+
+        assertThat(connectionManager.getTotalStats().getAvailable()).isEqualTo(1);
+        assertThat(meterRegistry.get("httpcomponents.httpclient.pool.total.connections").tag("state", "available").gauge().value())
+                .isEqualTo(1);
+        assertThat(waitTimer().count()).isEqualTo(5);
+    }
+
+    @Test
+    void failsWhenNoConnectionFreesUpInTime() throws InterruptedException {
+        CompletableFuture<Void> holder = CompletableFuture.runAsync(() -> restClient.get().uri("/slow").retrieve().toBodilessEntity());
+        awaitLeased();
+
+        assertThatThrownBy(() -> restClient.get().uri("/fast").retrieve().toBodilessEntity())
+                .isInstanceOf(ResourceAccessException.class);
+
+        holder.join();
+        assertThat(waitTimer().max(TimeUnit.MILLISECONDS)).isGreaterThanOrEqualTo(200);
+    }
+
+    @Test
+    void stopsWaitingForASlowResponseAtTheReadTimeout() {
+        connectionManager.setDefaultConnectionConfig(ConnectionConfig.custom()
+                .setSocketTimeout(100, TimeUnit.MILLISECONDS)
+                .build());
+
+        assertThatThrownBy(() -> restClient.get().uri("/slow").retrieve().toBodilessEntity())
+                .isInstanceOf(ResourceAccessException.class);
+    }
+
+    private Timer waitTimer() {
+        return meterRegistry.get("httpcomponents.httpclient.pool.wait").tag("httpclient", "product-service").timer();
+    }
+
+    private void awaitLeased() throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(2);
+        while (connectionManager.getTotalStats().getLeased() == 0 && System.nanoTime() < deadline) {
+            Thread.sleep(10);
+        }
+    }
+}
@@ -0,0 +1,43 @@
+package ma.enset.orderservice.model;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.exc.InvalidFormatException;
+import ma.enset.orderservice.entities.ProductItem;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class CentsTests {
+
+    private final ObjectMapper objectMapper = Jackson2ObjectMapperBuilder.json().build();
+
+    @Test
+    void readsDecimalPricesAsExactCents() throws Exception {
+        assertThat(read("0.1").getPriceCents()).isEqualTo(10);
+        assertThat(read("19.99").getPriceCents()).isEqualTo(1999);
+        assertThat(read("25").getPriceCents()).isEqualTo(2500);
+        assertThat(read("\"7.50\"").getPriceCents()).isEqualTo(750);
+    }
+
+    @Test
+    void rejectsFractionsOfACent() {
+        assertThatThrownBy(() -> read("10.005"))
+                .isInstanceOf(InvalidFormatException.class)
+                .hasMessageContaining("at most two decimals");
+    }
+
+    @Test
+    void writesCentsAsDecimalsAndIgnoresClientLineTotals() throws Exception {
+        ProductItem item = objectMapper.readValue("{\"productId\":1,\"quantity\":3,\"price\":0.1,\"lineTotal\":999}", ProductItem.class);
+        item.setLineTotalCents(item.getPriceCents() * item.getQuantity());
+
+        assertThat(objectMapper.writeValueAsString(item))
+                .isEqualTo("{\"productId\":1,\"quantity\":3,\"price\":0.10,\"lineTotal\":0.30}");
+    }
+
+    private ProductItem read(String price) throws Exception {
+        return objectMapper.readValue("{\"productId\":1,\"quantity\":1,\"price\":" + price + "}", ProductItem.class);
+    }
+}
@@ -0,0 +1,86 @@
+package ma.enset.orderservice.repository;
+
+import ma.enset.orderservice.entities.Order;
+import ma.enset.orderservice.entities.ProductItem;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.boot.test.autoconfigure.orm.jpa.TestEntityManager;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Sort;
+
+import java.time.LocalDate;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@DataJpaTest(properties = "spring.jpa.properties.hibernate.generate_statistics=true")
+class OrderRepositoryTests {
+
+    private static final Sort NEWEST_FIRST = Sort.by(Sort.Direction.DESC, "date", "id");
+
+    @Autowired
+    private OrderRepository orderRepository;
+
+    @Autowired
+    private TestEntityManager entityManager;
+
+    private Statistics statistics;
+
+    @BeforeEach
+    void setUp() {
+        for (int i = 0; i < 5; i++) {
+            orderRepository.save(order("alice", LocalDate.of(2024, 1, 1).plusDays(i)));
+            orderRepository.save(order("bob", LocalDate.of(2024, 1, 1).plusDays(i)));
+        }
+        entityManager.flush();
+        entityManager.clear();
+        statistics = entityManager.getEntityManager().getEntityManagerFactory()
+                .unwrap(SessionFactory.class).getStatistics();
+        statistics.clear();
+    }
+
+    @Test
+    void pagesOnlyTheUsersOrdersNewestFirst() {
+        Page<Long> ids = orderRepository.findIdsByUserId("alice", PageRequest.of(0, 2, NEWEST_FIRST));
+        List<Order> orders = orderRepository.findByIdIn(ids.getContent(), NEWEST_FIRST);
+
+        assertThat(ids.getTotalElements()).isEqualTo(5);
+        assertThat(orders).extracting(Order::getDate)
+                .containsExactly(LocalDate.of(2024, 1, 5), LocalDate.of(2024, 1, 4));
+        assertThat(orders).allSatisfy(order -> assertThat(order.getUserId()).isEqualTo("alice"));
+    }
+
+    @Test
+    void loadsItemsWithoutOneQueryPerOrder() {
+        Page<Long> ids = orderRepository.findIdsByUserId("alice", PageRequest.of(0, 5, NEWEST_FIRST));
+        List<Order> orders = orderRepository.findByIdIn(ids.getContent(), NEWEST_FIRST);
+        orders.forEach(order -> assertThat(order.getProductItems()).hasSize(2));
+
+        // one id page, one count, one fetch-joined load
+        assertThat(statistics.getPrepareStatementCount()).isEqualTo(3);
+    }
+
+    @Test
+    void keysetContinuesAfterTheCursor() {
+        List<Long> firstPage = orderRepository.findIdsByUserIdBefore("alice", Long.MAX_VALUE, PageRequest.ofSize(3));
+        List<Long> secondPage = orderRepository.findIdsByUserIdBefore("alice", firstPage.get(2), PageRequest.ofSize(3));
+
+        assertThat(firstPage).hasSize(3).isSortedAccordingTo((a, b) -> Long.compare(b, a));
+        assertThat(secondPage).hasSize(2).allSatisfy(id -> assertThat(id).isLessThan(firstPage.get(2)));
+    }
+
+    private Order order(String userId, LocalDate date) {
+        return Order.builder()
+                .userId(userId)
+                .date(date)
+                .status("PENDING")
+                .amountCents(3000)
+                .productItems(List.of(new ProductItem(1L, 1, 1000), new ProductItem(2L, 2, 1000)))
+                .build();
+    }
+}
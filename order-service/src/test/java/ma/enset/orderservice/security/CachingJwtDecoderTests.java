@@ -0,0 +1,104 @@
+package ma.enset.orderservice.security;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.springframework.security.oauth2.jwt.BadJwtException;
+import org.springframework.security.oauth2.jwt.Jwt;
+import org.springframework.security.oauth2.jwt.JwtDecoder;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.ZoneOffset;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class CachingJwtDecoderTests {
+
+    private static final Instant NOW = Instant.parse("2024-01-01T10:00:00Z");
+
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private final AtomicInteger verifications = new AtomicInteger();
+
+    @Test
+    void verifiesEachTokenOnlyOnce() {
+        CachingJwtDecoder decoder = decoder(token -> jwt(token, NOW.plusSeconds(300)), Clock.fixed(NOW, ZoneOffset.UTC));
+
+        Jwt first = decoder.decode("token-a");
+        Jwt second = decoder.decode("token-a");
+        decoder.decode("token-b");
+
+        assertThat(second).isSameAs(first);
+        assertThat(verifications).hasValue(2);
+        assertThat(meterRegistry.get("security.jwt.validation").tag("result", "hit").timer().count()).isEqualTo(1);
+        assertThat(meterRegistry.get("security.jwt.validation").tag("result", "miss").timer().count()).isEqualTo(2);
+    }
+
+    @Test
+    void neverServesAnExpiredToken() {
+        MutableClock clock = new MutableClock(NOW);
+        CachingJwtDecoder decoder = decoder(token -> jwt(token, NOW.plusSeconds(60)), clock);
+        decoder.decode("token-a");
+
+        clock.now = NOW.plusSeconds(61);
+        decoder.decode("token-a");
+
+        assertThat(verifications).hasValue(2);
+    }
+
+    @Test
+    void doesNotCacheRejectedTokens() {
+        CachingJwtDecoder decoder = decoder(token -> {
+            throw new BadJwtException("bad signature");
+        }, Clock.fixed(NOW, ZoneOffset.UTC));
+
+        assertThatThrownBy(() -> decoder.decode("forged")).isInstanceOf(BadJwtException.class);
+        assertThatThrownBy(() -> decoder.decode("forged")).isInstanceOf(BadJwtException.class);
+        assertThat(verifications).hasValue(2);
+        assertThat(meterRegistry.get("security.jwt.validation").tag("result", "invalid").timer().count()).isEqualTo(2);
+    }
+
+    private CachingJwtDecoder decoder(JwtDecoder delegate, Clock clock) {
+        JwtDecoder counting = token -> {
+            verifications.incrementAndGet();
+            return delegate.decode(token);
+        };
+        return new CachingJwtDecoder(counting, meterRegistry, 100, Duration.ofMinutes(10), clock);
+    }
+
+    private static Jwt jwt(String token, Instant expiresAt) {
+        return Jwt.withTokenValue(token)
+                .header("alg", "RS256")
+                .subject("user1")
+                .issuedAt(expiresAt.minusSeconds(300))
+                .expiresAt(expiresAt)
+                .build();
+    }
+
+    private static final class MutableClock extends Clock {
+
+        private Instant now;
+
+        private MutableClock(Instant now) {
+            this.now = now;
+        }
+
+        @Override
+        public ZoneOffset getZone() {
+            return ZoneOffset.UTC;
+        }
+
+        @Override
+        public Clock withZone(ZoneId zone) {
+            return this;
+        }
+
+        @Override
+        public Instant instant() {
+            return now;
+        }
+    }
+}
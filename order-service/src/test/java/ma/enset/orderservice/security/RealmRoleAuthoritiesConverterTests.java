@@ -0,0 +1,51 @@
+package ma.enset.orderservice.security;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.security.core.GrantedAuthority;
+import org.springframework.security.oauth2.jwt.Jwt;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class RealmRoleAuthoritiesConverterTests {
+
+    private final RealmRoleAuthoritiesConverter converter = new RealmRoleAuthoritiesConverter();
+
+    @Test
+    void sharesAuthoritiesBetweenTokensWithTheSameRoles() {
+        Collection<GrantedAuthority> first = converter.convert(jwt(new ArrayList<>(List.of("ADMIN", "CLIENT"))));
+        Collection<GrantedAuthority> second = converter.convert(jwt(new ArrayList<>(List.of("ADMIN", "CLIENT"))));
+        Collection<GrantedAuthority> other = converter.convert(jwt(List.of("CLIENT")));
+
+        assertThat(first).extracting(GrantedAuthority::getAuthority).containsExactly("ROLE_ADMIN", "ROLE_CLIENT");
+        assertThat(second).isSameAs(first);
+        assertThat(other).extracting(GrantedAuthority::getAuthority).containsExactly("ROLE_CLIENT");
+    }
+
+    @Test
+    void returnsNoAuthoritiesWithoutRealmRoles() {
+        Jwt jwt = Jwt.withTokenValue("token").header("alg", "RS256").subject("user").build();
+
+        assertThat(converter.convert(jwt)).isEmpty();
+    }
+
+    @Test
+    void keepsConvertingOnceTheCombinationLimitIsReached() {
+        for (int i = 0; i < RealmRoleAuthoritiesConverter.MAX_ROLE_COMBINATIONS + 10; i++) {
+            converter.convert(jwt(List.of("ROLE" + i)));
+        }
+
+        assertThat(converter.convert(jwt(List.of("LATE"))))
+                .extracting(GrantedAuthority::getAuthority).containsExactly("ROLE_LATE");
+    }
+
+    private static Jwt jwt(List<String> roles) {
+        return Jwt.withTokenValue("token").header("alg", "RS256").subject("user")
+                .claim("realm_access", Map.of("roles", roles))
+                .build();
+    }
+}
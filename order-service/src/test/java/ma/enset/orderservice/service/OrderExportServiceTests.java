@@ -0,0 +1,128 @@
+package ma.enset.orderservice.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import ma.enset.orderservice.entities.Order;
+import ma.enset.orderservice.repository.OrderRepository;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.json.AutoConfigureJson;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.io.ByteArrayOutputStream;
+import java.io.OutputStream;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryPoolMXBean;
+import java.lang.management.MemoryType;
+import java.nio.charset.StandardCharsets;
+import java.sql.Date;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@DataJpaTest
+@AutoConfigureJson
+@Import(OrderExportService.class)
+class OrderExportServiceTests {
+
+    private static final Logger logger = LoggerFactory.getLogger(OrderExportServiceTests.class);
+
+    @Autowired
+    private OrderExportService orderExportService;
+
+    @Autowired
+    private OrderRepository orderRepository;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @Test
+    void writesOneJsonLinePerOrderWithItsItems() throws Exception {
+        insertOrders(3);
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+
+        long exported = orderExportService.exportOrders(out);
+
+        String[] lines = out.toString(StandardCharsets.UTF_8).split("\n");
+        assertThat(exported).isEqualTo(3);
+        assertThat(lines).hasSize(3);
+        Order first = objectMapper.readValue(lines[0], Order.class);
+        assertThat(first.getId()).isEqualTo(1L);
+        assertThat(first.getUserId()).isEqualTo("user-1");
+        assertThat(first.getProductItems()).hasSize(2);
+        assertThat(lines[0]).contains("\"amount\":30.00", "\"price\":10.00", "\"lineTotal\":20.00");
+    }
+
+    @Test
+    void writesNothingWhenThereAreNoOrders() throws Exception {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+
+        assertThat(orderExportService.exportOrders(out)).isZero();
+        assertThat(out.size()).isZero();
+    }
+
+    /**
+     * Compares peak heap of the former findAll() + serialize-the-list path with the streaming export.
+     * Run with {@code mvn test -Dtest=OrderExportServiceTests -Dbenchmark.rows=1000000}.
+     */
+    @Test
+    @EnabledIfSystemProperty(named = "benchmark.rows", matches = "\\d+")
+    void streamingExportUsesLessPeakHeapThanLoadingAllOrders() throws Exception {
+        int rows = Integer.getInteger("benchmark.rows");
+        insertOrders(rows);
+
+        long streamPeak = peakHeapDuring(() -> orderExportService.exportOrders(OutputStream.nullOutputStream()));
+        long listPeak;
+        try {
+            listPeak = peakHeapDuring(() -> objectMapper.writeValueAsBytes(orderRepository.findAll()).length);
+        } catch (OutOfMemoryError | RuntimeException e) {
+            if (!(e instanceof OutOfMemoryError) && !(e.getCause() instanceof OutOfMemoryError)) {
+                throw e;
+            }
+            // the unbounded path not fitting in the heap at all is a valid outcome of the comparison
+            listPeak = Runtime.getRuntime().maxMemory();
+            logger.warn("findAll ran out of heap for {} orders", rows);
+        }
+
+        logger.info("Peak heap for {} orders: findAll {} MB, streaming export {} MB",
+                rows, listPeak / (1024 * 1024), streamPeak / (1024 * 1024));
+        assertThat(streamPeak).isLessThan(listPeak);
+    }
+
+    private void insertOrders(int count) {
+        int batchSize = 10_000;
+        for (int start = 1; start <= count; start += batchSize) {
+            List<Object[]> orders = new ArrayList<>();
+            List<Object[]> items = new ArrayList<>();
+            for (long id = start; id < Math.min(start + batchSize, count + 1L); id++) {
+                orders.add(new Object[]{id, Date.valueOf(LocalDate.of(2024, 1, 1)), "PENDING", 3000L, "user-" + (id % 100)});
+                items.add(new Object[]{id, 1L, 1, 1000L, 1000L});
+                items.add(new Object[]{id, 2L, 2, 1000L, 2000L});
+            }
+            jdbcTemplate.batchUpdate("insert into customer_orders (id, date, status, amount_cents, user_id) values (?, ?, ?, ?, ?)", orders);
+            jdbcTemplate.batchUpdate("insert into order_product_items (order_id, product_id, quantity, price_cents, line_total_cents) values (?, ?, ?, ?, ?)", items);
+        }
+    }
+
+    // Peak heap above the post-GC baseline while the task runs
+    private long peakHeapDuring(Callable<?> task) throws Exception {
+        List<MemoryPoolMXBean> heapPools = ManagementFactory.getMemoryPoolMXBeans().stream()
+                .filter(pool -> pool.getType() == MemoryType.HEAP)
+                .toList();
+        System.gc();
+        long baseline = heapPools.stream().mapToLong(pool -> pool.getUsage().getUsed()).sum();
+        heapPools.forEach(MemoryPoolMXBean::resetPeakUsage);
+        task.call();
+        return heapPools.stream().mapToLong(pool -> pool.getPeakUsage().getUsed()).sum() - baseline;
+    }
+}
@@ -0,0 +1,208 @@
+package ma.enset.orderservice.service;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import jakarta.persistence.EntityManagerFactory;
+import ma.enset.orderservice.entities.Order;
+import ma.enset.orderservice.entities.ProductItem;
+import ma.enset.orderservice.exception.IdempotencyConflictException;
+import ma.enset.orderservice.exception.StockRejectedException;
+import ma.enset.orderservice.model.OrderSubmission;
+import ma.enset.orderservice.repository.OrderIdempotencyKeyRepository;
+import ma.enset.orderservice.repository.OrderRepository;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.json.AutoConfigureJson;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.http.HttpStatus;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.web.client.ResourceAccessException;
+
+import java.time.Instant;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+/**
+ * Claims are committed before the order is created, so these tests run outside a test transaction.
+ */
+@DataJpaTest(properties = "spring.jpa.properties.hibernate.generate_statistics=true")
+@AutoConfigureJson
+@Import({OrderIdempotencyService.class, SimpleMeterRegistry.class})
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+class OrderIdempotencyServiceTests {
+
+    @Autowired
+    private OrderIdempotencyService idempotencyService;
+
+    @Autowired
+    private OrderIdempotencyKeyRepository keyRepository;
+
+    @Autowired
+    private OrderRepository orderRepository;
+
+    @Autowired
+    private EntityManagerFactory entityManagerFactory;
+
+    @Autowired
+    private SimpleMeterRegistry meterRegistry;
+
+    private final AtomicInteger creations = new AtomicInteger();
+
+    @AfterEach
+    void tearDown() {
+        keyRepository.deleteAll();
+        orderRepository.deleteAll();
+    }
+
+    @Test
+    void replayReturnsTheStoredOrderFromASingleLookup() {
+        OrderSubmission first = idempotencyService.submit("alice", "key-1", request(2), this::createOrder);
+        Statistics statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+        statistics.clear();
+
+        OrderSubmission replay = idempotencyService.submit("alice", "key-1", request(2), this::createOrder);
+
+        assertThat(first.replayed()).isFalse();
+        assertThat(replay.replayed()).isTrue();
+        assertThat(replay.order().getId()).isEqualTo(first.order().getId());
+        assertThat(replay.order().getAmountCents()).isEqualTo(2000);
+        assertThat(creations).hasValue(1);
+        // the (user_id, idempotency_key) lookup, and nothing on the order tables
+        assertThat(statistics.getPrepareStatementCount()).isEqualTo(1);
+        assertThat(meterRegistry.get("orders.idempotency.replays").counter().count()).isEqualTo(1);
+    }
+
+    @Test
+    void keysAreScopedPerUser() {
+        idempotencyService.submit("alice", "key-1", request(2), this::createOrder);
+        OrderSubmission bob = idempotencyService.submit("bob", "key-1", request(2), this::createOrder);
+
+        assertThat(bob.replayed()).isFalse();
+        assertThat(creations).hasValue(2);
+    }
+
+    @Test
+    void keyReusedForADifferentOrderIsRefused() {
+        idempotencyService.submit("alice", "key-1", request(2), this::createOrder);
+
+        assertThatThrownBy(() -> idempotencyService.submit("alice", "key-1", request(3), this::createOrder))
+                .isInstanceOfSatisfying(IdempotencyConflictException.class,
+                        e -> assertThat(e.getStatus()).isEqualTo(HttpStatus.UNPROCESSABLE_ENTITY));
+        assertThat(creations).hasValue(1);
+    }
+
+    @Test
+    void rejectedRequestReleasesItsKey() {
+        assertThatThrownBy(() -> idempotencyService.submit("alice", "key-1", request(2), () -> {
+            throw new StockRejectedException("Insufficient stock for product 1");
+        })).hasMessageContaining("Insufficient stock");
+
+        OrderSubmission retry = idempotencyService.submit("alice", "key-1", request(2), this::createOrder);
+
+        assertThat(retry.replayed()).isFalse();
+        assertThat(creations).hasValue(1);
+    }
+
+    @Test
+    void requestWithUnknownOutcomeKeepsItsKey() {
+        // product-service may have reserved the stock before the read timed out
+        assertThatThrownBy(() -> idempotencyService.submit("alice", "key-1", request(2), () -> {
+            createOrder();
+            throw new ResourceAccessException("Read timed out");
+        })).isInstanceOf(ResourceAccessException.class);
+
+        assertThatThrownBy(() -> idempotencyService.submit("alice", "key-1", request(2), this::createOrder))
+                .isInstanceOfSatisfying(IdempotencyConflictException.class,
+                        e -> assertThat(e.getStatus()).isEqualTo(HttpStatus.CONFLICT));
+        assertThat(creations).hasValue(1);
+        assertThat(orderRepository.count()).isEqualTo(1);
+    }
+
+    @Test
+    void expiredKeyIsReclaimedAndPurged() {
+        OrderSubmission first = idempotencyService.submit("alice", "key-1", request(2), this::createOrder);
+        keyRepository.findAll().forEach(key -> keyRepository.complete(key.getId(), key.getResponse(), Instant.now().minusSeconds(1)));
+
+        OrderSubmission second = idempotencyService.submit("alice", "key-1", request(2), this::createOrder);
+        keyRepository.findAll().forEach(key -> keyRepository.complete(key.getId(), key.getResponse(), Instant.now().minusSeconds(1)));
+        idempotencyService.purgeExpired();
+
+        assertThat(second.replayed()).isFalse();
+        assertThat(second.order().getId()).isNotEqualTo(first.order().getId());
+        assertThat(keyRepository.count()).isZero();
+    }
+
+    @Test
+    void concurrentDuplicatesCreateOneOrder() throws Exception {
+        int clients = 8;
+        CountDownLatch duplicatesRefused = new CountDownLatch(clients - 1);
+        AtomicInteger inProgress = new AtomicInteger();
+        // the first claimant holds its order open until every duplicate has been answered
+        Supplier<Order> slowCreate = () -> {
+            try {
+                duplicatesRefused.await(10, TimeUnit.SECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            return createOrder();
+        };
+
+        List<Future<OrderSubmission>> results = new ArrayList<>();
+        try (ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor()) {
+            CountDownLatch start = new CountDownLatch(1);
+            for (int i = 0; i < clients; i++) {
+                results.add(executor.submit(() -> {
+                    start.await();
+                    try {
+                        return idempotencyService.submit("alice", "key-1", request(2), slowCreate);
+                    } catch (IdempotencyConflictException e) {
+                        assertThat(e.getStatus()).isEqualTo(HttpStatus.CONFLICT);
+                        inProgress.incrementAndGet();
+                        duplicatesRefused.countDown();
+                        return null;
+                    }
+                }));
+            }
+            start.countDown();
+        }
+
+        assertThat(creations).hasValue(1);
+        assertThat(inProgress).hasValue(clients - 1);
+        assertThat(orderRepository.count()).isEqualTo(1);
+        assertThat(idempotencyService.submit("alice", "key-1", request(2), this::createOrder).replayed()).isTrue();
+        for (Future<OrderSubmission> result : results) {
+            result.get();
+        }
+    }
+
+    private Order createOrder() {
+        creations.incrementAndGet();
+        Order order = request(2);
+        order.setUserId("alice");
+        order.setDate(LocalDate.now());
+        order.setStatus("PENDING");
+        order.setAmountCents(OrderService.applyLineTotals(order.getProductItems()));
+        return orderRepository.save(order);
+    }
+
+    private static Order request(int quantity) {
+        List<ProductItem> items = new ArrayList<>();
+        items.add(new ProductItem(1L, quantity, 1000));
+        return Order.builder().productItems(items).build();
+    }
+}
@@ -0,0 +1,118 @@
+package ma.enset.orderservice.service;
+
+import jakarta.persistence.EntityManagerFactory;
+import ma.enset.orderservice.entities.Order;
+import ma.enset.orderservice.repository.OrderRepository;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.json.AutoConfigureJson;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.data.domain.Sort;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+@DataJpaTest(properties = {
+        "spring.jpa.properties.hibernate.generate_statistics=true",
+        "order.import.chunk-size=100"
+})
+@AutoConfigureJson
+@Import({OrderImportService.class, OrderExportService.class})
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+class OrderImportServiceTests {
+
+    @Autowired
+    private OrderImportService orderImportService;
+
+    @Autowired
+    private OrderExportService orderExportService;
+
+    @Autowired
+    private OrderRepository orderRepository;
+
+    @Autowired
+    private EntityManagerFactory entityManagerFactory;
+
+    private Statistics statistics;
+
+    @BeforeEach
+    void setUp() {
+        statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+        statistics.clear();
+    }
+
+    @AfterEach
+    void tearDown() {
+        orderRepository.deleteAll();
+    }
+
+    @Test
+    void insertsOrdersAndItemsInJdbcBatches() throws Exception {
+        long imported = orderImportService.importOrders(ndjson(250));
+
+        assertThat(imported).isEqualTo(250);
+        assertThat(orderRepository.count()).isEqualTo(250);
+        // 250 orders and 500 items: one statement per batch of 50 instead of one per row,
+        // plus one sequence call per 50 ids
+        assertThat(statistics.getPrepareStatementCount()).isLessThan(30);
+        assertThat(statistics.getEntityInsertCount()).isEqualTo(250);
+    }
+
+    @Test
+    void recomputesAmountsAndAssignsNewIds() throws Exception {
+        orderImportService.importOrders(new ByteArrayInputStream(("""
+                {"id":999,"date":"2024-01-01","status":"CONFIRMED","amount":1.0,"userId":"user-1","productItems":[{"productId":1,"quantity":2,"price":10.0}]}
+                """).getBytes(StandardCharsets.UTF_8)));
+
+        Order order = orderRepository.findByIdIn(orderRepository.findAll().stream().map(Order::getId).toList(), Sort.unsorted()).get(0);
+        assertThat(order.getId()).isNotEqualTo(999L);
+        assertThat(order.getAmountCents()).isEqualTo(2000);
+        assertThat(order.getProductItems().get(0).getLineTotalCents()).isEqualTo(2000);
+        assertThat(order.getStatus()).isEqualTo("CONFIRMED");
+        assertThat(order.getProductItems()).hasSize(1);
+    }
+
+    @Test
+    void reimportsItsOwnExport() throws Exception {
+        orderImportService.importOrders(ndjson(10));
+        ByteArrayOutputStream exported = new ByteArrayOutputStream();
+        orderExportService.exportOrders(exported);
+
+        orderImportService.importOrders(new ByteArrayInputStream(exported.toByteArray()));
+
+        assertThat(orderRepository.count()).isEqualTo(20);
+    }
+
+    @Test
+    void keepsCommittedChunksWhenALaterOrderIsInvalid() {
+        String valid = new String(ndjson(150).readAllBytes(), StandardCharsets.UTF_8);
+        String invalid = "{\"userId\":\"user-1\",\"productItems\":[]}\n";
+
+        assertThatThrownBy(() -> orderImportService.importOrders(new ByteArrayInputStream((valid + invalid).getBytes(StandardCharsets.UTF_8))))
+                .isInstanceOf(IllegalArgumentException.class)
+                .hasMessageStartingWith("Order 151");
+        // the first chunk of 100 was committed, the second rolled back with the invalid order
+        assertThat(orderRepository.count()).isEqualTo(100);
+    }
+
+    private static ByteArrayInputStream ndjson(int orders) {
+        StringBuilder lines = new StringBuilder();
+        for (int i = 0; i < orders; i++) {
+            lines.append("{\"userId\":\"user-").append(i % 10).append("\",\"productItems\":[")
+                    .append("{\"productId\":1,\"quantity\":1,\"price\":10.0},")
+                    .append("{\"productId\":2,\"quantity\":2,\"price\":5.0}]}\n");
+        }
+        return new ByteArrayInputStream(lines.toString().getBytes(StandardCharsets.UTF_8));
+    }
+}
@@ -0,0 +1,266 @@
+package ma.enset.orderservice.service;
+
+import com.sun.net.httpserver.HttpServer;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import ma.enset.orderservice.config.ReadYourWrites;
+import ma.enset.orderservice.entities.Order;
+import ma.enset.orderservice.entities.OrderOutbox;
+import ma.enset.orderservice.entities.ProductItem;
+import ma.enset.orderservice.repository.OrderOutboxRepository;
+import ma.enset.orderservice.repository.OrderRepository;
+import ma.enset.orderservice.security.ServiceTokenProvider;
+import org.apache.hc.client5.http.impl.classic.HttpClients;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.http.client.HttpComponentsClientHttpRequestFactory;
+import org.springframework.security.oauth2.client.OAuth2AuthorizedClient;
+import org.springframework.security.oauth2.client.registration.ClientRegistration;
+import org.springframework.security.oauth2.core.AuthorizationGrantType;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.security.oauth2.core.OAuth2AccessToken;
+import org.springframework.security.oauth2.jwt.Jwt;
+import org.springframework.security.oauth2.server.resource.authentication.JwtAuthenticationToken;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.web.client.RestClient;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executors;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+/**
+ * Runs the async pipeline against an embedded database and a stub product-service whose answers
+ * are scripted per test. The H2 dialect is forced because the configured PostgreSQL one claims
+ * rows with {@code for no key update skip locked}, which H2 does not parse.
+ */
+@DataJpaTest(properties = "spring.jpa.properties.hibernate.dialect=org.hibernate.dialect.H2Dialect")
+@Import({OrderOutboxService.class, OrderStatusNotifier.class, SimpleMeterRegistry.class})
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+class OrderOutboxDispatcherTests {
+
+    private final Queue<Integer> statuses = new ConcurrentLinkedQueue<>();
+    private final List<String> idempotencyKeys = new ArrayList<>();
+    private final List<String> authorizations = new ArrayList<>();
+    private final List<String> bodies = new ArrayList<>();
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+
+    @Autowired
+    private OrderRepository orderRepository;
+
+    @Autowired
+    private OrderOutboxRepository outboxRepository;
+
+    @Autowired
+    private OrderOutboxService outboxService;
+
+    @Autowired
+    private OrderStatusNotifier statusNotifier;
+
+    private HttpServer productService;
+    private RestClient restClient;
+    private OrderOutboxDispatcher dispatcher;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        productService = HttpServer.create(new InetSocketAddress("localhost", 0), 0);
+        productService.setExecutor(Executors.newVirtualThreadPerTaskExecutor());
+        productService.createContext("/products/stock/reservations", exchange -> {
+            synchronized (this) {
+                idempotencyKeys.add(exchange.getRequestHeaders().getFirst("Idempotency-Key"));
+                authorizations.add(exchange.getRequestHeaders().getFirst("Authorization"));
+                bodies.add(new String(exchange.getRequestBody().readAllBytes(), StandardCharsets.UTF_8));
+            }
+            Integer status = statuses.poll();
+            byte[] body = (status == null || status < 300 ? "" : "Product service says no").getBytes(StandardCharsets.UTF_8);
+            exchange.sendResponseHeaders(status != null ? status : 200, body.length == 0 ? -1 : body.length);
+            exchange.getResponseBody().write(body);
+            exchange.close();
+        });
+        productService.start();
+        restClient = RestClient.builder()
+                .baseUrl("http://localhost:" + productService.getAddress().getPort())
+                .requestFactory(new HttpComponentsClientHttpRequestFactory(HttpClients.custom().disableAutomaticRetries().build()))
+                .build();
+        dispatcher = new OrderOutboxDispatcher(outboxService, restClient, serviceTokenProvider(), statusNotifier,
+                meterRegistry, 10, Duration.ofSeconds(30), Duration.ofSeconds(10), Duration.ofMinutes(1));
+    }
+
+    @AfterEach
+    void tearDown() {
+        productService.stop(0);
+        SecurityContextHolder.clearContext();
+        outboxRepository.deleteAll();
+        orderRepository.deleteAll();
+    }
+
+    @Test
+    void acceptsOrdersWithoutCallingProductService() {
+        OrderService orderService = new OrderService(orderRepository, restClient,
+                new StockAvailabilityChecker(restClient, Duration.ofSeconds(2), 8), false,
+                outboxService, serviceTokenProvider(), statusNotifier, new ReadYourWrites(Duration.ofSeconds(5)), true, meterRegistry);
+
+        Order order = orderService.createOrder(order(2), "user1");
+
+        assertThat(order.getStatus()).isEqualTo("PENDING");
+        assertThat(order.getAmountCents()).isEqualTo(2000);
+        assertThat(outboxRepository.findAll()).singleElement()
+                .extracting(OrderOutbox::getOrderId)
+                .isEqualTo(order.getId());
+        assertThat(bodies).isEmpty();
+        assertThat(meterRegistry.get("orders.create").tags("mode", "async", "outcome", "success").timer().count()).isEqualTo(1);
+        assertThat(meterRegistry.get("orders.create.phase").tag("phase", "persist").timer().count()).isEqualTo(1);
+    }
+
+    @Test
+    void syncOrdersAreConfirmedOnceTheirStockIsReserved() {
+        Order order = syncOrderService().createOrder(order(2), "user1");
+
+        assertThat(order.getStatus()).isEqualTo("CONFIRMED");
+        assertThat(orderRepository.findStatusById(order.getId())).contains("CONFIRMED");
+        // the request the dispatcher would send, so a redelivery is recognised as the same reservation
+        assertThat(authorizations).containsExactly("Bearer service-token");
+        assertThat(idempotencyKeys).containsExactly("order-" + order.getId());
+        assertThat(outboxRepository.count()).isZero();
+    }
+
+    @Test
+    void syncOrdersWithAnUnknownOutcomeAreHandedToTheDispatcher() {
+        statuses.add(503);
+
+        Order order = syncOrderService().createOrder(order(2), "user1");
+
+        assertThat(order.getStatus()).isEqualTo("PENDING");
+        assertThat(outboxRepository.findAll()).singleElement()
+                .extracting(OrderOutbox::getOrderId)
+                .isEqualTo(order.getId());
+        assertThat(meterRegistry.get("orders.stock.handoffs").counter().count()).isEqualTo(1);
+
+        dispatcher.dispatch();
+
+        assertThat(orderRepository.findStatusById(order.getId())).contains("CONFIRMED");
+        assertThat(outboxRepository.count()).isZero();
+        assertThat(idempotencyKeys).containsExactly("order-" + order.getId(), "order-" + order.getId());
+        assertThat(authorizations).containsOnly("Bearer service-token");
+    }
+
+    @Test
+    void syncOrdersExistBeforeTheirStockIsReserved() {
+        statuses.add(400);
+        OrderService orderService = syncOrderService();
+
+        assertThatThrownBy(() -> orderService.createOrder(order(2), "user1"))
+                .hasMessage("Product service says no");
+        // the order was written first, so a reservation product-service did commit is never orphaned
+        assertThat(orderRepository.findAll()).singleElement()
+                .extracting(Order::getStatus)
+                .isEqualTo("REJECTED");
+    }
+
+    @Test
+    void confirmsReservedOrdersWithTheOrderAsIdempotencyKey() {
+        Order order = outboxService.saveWithOutbox(order(3));
+
+        dispatcher.dispatch();
+
+        assertThat(orderRepository.findStatusById(order.getId())).contains("CONFIRMED");
+        assertThat(outboxRepository.count()).isZero();
+        assertThat(idempotencyKeys).containsExactly("order-" + order.getId());
+        assertThat(authorizations).containsExactly("Bearer service-token");
+        assertThat(bodies).containsExactly("[{\"productId\":1,\"quantity\":3}]");
+        assertThat(meterRegistry.get("orders.async.dispatched").tag("result", "confirmed").counter().count()).isEqualTo(1);
+    }
+
+    @Test
+    void rejectsOrdersProductServiceCannotReserve() {
+        statuses.add(400);
+        Order order = outboxService.saveWithOutbox(order(3));
+
+        dispatcher.dispatch();
+
+        assertThat(orderRepository.findStatusById(order.getId())).contains("REJECTED");
+        assertThat(outboxRepository.count()).isZero();
+    }
+
+    @Test
+    void retriesLaterWhenProductServiceIsUnavailable() {
+        statuses.add(503);
+        Order order = outboxService.saveWithOutbox(order(3));
+
+        dispatcher.dispatch();
+        // not due again before the backoff elapses
+        dispatcher.dispatch();
+
+        assertThat(orderRepository.findStatusById(order.getId())).contains("PENDING");
+        assertThat(outboxRepository.findAll()).singleElement().satisfies(entry -> {
+            assertThat(entry.getAttempts()).isEqualTo(1);
+            assertThat(entry.getAvailableAt()).isAfter(Instant.now().plusSeconds(5));
+            assertThat(entry.getLastError()).contains("503");
+        });
+        assertThat(bodies).hasSize(1);
+    }
+
+    @Test
+    void conflictsAreRetriedRatherThanRejected() {
+        statuses.add(409);
+        Order order = outboxService.saveWithOutbox(order(3));
+
+        dispatcher.dispatch();
+
+        assertThat(orderRepository.findStatusById(order.getId())).contains("PENDING");
+        assertThat(outboxRepository.count()).isEqualTo(1);
+    }
+
+    @Test
+    void claimedEntriesAreLeasedToOneDispatcher() {
+        outboxService.saveWithOutbox(order(1));
+        outboxService.saveWithOutbox(order(1));
+
+        assertThat(outboxService.claimDue(10, Duration.ofSeconds(30))).hasSize(2);
+        assertThat(outboxService.claimDue(10, Duration.ofSeconds(30))).isEmpty();
+    }
+
+    private OrderService syncOrderService() {
+        Jwt jwt = Jwt.withTokenValue("user-token").header("alg", "RS256").subject("user1").build();
+        SecurityContextHolder.getContext().setAuthentication(new JwtAuthenticationToken(jwt, List.of()));
+        return new OrderService(orderRepository, restClient,
+                new StockAvailabilityChecker(restClient, Duration.ofSeconds(2), 8), false,
+                outboxService, serviceTokenProvider(), statusNotifier, new ReadYourWrites(Duration.ofSeconds(5)), false, meterRegistry);
+    }
+
+    private static Order order(int quantity) {
+        List<ProductItem> items = new ArrayList<>();
+        items.add(new ProductItem(1L, quantity, 1000));
+        return Order.builder()
+                .date(LocalDate.now())
+                .status("PENDING")
+                .userId("user1")
+                .productItems(items)
+                .build();
+    }
+
+    private static ServiceTokenProvider serviceTokenProvider() {
+        ClientRegistration registration = ClientRegistration.withRegistrationId(ServiceTokenProvider.REGISTRATION_ID)
+                .clientId("order-service")
+                .authorizationGrantType(AuthorizationGrantType.CLIENT_CREDENTIALS)
+                .tokenUri("http://localhost/token")
+                .build();
+        OAuth2AccessToken token = new OAuth2AccessToken(OAuth2AccessToken.TokenType.BEARER, "service-token",
+                Instant.now(), Instant.now().plusSeconds(300));
+        return new ServiceTokenProvider(request -> new OAuth2AuthorizedClient(registration, request.getPrincipal().getName(), token));
+    }
+}
@@ -0,0 +1,145 @@
+package ma.enset.orderservice.service;
+
+import ma.enset.orderservice.entities.Order;
+import ma.enset.orderservice.entities.ProductItem;
+import ma.enset.orderservice.model.OrderStats;
+import ma.enset.orderservice.model.ProductSales;
+import ma.enset.orderservice.model.UserSales;
+import ma.enset.orderservice.repository.OrderRepository;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.sql.Date;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.assertj.core.api.Assertions.entry;
+
+@DataJpaTest
+@Import(OrderStatsService.class)
+class OrderStatsServiceTests {
+
+    private static final Logger logger = LoggerFactory.getLogger(OrderStatsServiceTests.class);
+
+    private static final LocalDate JAN_1 = LocalDate.of(2024, 1, 1);
+    private static final LocalDate JAN_31 = LocalDate.of(2024, 1, 31);
+
+    @Autowired
+    private OrderStatsService orderStatsService;
+
+    @Autowired
+    private OrderRepository orderRepository;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Test
+    void aggregatesOrdersWithinTheRange() {
+        save("alice", JAN_1, "CONFIRMED", new ProductItem(1L, 2, 1000), new ProductItem(2L, 1, 550));
+        save("alice", JAN_31, "PENDING", new ProductItem(2L, 5, 550));
+        save("bob", LocalDate.of(2024, 1, 15), "CONFIRMED", new ProductItem(1L, 1, 1000));
+        save("bob", LocalDate.of(2024, 1, 15), "REJECTED", new ProductItem(3L, 100, 100));
+        save("carol", LocalDate.of(2024, 2, 1), "CONFIRMED", new ProductItem(3L, 100, 100));
+
+        OrderStats stats = orderStatsService.getStats(JAN_1, JAN_31, 10);
+
+        assertThat(stats.orders()).isEqualTo(4);
+        assertThat(stats.ordersByStatus()).containsExactly(
+                entry("CONFIRMED", 2L), entry("PENDING", 1L), entry("REJECTED", 1L));
+        // 25.50 + 10.00: the pending and rejected orders are left out
+        assertThat(stats.revenueCents()).isEqualTo(3550);
+        assertThat(stats.topProducts()).containsExactly(
+                new ProductSales(1L, 3, 3000),
+                new ProductSales(2L, 1, 550));
+        assertThat(stats.topUsers()).containsExactly(
+                new UserSales("alice", 1, 2550),
+                new UserSales("bob", 1, 1000));
+    }
+
+    @Test
+    void limitsTopProductsAndUsers() {
+        save("alice", JAN_1, "CONFIRMED", new ProductItem(1L, 2, 1000));
+        save("bob", JAN_1, "CONFIRMED", new ProductItem(2L, 1, 1000));
+
+        OrderStats stats = orderStatsService.getStats(JAN_1, JAN_1, 1);
+
+        assertThat(stats.topProducts()).extracting(ProductSales::productId).containsExactly(1L);
+        assertThat(stats.topUsers()).extracting(UserSales::userId).containsExactly("alice");
+    }
+
+    @Test
+    void emptyRangeHasZeroTotals() {
+        OrderStats stats = orderStatsService.getStats(JAN_1, JAN_31, 10);
+
+        assertThat(stats.orders()).isZero();
+        assertThat(stats.revenueCents()).isZero();
+        assertThat(stats.ordersByStatus()).isEmpty();
+        assertThat(stats.topProducts()).isEmpty();
+        assertThat(stats.topUsers()).isEmpty();
+    }
+
+    @Test
+    void rejectsInvalidParameters() {
+        assertThatThrownBy(() -> orderStatsService.getStats(JAN_31, JAN_1, 10))
+                .isInstanceOf(IllegalArgumentException.class);
+        assertThatThrownBy(() -> orderStatsService.getStats(JAN_1, JAN_31, 0))
+                .isInstanceOf(IllegalArgumentException.class);
+        assertThatThrownBy(() -> orderStatsService.getStats(JAN_1, JAN_31, 101))
+                .isInstanceOf(IllegalArgumentException.class);
+    }
+
+    /**
+     * Times the grouped queries over a month out of a year of orders.
+     * Run with {@code mvn test -Dtest=OrderStatsServiceTests -Dbenchmark.rows=100000}.
+     */
+    @Test
+    @EnabledIfSystemProperty(named = "benchmark.rows", matches = "\\d+")
+    void aggregatesLargeTablesInTheDatabase() {
+        int rows = Integer.getInteger("benchmark.rows");
+        insertOrders(rows);
+
+        orderStatsService.getStats(JAN_1, JAN_31, 10);
+        long start = System.nanoTime();
+        OrderStats stats = orderStatsService.getStats(JAN_1, JAN_31, 10);
+        long elapsedMillis = (System.nanoTime() - start) / 1_000_000;
+
+        logger.info("Stats over {} of {} orders in {} ms", stats.orders(), rows, elapsedMillis);
+        assertThat(stats.orders()).isPositive();
+    }
+
+    private void save(String userId, LocalDate date, String status, ProductItem... items) {
+        List<ProductItem> productItems = new ArrayList<>(List.of(items));
+        orderRepository.save(Order.builder()
+                .userId(userId)
+                .date(date)
+                .status(status)
+                .amountCents(productItems.stream().mapToLong(ProductItem::getLineTotalCents).sum())
+                .productItems(productItems)
+                .build());
+    }
+
+    private void insertOrders(int count) {
+        int batchSize = 10_000;
+        for (int start = 1; start <= count; start += batchSize) {
+            List<Object[]> orders = new ArrayList<>();
+            List<Object[]> items = new ArrayList<>();
+            for (long id = start; id < Math.min(start + batchSize, count + 1L); id++) {
+                orders.add(new Object[]{id, Date.valueOf(JAN_1.plusDays(id % 365)), id % 10 == 0 ? "REJECTED" : "CONFIRMED",
+                        3000L, "user-" + (id % 10_000)});
+                items.add(new Object[]{id, id % 1000, 1, 1000L, 1000L});
+                items.add(new Object[]{id, (id + 1) % 1000, 2, 1000L, 2000L});
+            }
+            jdbcTemplate.batchUpdate("insert into customer_orders (id, date, status, amount_cents, user_id) values (?, ?, ?, ?, ?)", orders);
+            jdbcTemplate.batchUpdate("insert into order_product_items (order_id, product_id, quantity, price_cents, line_total_cents) values (?, ?, ?, ?, ?)", items);
+        }
+    }
+}
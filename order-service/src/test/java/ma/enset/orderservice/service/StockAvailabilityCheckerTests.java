@@ -0,0 +1,130 @@
+package ma.enset.orderservice.service;
+
+import com.sun.net.httpserver.HttpServer;
+import ma.enset.orderservice.entities.ProductItem;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.web.client.RestClient;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class StockAvailabilityCheckerTests {
+
+    private final Map<Long, Duration> latencies = new ConcurrentHashMap<>();
+    private final Map<Long, Boolean> availability = new ConcurrentHashMap<>();
+    private final Map<Long, String> requestedQuantities = new ConcurrentHashMap<>();
+    private final AtomicInteger inFlight = new AtomicInteger();
+    private final AtomicInteger maxInFlight = new AtomicInteger();
+    private final AtomicInteger completed = new AtomicInteger();
+
+    private HttpServer productService;
+    private RestClient restClient;
+
+    @BeforeEach
+    void startProductService() throws IOException {
+        productService = HttpServer.create(new InetSocketAddress("localhost", 0), 0);
+        productService.setExecutor(Executors.newVirtualThreadPerTaskExecutor());
+        productService.createContext("/products/", exchange -> {
+            long productId = Long.parseLong(exchange.getRequestURI().getPath().split("/")[2]);
+            requestedQuantities.put(productId, exchange.getRequestURI().getQuery());
+            maxInFlight.accumulateAndGet(inFlight.incrementAndGet(), Math::max);
+            try {
+                Thread.sleep(latencies.getOrDefault(productId, Duration.ZERO));
+                completed.incrementAndGet();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            } finally {
+                inFlight.decrementAndGet();
+            }
+            byte[] body = String.valueOf(availability.getOrDefault(productId, true)).getBytes(StandardCharsets.UTF_8);
+            exchange.getResponseHeaders().add("Content-Type", "application/json");
+            exchange.sendResponseHeaders(200, body.length);
+            exchange.getResponseBody().write(body);
+            exchange.close();
+        });
+        productService.start();
+        restClient = RestClient.builder()
+                .baseUrl("http://localhost:" + productService.getAddress().getPort())
+                .build();
+    }
+
+    @AfterEach
+    void stopProductService() {
+        productService.stop(0);
+    }
+
+    @Test
+    void waitsForTheSlowestItemRatherThanTheSum() {
+        List<ProductItem> items = List.of(item(1), item(2), item(3), item(4));
+        items.forEach(item -> latencies.put(item.getProductId(), Duration.ofMillis(300)));
+
+        long start = System.nanoTime();
+        checker(Duration.ofSeconds(5), 8).checkAll(items, "Bearer token");
+
+        assertThat(Duration.ofNanos(System.nanoTime() - start)).isLessThan(Duration.ofMillis(900));
+        assertThat(maxInFlight).hasValue(4);
+    }
+
+    @Test
+    void capsRequestsInFlightPerOrder() {
+        List<ProductItem> items = List.of(item(1), item(2), item(3), item(4), item(5), item(6));
+        items.forEach(item -> latencies.put(item.getProductId(), Duration.ofMillis(100)));
+
+        checker(Duration.ofSeconds(5), 2).checkAll(items, "Bearer token");
+
+        assertThat(maxInFlight).hasValue(2);
+        assertThat(completed).hasValue(6);
+    }
+
+    @Test
+    void failsFastWhenAnyProductIsOutOfStock() {
+        availability.put(2L, false);
+        latencies.put(1L, Duration.ofSeconds(3));
+        latencies.put(3L, Duration.ofSeconds(3));
+
+        long start = System.nanoTime();
+        assertThatThrownBy(() -> checker(Duration.ofSeconds(5), 8).checkAll(List.of(item(1), item(2), item(3)), "Bearer token"))
+                .hasMessage("Insufficient stock for product 2");
+
+        assertThat(Duration.ofNanos(System.nanoTime() - start)).isLessThan(Duration.ofSeconds(2));
+    }
+
+    @Test
+    void givesUpAtTheOrderDeadline() {
+        latencies.put(1L, Duration.ofSeconds(3));
+
+        long start = System.nanoTime();
+        assertThatThrownBy(() -> checker(Duration.ofMillis(200), 8).checkAll(List.of(item(1), item(2)), "Bearer token"))
+                .hasMessage("Stock check timed out");
+
+        assertThat(Duration.ofNanos(System.nanoTime() - start)).isLessThan(Duration.ofSeconds(2));
+    }
+
+    @Test
+    void checksEachProductOnceWithItsTotalQuantity() {
+        checker(Duration.ofSeconds(5), 8).checkAll(List.of(item(1), item(1), item(2)), "Bearer token");
+
+        assertThat(completed).hasValue(2);
+        assertThat(requestedQuantities).containsEntry(1L, "quantity=2").containsEntry(2L, "quantity=1");
+    }
+
+    private StockAvailabilityChecker checker(Duration deadline, int maxInFlight) {
+        return new StockAvailabilityChecker(restClient, deadline, maxInFlight);
+    }
+
+    private static ProductItem item(long productId) {
+        return new ProductItem(productId, 1, 1000);
+    }
+}
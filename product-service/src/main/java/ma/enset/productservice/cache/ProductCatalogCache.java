@@ -0,0 +1,145 @@
+package ma.enset.productservice.cache;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.CacheLoader;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.LoadingCache;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import ma.enset.productservice.config.PrimaryReads;
+import ma.enset.productservice.entities.Product;
+import ma.enset.productservice.model.StockLevel;
+import ma.enset.productservice.repository.ProductRepository;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Function;
+import java.util.function.Supplier;
+import java.util.stream.Collectors;
+
+/**
+ * Read-through cache in front of {@link ProductRepository}.
+ * <p>
+ * Catalog fields (name, description, price) and stock levels are cached separately: catalog entries
+ * live for minutes, stock levels only for seconds, and every product returned gets the quantity from
+ * the stock cache. Cached entities are never handed out; callers always receive a copy.
+ */
+@Component
+public class ProductCatalogCache {
+
+    private final Cache<Long, Product> products;
+    private final Cache<PageKey, List<Product>> pages;
+    private final LoadingCache<Long, Integer> stock;
+
+    public ProductCatalogCache(ProductRepository productRepository,
+                               MeterRegistry meterRegistry,
+                               @Value("${product.cache.catalog.ttl:10m}") Duration catalogTtl,
+                               @Value("${product.cache.catalog.max-size:10000}") long catalogMaxSize,
+                               @Value("${product.cache.pages.ttl:1m}") Duration pagesTtl,
+                               @Value("${product.cache.pages.max-size:1000}") long pagesMaxSize,
+                               @Value("${product.cache.stock.ttl:2s}") Duration stockTtl,
+                               @Value("${product.cache.stock.max-size:100000}") long stockMaxSize) {
+        this.products = Caffeine.newBuilder()
+                .maximumSize(catalogMaxSize)
+                .expireAfterWrite(catalogTtl)
+                .recordStats()
+                .build();
+        this.pages = Caffeine.newBuilder()
+                .maximumSize(pagesMaxSize)
+                .expireAfterWrite(pagesTtl)
+                .recordStats()
+                .build();
+        this.stock = Caffeine.newBuilder()
+                .maximumSize(stockMaxSize)
+                .expireAfterWrite(stockTtl)
+                .recordStats()
+                .build(new StockLoader(productRepository));
+
+        CaffeineCacheMetrics.monitor(meterRegistry, products, "products");
+        CaffeineCacheMetrics.monitor(meterRegistry, pages, "productPages");
+        CaffeineCacheMetrics.monitor(meterRegistry, stock, "productStock");
+    }
+
+    public Product get(Long id, Function<Long, Product> loader) {
+        Product product = products.get(id, loader);
+        Integer quantity = stock.get(id);
+        return withQuantity(product, quantity != null ? quantity : product.getQuantity());
+    }
+
+    public List<Product> getPage(Long afterId, int limit, Supplier<List<Product>> loader) {
+        List<Product> page = pages.get(new PageKey(afterId, limit), key -> List.copyOf(loader.get()));
+        Map<Long, Integer> quantities = stock.getAll(page.stream().map(Product::getId).toList());
+        return page.stream()
+                .map(product -> withQuantity(product, quantities.getOrDefault(product.getId(), product.getQuantity())))
+                .toList();
+    }
+
+    /**
+     * Returns the current stock level, or {@code null} when the product does not exist.
+     */
+    public Integer getStock(Long id) {
+        return stock.get(id);
+    }
+
+    public void evictProduct(Long id) {
+        afterCommit(() -> {
+            products.invalidate(id);
+            stock.invalidate(id);
+            pages.invalidateAll();
+        });
+    }
+
+    public void evictPages() {
+        afterCommit(pages::invalidateAll);
+    }
+
+    public void evictStock(Long id) {
+        afterCommit(() -> stock.invalidate(id));
+    }
+
+    /**
+     * Runs {@code action} once the current transaction commits, or right away outside a transaction.
+     * Evicting before commit would let a concurrent reader re-cache the old row until the TTL expires.
+     * Must not be called from another after-commit callback, where it would never run.
+     */
+    public static void afterCommit(Runnable action) {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    action.run();
+                }
+            });
+        } else {
+            action.run();
+        }
+    }
+
+    private Product withQuantity(Product product, int quantity) {
+        return product.toBuilder().quantity(quantity).build();
+    }
+
+    private record PageKey(Long afterId, int limit) {
+    }
+
+    private record StockLoader(ProductRepository productRepository) implements CacheLoader<Long, Integer> {
+
+        @Override
+        public Integer load(Long id) {
+            // from the primary: a lagging replica's level would be cached for the whole ttl
+            return PrimaryReads.call(() -> productRepository.findQuantityById(id)).orElse(null);
+        }
+
+        @Override
+        public Map<Long, Integer> loadAll(Set<? extends Long> ids) {
+            return PrimaryReads.call(() -> productRepository.findStockLevelsByIdIn(ids)).stream()
+                    .collect(Collectors.toMap(StockLevel::productId, StockLevel::quantity));
+        }
+    }
+}
@@ -0,0 +1,12 @@
+package ma.enset.productservice.config;
+
+import org.springframework.context.annotation.Configuration;
+import org.springframework.scheduling.annotation.EnableScheduling;
+
+/**
+ * Background jobs: the periodic flush of stock level events, search index rebuilds and replica health checks.
+ */
+@Configuration
+@EnableScheduling
+public class SchedulingConfiguration {
+}
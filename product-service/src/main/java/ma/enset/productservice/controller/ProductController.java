@@ -1,14 +1,30 @@
 package ma.enset.productservice.controller;
 
 import ma.enset.productservice.entities.Product;
+import ma.enset.productservice.model.ProductImportReport;
+import ma.enset.productservice.model.ProductSearchQuery;
+import ma.enset.productservice.model.ProductSearchResult;
+import ma.enset.productservice.model.StockReservation;
+import ma.enset.productservice.service.ProductExportService;
+import ma.enset.productservice.service.ProductImportService;
+import ma.enset.productservice.service.ProductSearchService;
 import ma.enset.productservice.service.ProductService;
+import ma.enset.productservice.service.StockEventPublisher;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.web.PageableDefault;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.access.prepost.PreAuthorize;
 import org.springframework.security.core.Authentication;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
+import java.io.IOException;
+import java.io.InputStream;
 import java.util.List;
 
 @RestController
@@ -17,17 +33,79 @@ public class ProductController {
 
     private static final Logger logger = LoggerFactory.getLogger(ProductController.class);
 
+    static final String NEXT_CURSOR_HEADER = "X-Next-Cursor";
+
     private final ProductService productService;
+    private final ProductExportService productExportService;
+    private final StockEventPublisher stockEventPublisher;
+    private final ProductImportService productImportService;
+    private final ProductSearchService productSearchService;
 
-    public ProductController(ProductService productService) {
+    public ProductController(ProductService productService, ProductExportService productExportService,
+                             ProductImportService productImportService, StockEventPublisher stockEventPublisher,
+                             ProductSearchService productSearchService) {
         this.productService = productService;
+        this.productExportService = productExportService;
+        this.productImportService = productImportService;
+        this.stockEventPublisher = stockEventPublisher;
+        this.productSearchService = productSearchService;
     }
 
     @GetMapping
     @PreAuthorize("hasRole('ADMIN') or hasRole('CLIENT')")
-    public ResponseEntity<List<Product>> getAllProducts(Authentication auth) {
+    public ResponseEntity<List<Product>> getAllProducts(
+            @RequestParam(required = false) Long after,
+            @PageableDefault(size = 100) Pageable pageable,
+            Authentication auth) {
         logger.info("User {} requested all products", auth.getName());
-        return ResponseEntity.ok(productService.getAllProducts());
+        List<Product> products = productService.getProducts(after != null ? after : 0L, pageable.getPageSize());
+        ResponseEntity.BodyBuilder response = ResponseEntity.ok();
+        // A full page means there may be more rows; the last id is the keyset cursor for the next call
+        if (!products.isEmpty() && products.size() == pageable.getPageSize()) {
+            response.header(NEXT_CURSOR_HEADER, String.valueOf(products.get(products.size() - 1).getId()));
+        }
+        return response.body(products);
+    }
+
+    // q: words matched as prefixes of name/description words, e.g. "lap 15" finds "Laptop 15 pouces"
+    @GetMapping("/search")
+    @PreAuthorize("hasRole('ADMIN') or hasRole('CLIENT')")
+    public ResponseEntity<ProductSearchResult> searchProducts(
+            @RequestParam(required = false) String q,
+            @RequestParam(required = false) Double minPrice,
+            @RequestParam(required = false) Double maxPrice,
+            @RequestParam(defaultValue = "false") boolean inStock,
+            @RequestParam(defaultValue = "20") int limit,
+            Authentication auth) {
+        logger.info("User {} searching products for '{}'", auth.getName(), q);
+        return ResponseEntity.ok(productSearchService.search(new ProductSearchQuery(q, minPrice, maxPrice, inStock, limit)));
+    }
+
+    @GetMapping(value = "/export", produces = MediaType.APPLICATION_NDJSON_VALUE)
+    @PreAuthorize("hasRole('ADMIN')")
+    public ResponseEntity<StreamingResponseBody> exportProducts(Authentication auth) {
+        logger.info("User {} exporting all products", auth.getName());
+        return ResponseEntity.ok()
+                .contentType(MediaType.APPLICATION_NDJSON)
+                .body(productExportService::exportProducts);
+    }
+
+    // Upserts a CSV or NDJSON catalog file as it is uploaded; rejected records are listed in the report
+    @PostMapping(value = "/import", consumes = {"text/csv", MediaType.APPLICATION_NDJSON_VALUE})
+    @PreAuthorize("hasRole('ADMIN')")
+    public ResponseEntity<ProductImportReport> importProducts(InputStream body,
+                                                              @RequestHeader(HttpHeaders.CONTENT_TYPE) MediaType contentType,
+                                                              Authentication auth) throws IOException {
+        logger.info("User {} importing products from {}", auth.getName(), contentType);
+        return ResponseEntity.ok(productImportService.importProducts(body, contentType));
+    }
+
+    // "stock" events carrying [{productId, quantity}] for products whose stock changed since the last one
+    @GetMapping(value = "/stock/events", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    @PreAuthorize("hasRole('ADMIN') or hasRole('CLIENT')")
+    public SseEmitter streamStockLevels(Authentication auth) {
+        logger.info("User {} subscribing to stock levels", auth.getName());
+        return stockEventPublisher.subscribe();
     }
 
     @GetMapping("/{id}")
@@ -73,4 +151,15 @@ public class ProductController {
         productService.reduceStock(id, quantity);
         return ResponseEntity.ok().build();
     }
+
+    @PostMapping("/stock/reservations")
+    @PreAuthorize("hasRole('ADMIN') or hasRole('CLIENT')")
+    public ResponseEntity<Void> reserveStock(@RequestBody List<StockReservation> reservations,
+                                             @RequestHeader(value = "Idempotency-Key", required = false) String idempotencyKey,
+                                             Authentication auth) {
+        logger.info("User {} reserving stock for {} items", auth.getName(), reservations.size());
+        // keys are scoped to the caller, so a client cannot claim the key another principal will send
+        productService.reserveStock(reservations, auth.getName(), idempotencyKey);
+        return ResponseEntity.ok().build();
+    }
 }
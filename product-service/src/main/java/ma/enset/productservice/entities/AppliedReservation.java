@@ -0,0 +1,54 @@
+package ma.enset.productservice.entities;
+
+import jakarta.persistence.Entity;
+import jakarta.persistence.Id;
+import jakarta.persistence.IdClass;
+import jakarta.persistence.Index;
+import jakarta.persistence.Table;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import org.springframework.data.domain.Persistable;
+
+import java.io.Serializable;
+import java.time.Instant;
+
+/**
+ * Idempotency key of a reservation that has already decremented stock, stored in the same
+ * transaction as the decrements so a redelivered reservation is recognised and not applied twice.
+ * <p>
+ * Keys belong to the principal that sent them: another caller reusing the same key cannot turn
+ * that principal's reservation into a no-op. Always saved as new, so a duplicate key is inserted
+ * (and rejected) rather than merged.
+ */
+@Entity
+@Table(name = "applied_reservations", indexes = @Index(name = "idx_applied_reservations_applied_at", columnList = "applied_at"))
+@IdClass(AppliedReservation.Key.class)
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class AppliedReservation implements Persistable<AppliedReservation.Key> {
+    @Id
+    private String principal;
+    @Id
+    private String idempotencyKey;
+    private Instant appliedAt;
+
+    @Override
+    public Key getId() {
+        return new Key(principal, idempotencyKey);
+    }
+
+    @Override
+    public boolean isNew() {
+        return true;
+    }
+
+    @Data
+    @NoArgsConstructor
+    @AllArgsConstructor
+    public static class Key implements Serializable {
+        private String principal;
+        private String idempotencyKey;
+    }
+}
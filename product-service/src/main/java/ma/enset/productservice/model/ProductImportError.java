@@ -0,0 +1,7 @@
+package ma.enset.productservice.model;
+
+/**
+ * A rejected record and why; {@code line} is the line of the file the record starts on, from 1.
+ */
+public record ProductImportError(long line, String message) {
+}
@@ -0,0 +1,10 @@
+package ma.enset.productservice.model;
+
+import java.util.List;
+
+/**
+ * Result of a bulk import. Only the first errors are listed; {@code failed} counts all of them.
+ */
+public record ProductImportReport(long records, long inserted, long updated, long failed,
+                                  List<ProductImportError> errors, boolean errorsTruncated) {
+}
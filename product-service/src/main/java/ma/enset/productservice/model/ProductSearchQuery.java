@@ -0,0 +1,8 @@
+package ma.enset.productservice.model;
+
+/**
+ * Filters of {@code GET /products/search}. Every word of {@code text} must start a word of the
+ * product's name or description; null bounds and a blank text do not filter.
+ */
+public record ProductSearchQuery(String text, Double minPrice, Double maxPrice, boolean inStockOnly, int limit) {
+}
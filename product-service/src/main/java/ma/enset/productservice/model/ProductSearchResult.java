@@ -0,0 +1,12 @@
+package ma.enset.productservice.model;
+
+import ma.enset.productservice.entities.Product;
+
+import java.util.List;
+
+/**
+ * Best matches first. {@code total} counts every match of the query; {@code inStock} counts the
+ * matches with stock left, ignoring the in-stock filter, so clients can show both facets.
+ */
+public record ProductSearchResult(long total, long inStock, List<Product> products) {
+}
@@ -0,0 +1,9 @@
+package ma.enset.productservice.model;
+
+import java.util.Set;
+
+/**
+ * Outcome of one batch of {@code ProductService.upsertProducts}: ids that matched no product were skipped.
+ */
+public record ProductUpsert(int inserted, int updated, Set<Long> missingIds) {
+}
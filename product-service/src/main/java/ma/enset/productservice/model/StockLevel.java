@@ -0,0 +1,4 @@
+package ma.enset.productservice.model;
+
+public record StockLevel(Long productId, int quantity) {
+}
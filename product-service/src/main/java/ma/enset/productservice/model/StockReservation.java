@@ -0,0 +1,4 @@
+package ma.enset.productservice.model;
+
+public record StockReservation(Long productId, int quantity) {
+}
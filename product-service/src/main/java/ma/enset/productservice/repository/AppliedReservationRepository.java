@@ -0,0 +1,18 @@
+package ma.enset.productservice.repository;
+
+import ma.enset.productservice.entities.AppliedReservation;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.Instant;
+
+public interface AppliedReservationRepository extends JpaRepository<AppliedReservation, AppliedReservation.Key> {
+
+    @Transactional
+    @Modifying
+    @Query("delete from AppliedReservation r where r.appliedAt < :cutoff")
+    int deleteAppliedBefore(@Param("cutoff") Instant cutoff);
+}
@@ -1,7 +1,49 @@
 package ma.enset.productservice.repository;
 
+import jakarta.persistence.QueryHint;
 import ma.enset.productservice.entities.Product;
+import ma.enset.productservice.model.StockLevel;
+import org.hibernate.jpa.HibernateHints;
+import org.springframework.data.domain.Limit;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
+import org.springframework.data.repository.query.Param;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.Optional;
+import java.util.stream.Stream;
 
 public interface ProductRepository extends JpaRepository<Product, Long> {
+
+    /**
+     * Decrements stock in a single conditional update so concurrent orders never lose updates or oversell.
+     * The version is bumped so entity-based writes racing with this update fail instead of overwriting it.
+     *
+     * @return the number of updated rows, 0 when the product does not exist or has insufficient stock
+     */
+    @Modifying(flushAutomatically = true, clearAutomatically = true)
+    @Query("update Product p set p.quantity = p.quantity - :quantity, p.version = p.version + 1 " +
+            "where p.id = :id and p.quantity >= :quantity")
+    int decrementStock(@Param("id") Long id, @Param("quantity") int quantity);
+
+    // cache loads, always called through PrimaryReads: a replica could hand the cache a stale value.
+    // The read-only transaction only spares Hibernate the dirty checking of what it loads.
+    @Transactional(readOnly = true)
+    @Query("select p.quantity from Product p where p.id = :id")
+    Optional<Integer> findQuantityById(@Param("id") Long id);
+
+    @Query("select new ma.enset.productservice.model.StockLevel(p.id, p.quantity) from Product p where p.id in :ids")
+    List<StockLevel> findStockLevelsByIdIn(@Param("ids") Collection<? extends Long> ids);
+
+    // the cache's full reload, page by page; on the primary and read-only like findQuantityById
+    @Transactional(readOnly = true)
+    List<Product> findByIdGreaterThanOrderByIdAsc(Long afterId, Limit limit);
+
+    @QueryHints(@QueryHint(name = HibernateHints.HINT_FETCH_SIZE, value = "1000"))
+    @Query("select p from Product p order by p.id")
+    Stream<Product> streamAll();
 }
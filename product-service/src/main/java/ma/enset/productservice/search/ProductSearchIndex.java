@@ -0,0 +1,304 @@
+package ma.enset.productservice.search;
+
+import ma.enset.productservice.entities.Product;
+import ma.enset.productservice.model.ProductSearchQuery;
+import ma.enset.productservice.model.StockLevel;
+import org.springframework.stereotype.Component;
+
+import java.text.Normalizer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.PriorityQueue;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Consumer;
+import java.util.regex.Pattern;
+import java.util.stream.Stream;
+
+/**
+ * In-memory inverted index over product names and descriptions, with price and stock kept per
+ * product for filtering. Words are lower-cased and stripped of accents, so "Télé" finds "telephone".
+ * <p>
+ * Writes on this instance are applied as they happen; {@link #rebuild} replaces the whole index from
+ * the database to pick up writes made through other instances. Writes arriving while a rebuild
+ * runs are replayed on the new index before it is swapped in.
+ */
+@Component
+public class ProductSearchIndex {
+
+    private static final Pattern NON_WORD = Pattern.compile("[^\\p{L}\\p{N}]+");
+    private static final Pattern MARKS = Pattern.compile("\\p{M}+");
+
+    private final Object writeLock = new Object();
+    private volatile Segment segment = new Segment();
+    // writes to replay on the index being rebuilt; null when no rebuild runs. Guarded by writeLock
+    private List<Consumer<Segment>> pendingWrites;
+
+    public void put(Product product) {
+        IndexedProduct indexed = IndexedProduct.of(product);
+        write(segment -> segment.put(indexed, terms(product.getName(), product.getDescription())));
+    }
+
+    public void remove(Long productId) {
+        write(segment -> segment.remove(productId));
+    }
+
+    public void updateStock(Collection<StockLevel> levels) {
+        if (!levels.isEmpty()) {
+            write(segment -> levels.forEach(level -> segment.updateStock(level.productId(), level.quantity())));
+        }
+    }
+
+    /**
+     * Indexes {@code products} into a new index and swaps it in. Meanwhile searches keep using the
+     * current one.
+     *
+     * @return the number of indexed products
+     */
+    public synchronized int rebuild(Stream<Product> products) {
+        synchronized (writeLock) {
+            pendingWrites = new ArrayList<>();
+        }
+        Segment rebuilt = new Segment();
+        try {
+            products.forEach(product -> rebuilt.put(IndexedProduct.of(product), terms(product.getName(), product.getDescription())));
+        } catch (RuntimeException e) {
+            synchronized (writeLock) {
+                pendingWrites = null;
+            }
+            throw e;
+        }
+        synchronized (writeLock) {
+            pendingWrites.forEach(write -> write.accept(rebuilt));
+            pendingWrites = null;
+            segment = rebuilt;
+        }
+        return rebuilt.size();
+    }
+
+    public Hits search(ProductSearchQuery query) {
+        return segment.search(terms(query.text()), query);
+    }
+
+    public int size() {
+        return segment.size();
+    }
+
+    private void write(Consumer<Segment> write) {
+        synchronized (writeLock) {
+            write.accept(segment);
+            if (pendingWrites != null) {
+                pendingWrites.add(write);
+            }
+        }
+    }
+
+    static List<String> terms(String... texts) {
+        Set<String> terms = new LinkedHashSet<>();
+        for (String text : texts) {
+            if (text == null) {
+                continue;
+            }
+            String folded = MARKS.matcher(Normalizer.normalize(text, Normalizer.Form.NFD)).replaceAll("").toLowerCase(Locale.ROOT);
+            for (String term : NON_WORD.split(folded)) {
+                if (!term.isEmpty()) {
+                    terms.add(term);
+                }
+            }
+        }
+        return List.copyOf(terms);
+    }
+
+    /**
+     * Ids of the best matches, best first, and the facet counts of all matches.
+     */
+    public record Hits(List<Long> ids, long total, long inStock) {
+    }
+
+    private record IndexedProduct(Long id, String[] nameTerms, double price, int quantity) {
+
+        static IndexedProduct of(Product product) {
+            return new IndexedProduct(product.getId(), terms(product.getName()).toArray(String[]::new),
+                    product.getPrice() != null ? product.getPrice() : 0, product.getQuantity());
+        }
+
+        IndexedProduct withQuantity(int quantity) {
+            return new IndexedProduct(id, nameTerms, price, quantity);
+        }
+
+        // query words starting a word of the name: ranks name matches above description-only ones
+        int score(List<String> queryTerms) {
+            int score = 0;
+            for (String queryTerm : queryTerms) {
+                for (String nameTerm : nameTerms) {
+                    if (nameTerm.startsWith(queryTerm)) {
+                        score++;
+                        break;
+                    }
+                }
+            }
+            return score;
+        }
+    }
+
+    private record Hit(IndexedProduct product, int score) {
+    }
+
+    // Best first: highest score, then lowest id
+    private static final Comparator<Hit> RANKING = Comparator.comparingInt(Hit::score).reversed()
+            .thenComparing(hit -> hit.product().id());
+
+    /**
+     * Products are numbered by ordinal in insertion order; each term maps to the ascending ordinals
+     * of the products containing it. An updated product gets a new ordinal and its old one is left
+     * as a tombstone, so postings are append-only; tombstones are dropped by the next rebuild.
+     */
+    private static final class Segment {
+
+        private final ReadWriteLock lock = new ReentrantReadWriteLock();
+        private final NavigableMap<String, IntList> postings = new TreeMap<>();
+        private final Map<Long, Integer> ordinals = new HashMap<>();
+        private IndexedProduct[] products = new IndexedProduct[1024];
+        private int nextOrdinal;
+
+        void put(IndexedProduct product, List<String> terms) {
+            lock.writeLock().lock();
+            try {
+                Integer previous = ordinals.put(product.id(), nextOrdinal);
+                if (previous != null) {
+                    products[previous] = null;
+                }
+                if (nextOrdinal == products.length) {
+                    products = Arrays.copyOf(products, products.length * 2);
+                }
+                products[nextOrdinal] = product;
+                for (String term : terms) {
+                    postings.computeIfAbsent(term, t -> new IntList()).add(nextOrdinal);
+                }
+                nextOrdinal++;
+            } finally {
+                lock.writeLock().unlock();
+            }
+        }
+
+        void remove(Long id) {
+            lock.writeLock().lock();
+            try {
+                Integer ordinal = ordinals.remove(id);
+                if (ordinal != null) {
+                    products[ordinal] = null;
+                }
+            } finally {
+                lock.writeLock().unlock();
+            }
+        }
+
+        void updateStock(Long id, int quantity) {
+            lock.writeLock().lock();
+            try {
+                Integer ordinal = ordinals.get(id);
+                if (ordinal != null) {
+                    products[ordinal] = products[ordinal].withQuantity(quantity);
+                }
+            } finally {
+                lock.writeLock().unlock();
+            }
+        }
+
+        int size() {
+            lock.readLock().lock();
+            try {
+                return ordinals.size();
+            } finally {
+                lock.readLock().unlock();
+            }
+        }
+
+        Hits search(List<String> queryTerms, ProductSearchQuery query) {
+            lock.readLock().lock();
+            try {
+                BitSet candidates = candidates(queryTerms);
+                PriorityQueue<Hit> best = new PriorityQueue<>(query.limit() + 1, RANKING.reversed());
+                long total = 0;
+                long inStock = 0;
+                for (int ordinal = candidates.nextSetBit(0); ordinal >= 0; ordinal = candidates.nextSetBit(ordinal + 1)) {
+                    IndexedProduct product = products[ordinal];
+                    if (product == null
+                            || (query.minPrice() != null && product.price() < query.minPrice())
+                            || (query.maxPrice() != null && product.price() > query.maxPrice())) {
+                        continue;
+                    }
+                    if (product.quantity() > 0) {
+                        inStock++;
+                    } else if (query.inStockOnly()) {
+                        continue;
+                    }
+                    total++;
+                    best.add(new Hit(product, product.score(queryTerms)));
+                    if (best.size() > query.limit()) {
+                        best.poll();
+                    }
+                }
+                List<Long> ids = best.stream().sorted(RANKING).map(hit -> hit.product().id()).toList();
+                return new Hits(ids, total, inStock);
+            } finally {
+                lock.readLock().unlock();
+            }
+        }
+
+        // Ordinals containing, for every query term, a word starting with it; all ordinals without terms
+        private BitSet candidates(List<String> queryTerms) {
+            BitSet candidates = new BitSet(nextOrdinal);
+            if (queryTerms.isEmpty()) {
+                candidates.set(0, nextOrdinal);
+                return candidates;
+            }
+            for (int i = 0; i < queryTerms.size(); i++) {
+                String queryTerm = queryTerms.get(i);
+                BitSet matches = new BitSet(nextOrdinal);
+                for (IntList ordinals : postings.subMap(queryTerm, true, queryTerm + Character.MAX_VALUE, false).values()) {
+                    ordinals.setAll(matches);
+                }
+                if (i == 0) {
+                    candidates = matches;
+                } else {
+                    candidates.and(matches);
+                }
+                if (candidates.isEmpty()) {
+                    break;
+                }
+            }
+            return candidates;
+        }
+    }
+
+    private static final class IntList {
+
+        private int[] values = new int[4];
+        private int size;
+
+        void add(int value) {
+            if (size == values.length) {
+                values = Arrays.copyOf(values, size * 2);
+            }
+            values[size++] = value;
+        }
+
+        void setAll(BitSet bits) {
+            for (int i = 0; i < size; i++) {
+                bits.set(values[i]);
+            }
+        }
+    }
+}
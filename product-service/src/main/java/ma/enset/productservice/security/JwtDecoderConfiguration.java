@@ -0,0 +1,77 @@
+package ma.enset.productservice.security;
+
+import com.nimbusds.jose.JWSAlgorithm;
+import com.nimbusds.jose.KeySourceException;
+import com.nimbusds.jose.jwk.JWKMatcher;
+import com.nimbusds.jose.jwk.JWKSelector;
+import com.nimbusds.jose.jwk.source.JWKSource;
+import com.nimbusds.jose.jwk.source.JWKSourceBuilder;
+import com.nimbusds.jose.proc.JWSVerificationKeySelector;
+import com.nimbusds.jose.proc.SecurityContext;
+import com.nimbusds.jwt.proc.DefaultJWTProcessor;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.security.oauth2.jwt.JwtDecoder;
+import org.springframework.security.oauth2.jwt.JwtValidators;
+import org.springframework.security.oauth2.jwt.NimbusJwtDecoder;
+
+import java.net.MalformedURLException;
+import java.net.URI;
+import java.time.Duration;
+import java.util.concurrent.CompletableFuture;
+
+@Configuration
+public class JwtDecoderConfiguration {
+
+    private static final Logger logger = LoggerFactory.getLogger(JwtDecoderConfiguration.class);
+
+    @Value("${spring.security.oauth2.resourceserver.jwt.jwk-set-uri}")
+    private String jwkSetUri;
+
+    @Value("${spring.security.oauth2.resourceserver.jwt.issuer-uri}")
+    private String issuerUri;
+
+    /**
+     * JWK set cached in memory and refreshed by a background task before it expires,
+     * so request threads only ever read the cached keys.
+     */
+    @Bean
+    public JWKSource<SecurityContext> jwkSource(
+            @Value("${security.jwt.jwk-set.ttl:15m}") Duration ttl,
+            @Value("${security.jwt.jwk-set.refresh-ahead:1m}") Duration refreshAhead,
+            @Value("${security.jwt.jwk-set.refresh-timeout:5s}") Duration refreshTimeout) throws MalformedURLException {
+        JWKSource<SecurityContext> jwkSource = JWKSourceBuilder.<SecurityContext>create(URI.create(jwkSetUri).toURL())
+                .cache(ttl.toMillis(), refreshTimeout.toMillis())
+                .refreshAheadCache(refreshAhead.toMillis(), true)
+                .build();
+        CompletableFuture.runAsync(() -> prefetch(jwkSource));
+        return jwkSource;
+    }
+
+    @Bean
+    public JwtDecoder jwtDecoder(JWKSource<SecurityContext> jwkSource, MeterRegistry meterRegistry,
+                                 @Value("${security.jwt.cache.max-size:10000}") long maxSize,
+                                 @Value("${security.jwt.cache.max-ttl:10m}") Duration maxTtl) {
+        DefaultJWTProcessor<SecurityContext> jwtProcessor = new DefaultJWTProcessor<>();
+        jwtProcessor.setJWSKeySelector(new JWSVerificationKeySelector<>(JWSAlgorithm.RS256, jwkSource));
+        // claims are validated by Spring's validators below
+        jwtProcessor.setJWTClaimsSetVerifier((claims, context) -> {
+        });
+        NimbusJwtDecoder nimbusJwtDecoder = new NimbusJwtDecoder(jwtProcessor);
+        nimbusJwtDecoder.setJwtValidator(JwtValidators.createDefaultWithIssuer(issuerUri));
+        return new CachingJwtDecoder(nimbusJwtDecoder, meterRegistry, maxSize, maxTtl);
+    }
+
+    private void prefetch(JWKSource<SecurityContext> jwkSource) {
+        try {
+            int keys = jwkSource.get(new JWKSelector(new JWKMatcher.Builder().build()), null).size();
+            logger.info("Prefetched {} signing keys from {}", keys, jwkSetUri);
+        } catch (KeySourceException e) {
+            logger.warn("Could not prefetch JWK set from {}, it will be loaded on first use: {}", jwkSetUri, e.getMessage());
+        }
+    }
+}
@@ -0,0 +1,55 @@
+package ma.enset.productservice.security;
+
+import org.springframework.core.convert.converter.Converter;
+import org.springframework.security.core.GrantedAuthority;
+import org.springframework.security.core.authority.SimpleGrantedAuthority;
+import org.springframework.security.oauth2.jwt.Jwt;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Maps Keycloak {@code realm_access.roles} to {@code ROLE_*} authorities.
+ * <p>
+ * Users share a handful of role combinations, so the authorities for each distinct combination are
+ * built once and the same immutable collection is returned for every later token carrying it.
+ * The number of remembered combinations is capped; beyond it authorities are built per call.
+ */
+public class RealmRoleAuthoritiesConverter implements Converter<Jwt, Collection<GrantedAuthority>> {
+
+    static final int MAX_ROLE_COMBINATIONS = 1024;
+
+    private final Map<List<?>, Collection<GrantedAuthority>> authoritiesByRoles = new ConcurrentHashMap<>();
+
+    @Override
+    public Collection<GrantedAuthority> convert(Jwt jwt) {
+        Map<String, Object> realmAccess = jwt.getClaim("realm_access");
+        if (realmAccess == null || !(realmAccess.get("roles") instanceof Collection<?> roles) || roles.isEmpty()) {
+            return List.of();
+        }
+        // JSON arrays are parsed as lists; any other collection type is simply not interned
+        if (!(roles instanceof List<?> roleList)) {
+            return toAuthorities(roles);
+        }
+        Collection<GrantedAuthority> authorities = authoritiesByRoles.get(roleList);
+        if (authorities != null) {
+            return authorities;
+        }
+        authorities = toAuthorities(roleList);
+        if (authoritiesByRoles.size() < MAX_ROLE_COMBINATIONS) {
+            authoritiesByRoles.putIfAbsent(new ArrayList<>(roleList), authorities);
+        }
+        return authorities;
+    }
+
+    private static Collection<GrantedAuthority> toAuthorities(Collection<?> roles) {
+        List<GrantedAuthority> authorities = new ArrayList<>(roles.size());
+        for (Object role : roles) {
+            authorities.add(new SimpleGrantedAuthority("ROLE_" + role));
+        }
+        return List.copyOf(authorities);
+    }
+}
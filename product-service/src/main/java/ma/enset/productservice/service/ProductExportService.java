@@ -0,0 +1,70 @@
+package ma.enset.productservice.service;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.fasterxml.jackson.databind.SequenceWriter;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import jakarta.persistence.EntityManager;
+import ma.enset.productservice.entities.Product;
+import ma.enset.productservice.repository.ProductRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.Iterator;
+import java.util.stream.Stream;
+
+@Service
+public class ProductExportService {
+
+    private static final Logger logger = LoggerFactory.getLogger(ProductExportService.class);
+
+    private final ProductRepository productRepository;
+    private final EntityManager entityManager;
+    private final ObjectMapper objectMapper;
+
+    public ProductExportService(ProductRepository productRepository, EntityManager entityManager, ObjectMapper objectMapper) {
+        this.productRepository = productRepository;
+        this.entityManager = entityManager;
+        this.objectMapper = objectMapper;
+    }
+
+    /**
+     * Writes every product as newline-delimited JSON while reading them from a database cursor.
+     * Each product is detached once written, so memory stays bounded regardless of catalog size.
+     *
+     * @return the number of exported products
+     */
+    @Transactional(readOnly = true)
+    public long exportProducts(OutputStream out) throws IOException {
+        logger.info("Exporting all products");
+        long exported = 0;
+        try (Stream<Product> products = productRepository.streamAll();
+             SequenceWriter writer = ndjsonWriter().writeValues(out)) {
+            for (Iterator<Product> it = products.iterator(); it.hasNext(); ) {
+                Product product = it.next();
+                writer.write(product);
+                entityManager.detach(product);
+                exported++;
+            }
+            if (exported > 0) {
+                writer.flush();
+                out.write('\n');
+            }
+        }
+        logger.info("Exported {} products", exported);
+        return exported;
+    }
+
+    // Buffers output instead of flushing after every product, and leaves closing the response stream to the container
+    private ObjectWriter ndjsonWriter() {
+        return objectMapper.writer()
+                .without(SerializationFeature.FLUSH_AFTER_WRITE_VALUE)
+                .without(JsonGenerator.Feature.AUTO_CLOSE_TARGET)
+                .withRootValueSeparator("\n");
+    }
+}
@@ -0,0 +1,160 @@
+package ma.enset.productservice.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.persistence.EntityManager;
+import ma.enset.productservice.entities.Product;
+import ma.enset.productservice.model.ProductImportError;
+import ma.enset.productservice.model.ProductImportReport;
+import ma.enset.productservice.model.ProductUpsert;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataAccessException;
+import org.springframework.http.MediaType;
+import org.springframework.stereotype.Service;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Loads a catalog file into the products table while reading it: records are validated one by
+ * one, and valid ones are upserted {@code batch-size} at a time, each batch in its own transaction.
+ * Memory holds one batch and the first {@code max-reported-errors} errors, whatever the file size.
+ * <p>
+ * A record with an {@code id} updates that product, one without is inserted. Invalid records are
+ * reported with their line and skipped. A batch the database rejects is retried one record per
+ * transaction, so only the records the database refuses are reported, each with its own cause.
+ */
+@Service
+public class ProductImportService {
+
+    private static final Logger logger = LoggerFactory.getLogger(ProductImportService.class);
+
+    public static final MediaType TEXT_CSV = MediaType.parseMediaType("text/csv");
+
+    private final ProductService productService;
+    private final EntityManager entityManager;
+    private final ObjectReader productReader;
+    private final Timer importTimer;
+    private final int batchSize;
+    private final int maxReportedErrors;
+
+    public ProductImportService(ProductService productService, EntityManager entityManager, ObjectMapper objectMapper,
+                                MeterRegistry meterRegistry,
+                                @Value("${product.import.batch-size:500}") int batchSize,
+                                @Value("${product.import.max-reported-errors:1000}") int maxReportedErrors) {
+        this.productService = productService;
+        this.entityManager = entityManager;
+        this.productReader = objectMapper.readerFor(Product.class);
+        this.importTimer = Timer.builder("products.import")
+                .description("Time spent importing a catalog file")
+                .register(meterRegistry);
+        this.batchSize = batchSize;
+        this.maxReportedErrors = maxReportedErrors;
+    }
+
+    /**
+     * @param format {@link #TEXT_CSV} or {@link MediaType#APPLICATION_NDJSON}
+     * @throws IllegalArgumentException for another format or an unusable CSV header
+     */
+    public ProductImportReport importProducts(InputStream in, MediaType format) throws IOException {
+        BufferedReader reader = new BufferedReader(new InputStreamReader(in, StandardCharsets.UTF_8));
+        ProductRecordReader records;
+        if (TEXT_CSV.isCompatibleWith(format)) {
+            records = ProductRecordReader.csv(reader);
+        } else if (MediaType.APPLICATION_NDJSON.isCompatibleWith(format)) {
+            records = ProductRecordReader.ndjson(reader, productReader);
+        } else {
+            throw new IllegalArgumentException("Unsupported import format " + format + ", expected text/csv or application/x-ndjson");
+        }
+        Timer.Sample sample = Timer.start();
+        try {
+            return importRecords(records);
+        } finally {
+            sample.stop(importTimer);
+        }
+    }
+
+    private ProductImportReport importRecords(ProductRecordReader records) throws IOException {
+        Report report = new Report();
+        List<ProductRecordReader.ProductRecord> batch = new ArrayList<>(batchSize);
+        for (ProductRecordReader.ProductRecord record = records.next(); record != null; record = records.next()) {
+            report.records++;
+            String error = record.error() != null ? record.error() : validate(record.product());
+            if (error != null) {
+                report.fail(record.line(), error);
+                continue;
+            }
+            batch.add(record);
+            if (batch.size() == batchSize) {
+                upsert(batch, report);
+                batch.clear();
+            }
+        }
+        if (!batch.isEmpty()) {
+            upsert(batch, report);
+        }
+        logger.info("Imported {} records: {} inserted, {} updated, {} failed",
+                report.records, report.inserted, report.updated, report.failed);
+        return new ProductImportReport(report.records, report.inserted, report.updated, report.failed,
+                report.errors, report.failed > report.errors.size());
+    }
+
+    private void upsert(List<ProductRecordReader.ProductRecord> batch, Report report) {
+        try {
+            ProductUpsert upsert = productService.upsertProducts(batch.stream().map(ProductRecordReader.ProductRecord::product).toList());
+            report.inserted += upsert.inserted();
+            report.updated += upsert.updated();
+            for (ProductRecordReader.ProductRecord record : batch) {
+                if (upsert.missingIds().contains(record.product().getId())) {
+                    report.fail(record.line(), "Product not found: " + record.product().getId());
+                }
+            }
+        } catch (DataAccessException e) {
+            if (batch.size() == 1) {
+                report.fail(batch.get(0).line(), "Rejected by the database: " + e.getMostSpecificCause().getMessage());
+                return;
+            }
+            logger.warn("Import batch of {} records starting at line {} failed, retrying record by record",
+                    batch.size(), batch.get(0).line(), e);
+            entityManager.clear();
+            batch.forEach(record -> upsert(List.of(record), report));
+        } finally {
+            // with open-in-view the persistence context outlives each batch's transaction
+            entityManager.clear();
+        }
+    }
+
+    private static String validate(Product product) {
+        try {
+            ProductService.validateProduct(product);
+            return null;
+        } catch (IllegalArgumentException e) {
+            return e.getMessage();
+        }
+    }
+
+    private final class Report {
+
+        long records;
+        long inserted;
+        long updated;
+        long failed;
+        final List<ProductImportError> errors = new ArrayList<>();
+
+        void fail(long line, String message) {
+            failed++;
+            if (errors.size() < maxReportedErrors) {
+                errors.add(new ProductImportError(line, message));
+            }
+        }
+    }
+}
@@ -0,0 +1,212 @@
+package ma.enset.productservice.service;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectReader;
+import ma.enset.productservice.entities.Product;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Function;
+
+/**
+ * Reads products one record at a time from a CSV or NDJSON stream, so only the current record is
+ * held in memory. A record that cannot be parsed is returned with its error instead of a product,
+ * and reading carries on with the next one.
+ * <p>
+ * CSV files start with a header naming their columns, in any order: {@code name} and {@code price}
+ * are required, {@code id}, {@code description} and {@code quantity} optional. Fields may be
+ * double-quoted, with {@code ""} for a quote, and quoted fields may span lines.
+ */
+abstract class ProductRecordReader {
+
+    record ProductRecord(long line, Product product, String error) {
+    }
+
+    private final BufferedReader reader;
+    private long lineNumber;
+
+    private ProductRecordReader(BufferedReader reader) {
+        this.reader = reader;
+    }
+
+    static ProductRecordReader ndjson(BufferedReader reader, ObjectReader productReader) {
+        return new NdjsonReader(reader, productReader);
+    }
+
+    static ProductRecordReader csv(BufferedReader reader) throws IOException {
+        return new CsvReader(reader);
+    }
+
+    /**
+     * @return the next record, or null at the end of the stream
+     */
+    abstract ProductRecord next() throws IOException;
+
+    String readLine() throws IOException {
+        String line = reader.readLine();
+        if (line != null) {
+            lineNumber++;
+        }
+        return line;
+    }
+
+    long lineNumber() {
+        return lineNumber;
+    }
+
+    private static final class NdjsonReader extends ProductRecordReader {
+
+        private final ObjectReader productReader;
+
+        NdjsonReader(BufferedReader reader, ObjectReader productReader) {
+            super(reader);
+            this.productReader = productReader;
+        }
+
+        @Override
+        ProductRecord next() throws IOException {
+            String line;
+            do {
+                line = readLine();
+            } while (line != null && line.isBlank());
+            if (line == null) {
+                return null;
+            }
+            try {
+                return new ProductRecord(lineNumber(), productReader.readValue(line), null);
+            } catch (JsonProcessingException e) {
+                return new ProductRecord(lineNumber(), null, "Invalid JSON: " + e.getOriginalMessage());
+            }
+        }
+    }
+
+    private static final class CsvReader extends ProductRecordReader {
+
+        private static final Set<String> COLUMNS = Set.of("id", "name", "description", "price", "quantity");
+
+        private final Map<String, Integer> columns = new HashMap<>();
+
+        CsvReader(BufferedReader reader) throws IOException {
+            super(reader);
+            String header = readLine();
+            if (header == null) {
+                throw new IllegalArgumentException("CSV file is empty");
+            }
+            // tolerates the byte order mark spreadsheet exports start with
+            List<String> names = split(header.startsWith("\uFEFF") ? header.substring(1) : header);
+            for (int i = 0; i < names.size(); i++) {
+                String name = names.get(i).trim().toLowerCase(Locale.ROOT);
+                if (!COLUMNS.contains(name)) {
+                    throw new IllegalArgumentException("Unknown CSV column '" + names.get(i) + "', expected " + COLUMNS);
+                }
+                if (columns.put(name, i) != null) {
+                    throw new IllegalArgumentException("Duplicate CSV column '" + names.get(i) + "'");
+                }
+            }
+            if (!columns.containsKey("name") || !columns.containsKey("price")) {
+                throw new IllegalArgumentException("CSV header must contain the name and price columns");
+            }
+        }
+
+        @Override
+        ProductRecord next() throws IOException {
+            String line;
+            do {
+                line = readLine();
+            } while (line != null && line.isBlank());
+            if (line == null) {
+                return null;
+            }
+            long start = lineNumber();
+            StringBuilder record = new StringBuilder(line);
+            while (openQuote(record)) {
+                String continuation = readLine();
+                if (continuation == null) {
+                    return new ProductRecord(start, null, "Unterminated quoted field");
+                }
+                record.append('\n').append(continuation);
+            }
+            List<String> fields = split(record);
+            if (fields.size() != columns.size()) {
+                return new ProductRecord(start, null, "Expected " + columns.size() + " fields but found " + fields.size());
+            }
+            try {
+                Integer quantity = parse(fields, "quantity", Integer::valueOf);
+                return new ProductRecord(start, Product.builder()
+                        .id(parse(fields, "id", Long::valueOf))
+                        .name(field(fields, "name"))
+                        .description(field(fields, "description"))
+                        .price(parse(fields, "price", Double::valueOf))
+                        .quantity(quantity != null ? quantity : 0)
+                        .build(), null);
+            } catch (NumberFormatException e) {
+                return new ProductRecord(start, null, e.getMessage());
+            }
+        }
+
+        private String field(List<String> fields, String column) {
+            Integer index = columns.get(column);
+            if (index == null || fields.get(index).isEmpty()) {
+                return null;
+            }
+            return fields.get(index);
+        }
+
+        // null for an empty or missing column
+        private <T> T parse(List<String> fields, String column, Function<String, T> parser) {
+            String value = field(fields, column);
+            if (value == null) {
+                return null;
+            }
+            try {
+                return parser.apply(value.trim());
+            } catch (NumberFormatException e) {
+                throw new NumberFormatException("Invalid " + column + ": '" + value + "'");
+            }
+        }
+
+        private static boolean openQuote(CharSequence record) {
+            boolean quoted = false;
+            for (int i = 0; i < record.length(); i++) {
+                if (record.charAt(i) == '"') {
+                    quoted = !quoted;
+                }
+            }
+            return quoted;
+        }
+
+        private static List<String> split(CharSequence record) {
+            List<String> fields = new ArrayList<>();
+            StringBuilder field = new StringBuilder();
+            boolean quoted = false;
+            for (int i = 0; i < record.length(); i++) {
+                char c = record.charAt(i);
+                if (quoted) {
+                    if (c != '"') {
+                        field.append(c);
+                    } else if (i + 1 < record.length() && record.charAt(i + 1) == '"') {
+                        field.append('"');
+                        i++;
+                    } else {
+                        quoted = false;
+                    }
+                } else if (c == '"') {
+                    quoted = true;
+                } else if (c == ',') {
+                    fields.add(field.toString());
+                    field.setLength(0);
+                } else {
+                    field.append(c);
+                }
+            }
+            fields.add(field.toString());
+            return fields;
+        }
+    }
+}
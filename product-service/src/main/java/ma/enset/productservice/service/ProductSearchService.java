@@ -0,0 +1,87 @@
+package ma.enset.productservice.service;
+
+import jakarta.persistence.EntityManager;
+import ma.enset.productservice.entities.Product;
+import ma.enset.productservice.model.ProductSearchQuery;
+import ma.enset.productservice.model.ProductSearchResult;
+import ma.enset.productservice.repository.ProductRepository;
+import ma.enset.productservice.search.ProductSearchIndex;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * Answers {@code GET /products/search} from {@link ProductSearchIndex}, then loads the matching
+ * page of products in one query, so the returned fields and stock are current even when the index
+ * lags behind a write made through another instance.
+ */
+@Service
+public class ProductSearchService {
+
+    private static final Logger logger = LoggerFactory.getLogger(ProductSearchService.class);
+
+    private final ProductSearchIndex searchIndex;
+    private final ProductRepository productRepository;
+    private final EntityManager entityManager;
+    private final int maxLimit;
+
+    public ProductSearchService(ProductSearchIndex searchIndex, ProductRepository productRepository,
+                                EntityManager entityManager,
+                                @Value("${product.search.max-limit:100}") int maxLimit) {
+        this.searchIndex = searchIndex;
+        this.productRepository = productRepository;
+        this.entityManager = entityManager;
+        this.maxLimit = maxLimit;
+    }
+
+    public ProductSearchResult search(ProductSearchQuery query) {
+        if (query.limit() < 1 || query.limit() > maxLimit) {
+            throw new IllegalArgumentException("limit must be between 1 and " + maxLimit);
+        }
+        if (query.minPrice() != null && query.maxPrice() != null && query.minPrice() > query.maxPrice()) {
+            throw new IllegalArgumentException("minPrice cannot be greater than maxPrice");
+        }
+        ProductSearchIndex.Hits hits = searchIndex.search(query);
+        logger.debug("Search '{}' matched {} products", query.text(), hits.total());
+        if (hits.ids().isEmpty()) {
+            return new ProductSearchResult(hits.total(), hits.inStock(), List.of());
+        }
+        Map<Long, Product> products = productRepository.findAllById(hits.ids()).stream()
+                .collect(Collectors.toMap(Product::getId, Function.identity()));
+        List<Product> page = hits.ids().stream()
+                .map(products::get)
+                .filter(Objects::nonNull)
+                // the index may not have seen the last sale yet
+                .filter(product -> !query.inStockOnly() || product.getQuantity() > 0)
+                .toList();
+        return new ProductSearchResult(hits.total(), hits.inStock(), page);
+    }
+
+    /**
+     * Rebuilds the index from a database cursor at startup and then periodically, to pick up writes
+     * made through other instances and drop the entries of updated products.
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    @Scheduled(initialDelayString = "${product.search.rebuild-interval:10m}", fixedDelayString = "${product.search.rebuild-interval:10m}")
+    @Transactional(readOnly = true)
+    public void rebuildIndex() {
+        long start = System.nanoTime();
+        try (Stream<Product> products = productRepository.streamAll()) {
+            // detached once indexed, so the persistence context does not grow with the catalog
+            int indexed = searchIndex.rebuild(products.peek(entityManager::detach));
+            logger.info("Indexed {} products for search in {} ms", indexed, (System.nanoTime() - start) / 1_000_000);
+        }
+    }
+}
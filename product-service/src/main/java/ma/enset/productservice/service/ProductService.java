@@ -1,12 +1,39 @@
 package ma.enset.productservice.service;
 
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.observation.Observation;
+import io.micrometer.observation.ObservationRegistry;
+import ma.enset.productservice.cache.ProductCatalogCache;
+import ma.enset.productservice.config.PrimaryReads;
+import ma.enset.productservice.entities.AppliedReservation;
 import ma.enset.productservice.entities.Product;
+import ma.enset.productservice.model.ProductUpsert;
+import ma.enset.productservice.model.StockReservation;
+import ma.enset.productservice.repository.AppliedReservationRepository;
 import ma.enset.productservice.repository.ProductRepository;
+import ma.enset.productservice.search.ProductSearchIndex;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.Limit;
+import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
 
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.function.Function;
+import java.util.stream.Collectors;
 
 @Service
 public class ProductService {
@@ -14,65 +41,262 @@ public class ProductService {
     private static final Logger logger = LoggerFactory.getLogger(ProductService.class);
 
     private final ProductRepository productRepository;
+    private final AppliedReservationRepository appliedReservationRepository;
+    private final Duration reservationKeyRetention;
+    private final ProductCatalogCache productCache;
+    private final StockEventPublisher stockEvents;
+    private final ProductSearchIndex searchIndex;
+    private final MeterRegistry meterRegistry;
+    private final ObservationRegistry observationRegistry;
+    private final Timer checkStockTimer;
+    private final Timer reduceStockTimer;
+    private final Timer reserveStockTimer;
 
-    public ProductService(ProductRepository productRepository) {
+    public ProductService(ProductRepository productRepository, AppliedReservationRepository appliedReservationRepository,
+                          @Value("${product.reservations.key-retention:7d}") Duration reservationKeyRetention,
+                          ProductCatalogCache productCache, StockEventPublisher stockEvents,
+                          ProductSearchIndex searchIndex, MeterRegistry meterRegistry,
+                          ObjectProvider<ObservationRegistry> observationRegistry) {
         this.productRepository = productRepository;
+        this.appliedReservationRepository = appliedReservationRepository;
+        this.reservationKeyRetention = reservationKeyRetention;
+        this.productCache = productCache;
+        this.stockEvents = stockEvents;
+        this.searchIndex = searchIndex;
+        this.meterRegistry = meterRegistry;
+        this.observationRegistry = observationRegistry.getIfAvailable(() -> ObservationRegistry.NOOP);
+        this.checkStockTimer = stockTimer(meterRegistry, "check");
+        this.reduceStockTimer = stockTimer(meterRegistry, "reduce");
+        this.reserveStockTimer = stockTimer(meterRegistry, "reserve");
     }
 
-    public List<Product> getAllProducts() {
-        logger.info("Fetching all products");
-        return productRepository.findAll();
+    public List<Product> getProducts(Long afterId, int limit) {
+        logger.info("Fetching up to {} products after id {}", limit, afterId);
+        // cache entries outlive replica lag, so they are loaded from the primary
+        return productCache.getPage(afterId, limit,
+                () -> PrimaryReads.call(() -> productRepository.findByIdGreaterThanOrderByIdAsc(afterId, Limit.of(limit))));
     }
 
     public Product getProductById(Long id) {
         logger.info("Fetching product with id: {}", id);
-        Product product = productRepository.findById(id).orElseThrow(() -> {
-            logger.error("Product not found with id: {}", id);
-            return new RuntimeException("Product not found");
-        });
-        return product;
+        return productCache.get(id, productId -> PrimaryReads.call(() -> loadProduct(productId)));
     }
 
     public Product addProduct(Product product) {
         validateProduct(product);
         logger.info("Adding new product: {}", product.getName());
-        return productRepository.save(product);
+        Product saved = productRepository.save(product);
+        productCache.evictPages();
+        searchIndex.put(saved);
+        return saved;
     }
 
     public Product updateProduct(Long id, Product product) {
         validateProduct(product);
         logger.info("Updating product with id: {}", id);
-        Product existing = getProductById(id);
+        // from the primary: a replica lagging behind would hand out a stale version to write back
+        Product existing = PrimaryReads.call(() -> loadProduct(id));
         existing.setName(product.getName());
         existing.setDescription(product.getDescription());
         existing.setPrice(product.getPrice());
         existing.setQuantity(product.getQuantity());
-        return productRepository.save(existing);
+        Product saved = productRepository.save(existing);
+        productCache.evictProduct(id);
+        searchIndex.put(saved);
+        stockEvents.stockChanged(id);
+        return saved;
+    }
+
+    /**
+     * Inserts the products without an id and updates the ones with an id, in one transaction: the
+     * existing rows are loaded with one query and all writes are flushed as JDBC batches. Products
+     * are expected to be valid already. Ids with no matching row are skipped and returned.
+     */
+    @Transactional
+    public ProductUpsert upsertProducts(List<Product> products) {
+        Set<Long> ids = products.stream().map(Product::getId).filter(Objects::nonNull).collect(Collectors.toSet());
+        Map<Long, Product> existing = ids.isEmpty() ? Map.of() : productRepository.findAllById(ids).stream()
+                .collect(Collectors.toMap(Product::getId, Function.identity()));
+        List<Product> inserted = new ArrayList<>();
+        Map<Long, Product> updated = new LinkedHashMap<>();
+        Set<Long> missingIds = new HashSet<>();
+        for (Product product : products) {
+            if (product.getId() == null) {
+                inserted.add(Product.builder()
+                        .name(product.getName())
+                        .description(product.getDescription())
+                        .price(product.getPrice())
+                        .quantity(product.getQuantity())
+                        .build());
+                continue;
+            }
+            Product target = existing.get(product.getId());
+            if (target == null) {
+                missingIds.add(product.getId());
+                continue;
+            }
+            target.setName(product.getName());
+            target.setDescription(product.getDescription());
+            target.setPrice(product.getPrice());
+            target.setQuantity(product.getQuantity());
+            updated.put(target.getId(), target);
+        }
+        productRepository.saveAll(inserted);
+        productRepository.flush();
+        logger.info("Upserted {} new and {} existing products", inserted.size(), updated.size());
+
+        // the cache and the stock events already wait for the commit; the index is only told then
+        productCache.evictPages();
+        updated.keySet().forEach(productCache::evictProduct);
+        updated.keySet().forEach(stockEvents::stockChanged);
+        List<Product> saved = new ArrayList<>(inserted);
+        saved.addAll(updated.values());
+        ProductCatalogCache.afterCommit(() -> saved.forEach(searchIndex::put));
+        return new ProductUpsert(inserted.size(), updated.size(), missingIds);
     }
 
     public void deleteProduct(Long id) {
         logger.info("Deleting product with id: {}", id);
         productRepository.deleteById(id);
+        productCache.evictProduct(id);
+        searchIndex.remove(id);
     }
 
     public boolean checkStock(Long productId, int quantity) {
-        logger.debug("Checking stock for product {} with quantity {}", productId, quantity);
-        Product product = getProductById(productId);
-        return product.getQuantity() >= quantity;
+        return checkStockTimer.record(() -> {
+            logger.debug("Checking stock for product {} with quantity {}", productId, quantity);
+            Integer available = productCache.getStock(productId);
+            if (available == null) {
+                logger.error("Product not found with id: {}", productId);
+                throw new RuntimeException("Product not found");
+            }
+            if (available < quantity) {
+                insufficientStock("check");
+                return false;
+            }
+            return true;
+        });
     }
 
+    @Transactional
     public void reduceStock(Long productId, int quantity) {
-        logger.info("Reducing stock for product {} by {}", productId, quantity);
-        Product product = getProductById(productId);
-        if (product.getQuantity() < quantity) {
-            logger.error("Insufficient stock for product {}: requested {}, available {}", productId, quantity, product.getQuantity());
-            throw new RuntimeException("Insufficient stock");
+        reduceStockTimer.record(() -> {
+            logger.info("Reducing stock for product {} by {}", productId, quantity);
+            if (quantity <= 0) {
+                throw new IllegalArgumentException("Quantity must be positive");
+            }
+            if (productRepository.decrementStock(productId, quantity) == 0) {
+                Product product = loadProduct(productId);
+                logger.error("Insufficient stock for product {}: requested {}, available {}", productId, quantity, product.getQuantity());
+                insufficientStock("reduce");
+                throw new RuntimeException("Insufficient stock");
+            }
+            productCache.evictStock(productId);
+            stockEvents.stockChanged(productId);
+        });
+    }
+
+    /**
+     * Checks and decrements stock for every reserved product in a single transaction.
+     * Either all quantities are reserved or none are.
+     */
+    @Transactional
+    public void reserveStock(List<StockReservation> reservations) {
+        reserveStock(reservations, null, null);
+    }
+
+    /**
+     * Same as {@link #reserveStock(List)}, but a reservation whose idempotency key was already
+     * applied for the same {@code principal} succeeds without decrementing stock again. The key is
+     * recorded in the same transaction as the decrements; a concurrent duplicate fails on the key's
+     * primary key.
+     */
+    @Transactional
+    public void reserveStock(List<StockReservation> reservations, String principal, String idempotencyKey) {
+        reserveStockTimer.record(() -> applyReservation(reservations, principal, idempotencyKey));
+    }
+
+    private void applyReservation(List<StockReservation> reservations, String principal, String idempotencyKey) {
+        Map<Long, Integer> requested = mergeReservations(reservations);
+        if (idempotencyKey != null
+                && appliedReservationRepository.existsById(new AppliedReservation.Key(principal, idempotencyKey))) {
+            logger.info("Reservation {} of {} already applied, skipping", idempotencyKey, principal);
+            return;
+        }
+        logger.info("Reserving stock for {} products", requested.size());
+
+        // one span per product, so a slow row lock shows up on the product that caused it
+        requested.forEach((productId, quantity) -> Observation.createNotStarted("products.stock.item", observationRegistry)
+                .contextualName("reserve stock")
+                .lowCardinalityKeyValue("operation", "reserve")
+                .highCardinalityKeyValue("product.id", String.valueOf(productId))
+                .observe(() -> reserveItem(productId, quantity)));
+        if (idempotencyKey != null) {
+            appliedReservationRepository.saveAndFlush(new AppliedReservation(principal, idempotencyKey, Instant.now()));
+        }
+    }
+
+    // Keys are only needed while their sender may still redeliver the reservation
+    @Scheduled(fixedDelayString = "${product.reservations.purge-interval:1h}")
+    public void purgeAppliedReservations() {
+        int purged = appliedReservationRepository.deleteAppliedBefore(Instant.now().minus(reservationKeyRetention));
+        if (purged > 0) {
+            logger.info("Purged {} applied reservation keys", purged);
+        }
+    }
+
+    private void reserveItem(Long productId, int quantity) {
+        if (productRepository.decrementStock(productId, quantity) == 0) {
+            if (!productRepository.existsById(productId)) {
+                logger.error("Product not found with id: {}", productId);
+                throw new RuntimeException("Product not found");
+            }
+            logger.error("Insufficient stock for product {}: requested {}", productId, quantity);
+            insufficientStock("reserve");
+            throw new RuntimeException("Insufficient stock for product " + productId);
+        }
+        productCache.evictStock(productId);
+        stockEvents.stockChanged(productId);
+    }
+
+    private void insufficientStock(String operation) {
+        meterRegistry.counter("products.stock.insufficient", "operation", operation).increment();
+    }
+
+    // Covers the method body only; the commit of @Transactional callers is in http.server.requests
+    private static Timer stockTimer(MeterRegistry meterRegistry, String operation) {
+        return Timer.builder("products.stock")
+                .description("Time spent checking or updating stock")
+                .tag("operation", operation)
+                .register(meterRegistry);
+    }
+
+    private Product loadProduct(Long id) {
+        return productRepository.findById(id).orElseThrow(() -> {
+            logger.error("Product not found with id: {}", id);
+            return new RuntimeException("Product not found");
+        });
+    }
+
+    // Sums quantities of repeated products; ids are kept sorted so concurrent reservations lock rows in the same order
+    private Map<Long, Integer> mergeReservations(List<StockReservation> reservations) {
+        if (reservations == null || reservations.isEmpty()) {
+            throw new IllegalArgumentException("Reservation must contain at least one product");
+        }
+        Map<Long, Integer> requested = new TreeMap<>();
+        for (StockReservation reservation : reservations) {
+            if (reservation.productId() == null) {
+                throw new IllegalArgumentException("Product ID cannot be null");
+            }
+            if (reservation.quantity() <= 0) {
+                throw new IllegalArgumentException("Quantity must be positive");
+            }
+            requested.merge(reservation.productId(), reservation.quantity(), Integer::sum);
         }
-        product.setQuantity(product.getQuantity() - quantity);
-        productRepository.save(product);
+        return requested;
     }
 
-    private void validateProduct(Product product) {
+    static void validateProduct(Product product) {
         if (product.getName() == null || product.getName().trim().isEmpty()) {
             throw new IllegalArgumentException("Product name cannot be empty");
         }
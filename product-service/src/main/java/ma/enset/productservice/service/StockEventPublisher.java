@@ -0,0 +1,112 @@
+package ma.enset.productservice.service;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import ma.enset.productservice.cache.ProductCatalogCache;
+import ma.enset.productservice.config.PrimaryReads;
+import ma.enset.productservice.model.StockLevel;
+import ma.enset.productservice.repository.ProductRepository;
+import ma.enset.productservice.search.ProductSearchIndex;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Pushes stock levels to clients of {@code GET /products/stock/events} instead of having them
+ * re-fetch {@code GET /products}, and to the search index for its in-stock filter. Writers only
+ * record which products changed; every flush interval the changed ids are read back in one query
+ * and fanned out, so a product sold a hundred times between two flushes costs one row and one event.
+ */
+@Component
+public class StockEventPublisher {
+
+    private static final Logger logger = LoggerFactory.getLogger(StockEventPublisher.class);
+
+    static final String EVENT_NAME = "stock";
+
+    private final ProductRepository productRepository;
+    private final ProductSearchIndex searchIndex;
+    private final Duration timeout;
+    private final int maxPending;
+    private final Set<Long> changed = ConcurrentHashMap.newKeySet();
+    private final List<CoalescingEmitter<Long, StockLevel>> subscribers = new CopyOnWriteArrayList<>();
+    private final ExecutorService senders = Executors.newVirtualThreadPerTaskExecutor();
+    private final Counter dropped;
+
+    public StockEventPublisher(ProductRepository productRepository, ProductSearchIndex searchIndex,
+                               MeterRegistry meterRegistry,
+                               @Value("${product.stock-events.timeout:30m}") Duration timeout,
+                               @Value("${product.stock-events.max-pending:1000}") int maxPending) {
+        this.productRepository = productRepository;
+        this.searchIndex = searchIndex;
+        this.timeout = timeout;
+        this.maxPending = maxPending;
+        meterRegistry.gaugeCollectionSize("products.stock.events.subscribers", List.of(), subscribers);
+        this.dropped = Counter.builder("products.stock.events.dropped")
+                .description("Subscribers dropped during a flush: gone, or more than max-pending products behind")
+                .register(meterRegistry);
+    }
+
+    public SseEmitter subscribe() {
+        CoalescingEmitter<Long, StockLevel> subscriber =
+                new CoalescingEmitter<>(new SseEmitter(timeout.toMillis()), EVENT_NAME, maxPending, senders);
+        subscribers.add(subscriber);
+        Runnable unsubscribe = () -> {
+            subscriber.close();
+            subscribers.remove(subscriber);
+        };
+        subscriber.emitter().onCompletion(unsubscribe);
+        subscriber.emitter().onTimeout(unsubscribe);
+        subscriber.emitter().onError(e -> unsubscribe.run());
+        return subscriber.emitter();
+    }
+
+    /**
+     * Records that the product's stock changed; inside a transaction, only once it commits.
+     */
+    public void stockChanged(Long productId) {
+        ProductCatalogCache.afterCommit(() -> changed.add(productId));
+    }
+
+    @Scheduled(fixedDelayString = "${product.stock-events.flush-interval:250ms}")
+    public void flush() {
+        if (changed.isEmpty()) {
+            return;
+        }
+        List<Long> ids = new ArrayList<>(changed);
+        // removed before the read, so a change committed while it runs is kept for the next flush
+        changed.removeAll(ids);
+        // the ids are consumed, so the levels must be the committed ones and not a lagging replica's
+        List<StockLevel> levels;
+        try {
+            levels = PrimaryReads.call(() -> productRepository.findStockLevelsByIdIn(ids));
+        } catch (RuntimeException e) {
+            changed.addAll(ids);
+            logger.warn("Could not read {} changed stock levels, retrying on the next flush: {}", ids.size(), e.toString());
+            return;
+        }
+        searchIndex.updateStock(levels);
+        logger.debug("Pushing {} stock levels to {} subscribers", levels.size(), subscribers.size());
+        for (CoalescingEmitter<Long, StockLevel> subscriber : subscribers) {
+            for (StockLevel level : levels) {
+                if (!subscriber.offer(level.productId(), level)) {
+                    subscribers.remove(subscriber);
+                    dropped.increment();
+                    break;
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,99 @@
+package ma.enset.productservice.cache;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import ma.enset.productservice.entities.Product;
+import ma.enset.productservice.repository.ProductRepository;
+import ma.enset.productservice.search.ProductSearchIndex;
+import ma.enset.productservice.service.ProductService;
+import ma.enset.productservice.service.StockEventPublisher;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+
+import jakarta.persistence.EntityManagerFactory;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@DataJpaTest(properties = {
+        "spring.jpa.properties.hibernate.generate_statistics=true",
+        "product.cache.stock.ttl=1h"
+})
+@Import({ProductService.class, ProductCatalogCache.class, StockEventPublisher.class, ProductSearchIndex.class, SimpleMeterRegistry.class})
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+class ProductCatalogCacheTests {
+
+    @Autowired
+    private ProductService productService;
+
+    @Autowired
+    private ProductRepository productRepository;
+
+    @Autowired
+    private EntityManagerFactory entityManagerFactory;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    private Statistics statistics;
+    private Long productId;
+
+    @BeforeEach
+    void setUp() {
+        productRepository.deleteAll();
+        productId = productRepository.save(Product.builder().name("Keyboard").price(50.0).quantity(10).build()).getId();
+        statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+        statistics.clear();
+    }
+
+    @Test
+    void repeatedReadsHitTheCache() {
+        productService.getProductById(productId);
+        long queriesAfterFirstRead = statistics.getPrepareStatementCount();
+        double hitsAfterFirstRead = productCacheHits();
+
+        productService.getProductById(productId);
+        productService.checkStock(productId, 5);
+
+        assertThat(statistics.getPrepareStatementCount()).isEqualTo(queriesAfterFirstRead);
+        assertThat(productCacheHits()).isEqualTo(hitsAfterFirstRead + 1);
+    }
+
+    @Test
+    void stockReductionIsVisibleImmediately() {
+        productService.getProductById(productId);
+
+        productService.reduceStock(productId, 4);
+
+        assertThat(productService.getProductById(productId).getQuantity()).isEqualTo(6);
+        assertThat(productService.checkStock(productId, 7)).isFalse();
+    }
+
+    @Test
+    void updateEvictsCatalogFields() {
+        productService.getProductById(productId);
+
+        productService.updateProduct(productId, Product.builder().name("Mechanical keyboard").price(80.0).quantity(3).build());
+
+        Product product = productService.getProductById(productId);
+        assertThat(product.getName()).isEqualTo("Mechanical keyboard");
+        assertThat(product.getQuantity()).isEqualTo(3);
+    }
+
+    @Test
+    void callersCannotMutateCachedEntries() {
+        productService.getProductById(productId).setName("changed by caller");
+
+        assertThat(productService.getProductById(productId).getName()).isEqualTo("Keyboard");
+    }
+
+    private double productCacheHits() {
+        return meterRegistry.get("cache.gets").tag("cache", "products").tag("result", "hit").functionCounter().count();
+    }
+}
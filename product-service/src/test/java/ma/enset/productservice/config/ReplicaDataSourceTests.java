@@ -0,0 +1,145 @@
+package ma.enset.productservice.config;
+
+import com.zaxxer.hikari.HikariDataSource;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import ma.enset.productservice.cache.ProductCatalogCache;
+import ma.enset.productservice.entities.Product;
+import ma.enset.productservice.repository.ProductRepository;
+import ma.enset.productservice.search.ProductSearchIndex;
+import ma.enset.productservice.service.ProductService;
+import ma.enset.productservice.service.StockEventPublisher;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.data.domain.Limit;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Two in-memory databases stand in for a primary and its replica; {@link #replicate()} copies the
+ * primary over the replica, so between two calls the replica lags behind. The second replica URL
+ * points to a database that does not exist.
+ */
+@DataJpaTest(properties = {
+        "spring.datasource.url=jdbc:h2:mem:primary;DB_CLOSE_DELAY=-1",
+        "datasource.replicas.urls=" + ReplicaDataSourceTests.REPLICA_URL + ",jdbc:h2:mem:missing;IFEXISTS=TRUE"})
+@AutoConfigureTestDatabase(replace = AutoConfigureTestDatabase.Replace.NONE)
+@Import({ReplicaDataSourceConfiguration.class, ProductService.class, ProductCatalogCache.class,
+        StockEventPublisher.class, ProductSearchIndex.class, SimpleMeterRegistry.class})
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+class ReplicaDataSourceTests {
+
+    static final String REPLICA_URL = "jdbc:h2:mem:replica;DB_CLOSE_DELAY=-1";
+
+    @Autowired
+    private ProductService productService;
+
+    @Autowired
+    private ProductRepository productRepository;
+
+    @Autowired
+    private HikariDataSource primaryDataSource;
+
+    @Autowired
+    private ReplicaDataSource replicaDataSource;
+
+    @Autowired
+    private SimpleMeterRegistry meterRegistry;
+
+    @BeforeEach
+    void setUp() throws SQLException {
+        replicate();
+    }
+
+    @AfterEach
+    void tearDown() {
+        productRepository.deleteAll();
+    }
+
+    @Test
+    void readOnlyTransactionsUseTheReplicaAndWritesThePrimary() throws SQLException {
+        Product product = productService.addProduct(Product.builder().name("Replicated").price(10.0).quantity(3).build());
+
+        // repository reads run in read-only transactions
+        assertThat(productRepository.findById(product.getId())).isEmpty();
+        assertThat(PrimaryReads.call(() -> productRepository.findById(product.getId()))).isPresent();
+
+        replicate();
+        assertThat(productRepository.findById(product.getId())).get()
+                .extracting(Product::getName).isEqualTo("Replicated");
+    }
+
+    @Test
+    void cacheEntriesAreLoadedFromThePrimary() {
+        Product product = productService.addProduct(Product.builder().name("Listed").price(10.0).quantity(3).build());
+        assertThat(productService.getProductById(product.getId()).getName()).isEqualTo("Listed");
+
+        productService.updateProduct(product.getId(), Product.builder().name("Renamed").price(10.0).quantity(5).build());
+
+        // the lagging replica still has neither version, yet nothing stale is cached for the ttl
+        assertThat(productRepository.findByIdGreaterThanOrderByIdAsc(0L, Limit.of(10))).isEmpty();
+        assertThat(productRepository.findQuantityById(product.getId())).isEmpty();
+        assertThat(productService.getProductById(product.getId()).getName()).isEqualTo("Renamed");
+        assertThat(productService.getProducts(0L, 10)).extracting(Product::getName).containsExactly("Renamed");
+        assertThat(productService.checkStock(product.getId(), 5)).isTrue();
+    }
+
+    @Test
+    void readsBeforeAWriteUseThePrimary() {
+        Product product = productService.addProduct(Product.builder().name("Draft").price(10.0).quantity(3).build());
+
+        Product updated = productService.updateProduct(product.getId(),
+                Product.builder().name("Final").price(12.0).quantity(3).build());
+
+        assertThat(updated.getName()).isEqualTo("Final");
+    }
+
+    @Test
+    void replicaThatCannotConnectIsExcluded() {
+        replicaDataSource.checkHealth();
+
+        for (int i = 0; i < 4; i++) {
+            assertThat(productRepository.count()).isZero();
+        }
+        assertThat(meterRegistry.get("datasource.replica.healthy").tag("pool", "product-service-replica-1").gauge().value()).isEqualTo(1);
+        assertThat(meterRegistry.get("datasource.replica.healthy").tag("pool", "product-service-replica-2").gauge().value()).isZero();
+        assertThat(meterRegistry.get("datasource.replica.fallbacks").counter().count()).isZero();
+        assertThat(meterRegistry.get("hikaricp.connections").tag("pool", "product-service-replica-1").gauge()).isNotNull();
+    }
+
+    // copies the primary's tables and rows over the replica
+    private void replicate() throws SQLException {
+        List<String> script = new ArrayList<>();
+        try (Connection primary = primaryDataSource.getConnection();
+             Statement statement = primary.createStatement();
+             ResultSet rows = statement.executeQuery("SCRIPT")) {
+            while (rows.next()) {
+                script.add(rows.getString(1));
+            }
+        }
+        try (Connection replica = DriverManager.getConnection(REPLICA_URL, "admin", "password");
+             Statement statement = replica.createStatement()) {
+            statement.execute("DROP ALL OBJECTS");
+            for (String sql : script) {
+                // the script recreates the primary's user, which already owns the replica
+                if (!sql.startsWith("CREATE USER")) {
+                    statement.execute(sql);
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,129 @@
+package ma.enset.productservice.search;
+
+import ma.enset.productservice.entities.Product;
+import ma.enset.productservice.model.ProductSearchQuery;
+import ma.enset.productservice.model.StockLevel;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.stream.LongStream;
+import java.util.stream.Stream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class ProductSearchIndexTests {
+
+    private static final Logger logger = LoggerFactory.getLogger(ProductSearchIndexTests.class);
+
+    private final ProductSearchIndex index = new ProductSearchIndex();
+
+    @Test
+    void matchesWordPrefixesIgnoringCaseAndAccents() {
+        index.put(product(1L, "Téléphone Android", "Écran 6 pouces", 300.0, 5));
+        index.put(product(2L, "Tablette", "Compatible télécommande", 200.0, 5));
+
+        assertThat(search("tele").ids()).containsExactly(1L, 2L);
+        assertThat(search("ÉCRAN").ids()).containsExactly(1L);
+        assertThat(search("phone").ids()).isEmpty();
+    }
+
+    @Test
+    void everyWordMustMatchAndNameMatchesRankFirst() {
+        index.put(product(1L, "Souris", "Souris sans fil pour laptop", 20.0, 5));
+        index.put(product(2L, "Laptop 13 pouces", "Sans souris", 800.0, 5));
+        index.put(product(3L, "Laptop 15 pouces et souris", null, 900.0, 5));
+        index.put(product(4L, "Laptop 14 pouces", null, 850.0, 5));
+
+        assertThat(search("laptop souris").ids()).containsExactly(3L, 1L, 2L);
+        assertThat(search("laptop 15").ids()).containsExactly(3L);
+    }
+
+    @Test
+    void filtersOnPriceAndStockAndCountsMatches() {
+        index.put(product(1L, "Clavier", null, 20.0, 0));
+        index.put(product(2L, "Clavier mécanique", null, 90.0, 3));
+        index.put(product(3L, "Clavier gamer", null, 150.0, 1));
+
+        ProductSearchIndex.Hits hits = index.search(new ProductSearchQuery("clavier", 50.0, 200.0, false, 10));
+        assertThat(hits.ids()).containsExactly(2L, 3L);
+        assertThat(hits.total()).isEqualTo(2);
+
+        hits = index.search(new ProductSearchQuery("clavier", null, null, true, 1));
+        assertThat(hits.ids()).containsExactly(2L);
+        assertThat(hits.total()).isEqualTo(2);
+        assertThat(hits.inStock()).isEqualTo(2);
+    }
+
+    @Test
+    void writesReplaceTheIndexedProduct() {
+        index.put(product(1L, "Chaise", null, 50.0, 2));
+        index.put(product(1L, "Fauteuil", null, 50.0, 2));
+        index.put(product(2L, "Chaise pliante", null, 30.0, 2));
+        index.remove(2L);
+        index.updateStock(List.of(new StockLevel(1L, 0)));
+
+        assertThat(search("chaise").ids()).isEmpty();
+        assertThat(search("fauteuil").ids()).containsExactly(1L);
+        assertThat(index.search(new ProductSearchQuery("fauteuil", null, null, true, 10)).ids()).isEmpty();
+        assertThat(index.size()).isEqualTo(1);
+    }
+
+    @Test
+    void rebuildKeepsWritesMadeWhileItRuns() {
+        index.put(product(1L, "Lampe", null, 10.0, 1));
+
+        int indexed = index.rebuild(Stream.of(product(1L, "Lampe", null, 10.0, 1), product(2L, "Bureau", null, 100.0, 1))
+                .peek(product -> {
+                    if (product.getId() == 2L) {
+                        index.put(product(3L, "Lampe de bureau", null, 25.0, 1));
+                    }
+                }));
+
+        assertThat(indexed).isEqualTo(3);
+        assertThat(search("bureau").ids()).containsExactly(2L, 3L);
+    }
+
+    /**
+     * Times searches over a generated catalog.
+     * Run with {@code mvn test -Dtest=ProductSearchIndexTests -Dbenchmark.rows=1000000}.
+     */
+    @Test
+    @EnabledIfSystemProperty(named = "benchmark.rows", matches = "\\d+")
+    void searchesLargeCatalogs() {
+        int rows = Integer.getInteger("benchmark.rows");
+        String[] words = {"laptop", "souris", "clavier", "ecran", "casque", "chaise", "bureau", "lampe", "cable", "chargeur",
+                "noir", "blanc", "rouge", "sans", "fil", "gamer", "pro", "mini", "usb", "bluetooth"};
+        Random random = new Random(42);
+        index.rebuild(LongStream.rangeClosed(1, rows).mapToObj(id -> product(id,
+                words[random.nextInt(words.length)] + " " + words[random.nextInt(words.length)] + " " + id,
+                words[random.nextInt(words.length)] + " " + words[random.nextInt(words.length)],
+                1.0 + random.nextInt(1000), random.nextInt(10))));
+        String[] queries = {"lap", "souris sans", "ecran noir", "cha", "usb cable", "gamer pro mini", "blue"};
+
+        long[] latencies = new long[1000];
+        for (int i = 0; i < latencies.length; i++) {
+            ProductSearchQuery query = new ProductSearchQuery(queries[i % queries.length], i % 2 == 0 ? 100.0 : null, null, i % 3 == 0, 20);
+            long start = System.nanoTime();
+            index.search(query);
+            latencies[i] = System.nanoTime() - start;
+        }
+        Arrays.sort(latencies);
+
+        long p99Micros = latencies[latencies.length * 99 / 100] / 1000;
+        logger.info("Search over {} products: p50 {} µs, p99 {} µs", rows, latencies[latencies.length / 2] / 1000, p99Micros);
+        assertThat(index.size()).isEqualTo(rows);
+    }
+
+    private ProductSearchIndex.Hits search(String text) {
+        return index.search(new ProductSearchQuery(text, null, null, false, 10));
+    }
+
+    private static Product product(Long id, String name, String description, Double price, int quantity) {
+        return Product.builder().id(id).name(name).description(description).price(price).quantity(quantity).build();
+    }
+}
@@ -0,0 +1,112 @@
+package ma.enset.productservice.service;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class CoalescingEmitterTests {
+
+    private final ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor();
+
+    @AfterEach
+    void tearDown() {
+        executor.shutdownNow();
+    }
+
+    @Test
+    void updatesArrivingWhileTheClientIsBusyAreMergedPerKey() throws Exception {
+        RecordingEmitter emitter = new RecordingEmitter();
+        CoalescingEmitter<Long, String> subscriber = new CoalescingEmitter<>(emitter, "stock", 10, executor);
+
+        subscriber.offer(1L, "1:10");
+        assertThat(emitter.sending.await(5, TimeUnit.SECONDS)).isTrue();
+        subscriber.offer(1L, "1:9");
+        subscriber.offer(2L, "2:5");
+        subscriber.offer(1L, "1:8");
+        emitter.release.countDown();
+
+        assertThat(emitter.batches.poll(5, TimeUnit.SECONDS)).isEqualTo(List.of("1:10"));
+        assertThat(emitter.batches.poll(5, TimeUnit.SECONDS)).isEqualTo(List.of("1:8", "2:5"));
+        assertThat(emitter.batches.poll(100, TimeUnit.MILLISECONDS)).isNull();
+    }
+
+    @Test
+    void subscriberTooFarBehindIsDisconnected() throws Exception {
+        RecordingEmitter emitter = new RecordingEmitter();
+        CoalescingEmitter<Long, String> subscriber = new CoalescingEmitter<>(emitter, "stock", 2, executor);
+
+        subscriber.offer(1L, "1:10");
+        assertThat(emitter.sending.await(5, TimeUnit.SECONDS)).isTrue();
+
+        assertThat(subscriber.offer(2L, "2:5")).isTrue();
+        assertThat(subscriber.offer(3L, "3:5")).isTrue();
+        // the same keys again do not grow the buffer
+        assertThat(subscriber.offer(2L, "2:4")).isTrue();
+        assertThat(subscriber.offer(4L, "4:5")).isFalse();
+        assertThat(emitter.completed).isTrue();
+        assertThat(subscriber.offer(5L, "5:5")).isFalse();
+        emitter.release.countDown();
+    }
+
+    @Test
+    void failedSendClosesTheSubscriber() throws Exception {
+        RecordingEmitter emitter = new RecordingEmitter();
+        emitter.failSends = true;
+        emitter.release.countDown();
+        CoalescingEmitter<Long, String> subscriber = new CoalescingEmitter<>(emitter, "stock", 10, executor);
+
+        subscriber.offer(1L, "1:10");
+
+        assertThat(emitter.failed.await(5, TimeUnit.SECONDS)).isTrue();
+        assertThat(subscriber.offer(1L, "1:9")).isFalse();
+    }
+
+    // Records the data of each event; the first send blocks until released, like a client that stopped reading
+    private static class RecordingEmitter extends SseEmitter {
+
+        final BlockingQueue<Object> batches = new LinkedBlockingQueue<>();
+        final CountDownLatch sending = new CountDownLatch(1);
+        final CountDownLatch release = new CountDownLatch(1);
+        final CountDownLatch failed = new CountDownLatch(1);
+        volatile boolean failSends;
+        volatile boolean completed;
+
+        @Override
+        public void send(SseEventBuilder builder) throws IOException {
+            sending.countDown();
+            try {
+                release.await(5, TimeUnit.SECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            if (failSends) {
+                throw new IOException("Broken pipe");
+            }
+            builder.build().stream()
+                    .map(DataWithMediaType::getData)
+                    .filter(List.class::isInstance)
+                    .forEach(batches::add);
+        }
+
+        @Override
+        public void complete() {
+            completed = true;
+        }
+
+        @Override
+        public void completeWithError(Throwable ex) {
+            failed.countDown();
+        }
+    }
+}
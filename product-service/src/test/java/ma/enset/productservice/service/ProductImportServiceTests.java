@@ -0,0 +1,184 @@
+package ma.enset.productservice.service;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import jakarta.persistence.EntityManagerFactory;
+import ma.enset.productservice.cache.ProductCatalogCache;
+import ma.enset.productservice.entities.Product;
+import ma.enset.productservice.model.ProductImportError;
+import ma.enset.productservice.model.ProductImportReport;
+import ma.enset.productservice.model.ProductSearchQuery;
+import ma.enset.productservice.repository.ProductRepository;
+import ma.enset.productservice.search.ProductSearchIndex;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.json.AutoConfigureJson;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.http.MediaType;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+/**
+ * Each batch commits on its own, so these tests run outside a test transaction.
+ */
+@DataJpaTest(properties = {
+        "spring.jpa.properties.hibernate.generate_statistics=true",
+        "product.import.batch-size=100",
+        "product.import.max-reported-errors=3"})
+@AutoConfigureJson
+@Import({ProductImportService.class, ProductService.class, ProductCatalogCache.class, StockEventPublisher.class,
+        ProductSearchIndex.class, SimpleMeterRegistry.class})
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+class ProductImportServiceTests {
+
+    private static final MediaType NDJSON = MediaType.APPLICATION_NDJSON;
+
+    @Autowired
+    private ProductImportService importService;
+
+    @Autowired
+    private ProductService productService;
+
+    @Autowired
+    private ProductRepository productRepository;
+
+    @Autowired
+    private ProductSearchIndex searchIndex;
+
+    @Autowired
+    private EntityManagerFactory entityManagerFactory;
+
+    @AfterEach
+    void tearDown() {
+        productRepository.deleteAll();
+    }
+
+    @Test
+    void csvRecordsWithAnIdUpdateAndOthersAreInserted() throws IOException {
+        Long existing = productRepository.save(Product.builder().name("Old name").price(5.0).quantity(1).build()).getId();
+
+        ProductImportReport report = importService.importProducts(stream("""
+                quantity,price,name,description,id
+                7,12.5,Renamed,,%d
+                3,20,"Bureau, chêne","Plateau ""massif""
+                sur deux lignes",
+                """.formatted(existing)), ProductImportService.TEXT_CSV);
+
+        assertThat(report.records()).isEqualTo(2);
+        assertThat(report.inserted()).isEqualTo(1);
+        assertThat(report.updated()).isEqualTo(1);
+        assertThat(report.errors()).isEmpty();
+        assertThat(productRepository.findById(existing)).get()
+                .satisfies(product -> {
+                    assertThat(product.getName()).isEqualTo("Renamed");
+                    assertThat(product.getPrice()).isEqualTo(12.5);
+                    assertThat(product.getQuantity()).isEqualTo(7);
+                });
+        assertThat(productRepository.findAll()).filteredOn(product -> !product.getId().equals(existing)).singleElement()
+                .satisfies(product -> {
+                    assertThat(product.getName()).isEqualTo("Bureau, chêne");
+                    assertThat(product.getDescription()).isEqualTo("Plateau \"massif\"\nsur deux lignes");
+                });
+        assertThat(searchIndex.search(new ProductSearchQuery("chene", null, null, false, 10)).total()).isEqualTo(1);
+    }
+
+    @Test
+    void invalidRecordsAreReportedByLineAndTheRestImported() throws IOException {
+        ProductImportReport report = importService.importProducts(stream("""
+                {"name":"Valid","price":10,"quantity":2}
+                {"name":"Broken",
+                
+                {"name":"","price":10}
+                {"name":"Free","price":0}
+                {"id":999999,"name":"Ghost","price":10}
+                {"name":"Also valid","price":3.5}
+                """), NDJSON);
+
+        assertThat(report.records()).isEqualTo(6);
+        assertThat(report.inserted()).isEqualTo(2);
+        assertThat(report.failed()).isEqualTo(4);
+        assertThat(report.errorsTruncated()).isTrue();
+        assertThat(report.errors()).extracting(ProductImportError::line).containsExactly(2L, 4L, 5L);
+        assertThat(report.errors()).extracting(ProductImportError::message)
+                .contains("Product name cannot be empty", "Product price must be positive");
+        assertThat(productRepository.count()).isEqualTo(2);
+    }
+
+    @Test
+    void importedUpdatesAreReadBackThroughTheCache() throws IOException {
+        Long existing = productRepository.save(Product.builder().name("Old name").price(5.0).quantity(1).build()).getId();
+        // cached before the import
+        assertThat(productService.getProductById(existing).getName()).isEqualTo("Old name");
+        assertThat(productService.getProducts(0L, 10)).extracting(Product::getName).containsExactly("Old name");
+
+        importService.importProducts(stream("""
+                {"id":%d,"name":"New name","price":5,"quantity":4}
+                """.formatted(existing)), NDJSON);
+
+        assertThat(productService.getProductById(existing).getName()).isEqualTo("New name");
+        assertThat(productService.getProducts(0L, 10)).extracting(Product::getName).containsExactly("New name");
+        assertThat(productService.checkStock(existing, 4)).isTrue();
+    }
+
+    @Test
+    void onlyTheRecordsTheDatabaseRejectsAreReported() throws IOException {
+        // valid for the service, but longer than the name column
+        ProductImportReport report = importService.importProducts(stream("""
+                {"name":"First","price":1}
+                {"name":"%s","price":2}
+                {"name":"Third","price":3}
+                """.formatted("x".repeat(300))), NDJSON);
+
+        assertThat(report.inserted()).isEqualTo(2);
+        assertThat(report.failed()).isEqualTo(1);
+        assertThat(report.errors()).singleElement()
+                .satisfies(error -> {
+                    assertThat(error.line()).isEqualTo(2);
+                    assertThat(error.message()).startsWith("Rejected by the database");
+                });
+        assertThat(productRepository.findAll()).extracting(Product::getName).containsExactlyInAnyOrder("First", "Third");
+    }
+
+    @Test
+    void recordsAreWrittenInJdbcBatches() throws IOException {
+        String file = IntStream.rangeClosed(1, 1000)
+                .mapToObj(i -> "{\"name\":\"Product " + i + "\",\"price\":" + i + ",\"quantity\":1}")
+                .collect(Collectors.joining("\n"));
+        Statistics statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+        statistics.clear();
+
+        ProductImportReport report = importService.importProducts(stream(file), NDJSON);
+
+        assertThat(report.inserted()).isEqualTo(1000);
+        assertThat(statistics.getEntityInsertCount()).isEqualTo(1000);
+        // insert batches of 50 and pooled sequence calls, rather than a statement per product
+        assertThat(statistics.getPrepareStatementCount()).isLessThanOrEqualTo(40);
+    }
+
+    @Test
+    void unusableCsvHeaderIsRejectedUpFront() {
+        assertThatThrownBy(() -> importService.importProducts(stream("name,colour\nChair,red\n"), ProductImportService.TEXT_CSV))
+                .isInstanceOf(IllegalArgumentException.class)
+                .hasMessageContaining("colour");
+        assertThatThrownBy(() -> importService.importProducts(stream("id,name\n1,Chair\n"), ProductImportService.TEXT_CSV))
+                .isInstanceOf(IllegalArgumentException.class);
+        assertThatThrownBy(() -> importService.importProducts(stream(""), MediaType.APPLICATION_JSON))
+                .isInstanceOf(IllegalArgumentException.class);
+    }
+
+    private static ByteArrayInputStream stream(String content) {
+        return new ByteArrayInputStream(content.getBytes(StandardCharsets.UTF_8));
+    }
+}
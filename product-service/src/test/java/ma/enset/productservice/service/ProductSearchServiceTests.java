@@ -0,0 +1,79 @@
+package ma.enset.productservice.service;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import ma.enset.productservice.cache.ProductCatalogCache;
+import ma.enset.productservice.entities.Product;
+import ma.enset.productservice.model.ProductSearchQuery;
+import ma.enset.productservice.model.ProductSearchResult;
+import ma.enset.productservice.repository.ProductRepository;
+import ma.enset.productservice.search.ProductSearchIndex;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+@DataJpaTest
+@Import({ProductSearchService.class, ProductSearchIndex.class, ProductService.class, ProductCatalogCache.class,
+        StockEventPublisher.class, SimpleMeterRegistry.class})
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+class ProductSearchServiceTests {
+
+    @Autowired
+    private ProductSearchService searchService;
+
+    @Autowired
+    private ProductService productService;
+
+    @Autowired
+    private ProductRepository productRepository;
+
+    @AfterEach
+    void tearDown() {
+        productRepository.deleteAll();
+        searchService.rebuildIndex();
+    }
+
+    @Test
+    void rebuildIndexesTheCatalogAndWritesAreSearchableAtOnce() {
+        productRepository.save(Product.builder().name("Imprimante laser").price(150.0).quantity(2).build());
+        searchService.rebuildIndex();
+        Product added = productService.addProduct(Product.builder().name("Imprimante jet d'encre").price(80.0).quantity(1).build());
+
+        ProductSearchResult result = search(new ProductSearchQuery("impr", null, null, false, 10));
+        assertThat(result.total()).isEqualTo(2);
+        assertThat(result.products()).extracting(Product::getName).containsExactly("Imprimante laser", "Imprimante jet d'encre");
+
+        productService.deleteProduct(added.getId());
+        assertThat(search(new ProductSearchQuery("encre", null, null, false, 10)).total()).isZero();
+    }
+
+    @Test
+    void soldOutProductsAreDroppedBeforeTheIndexCatchesUp() {
+        Product product = productService.addProduct(Product.builder().name("Scanner").price(99.0).quantity(1).build());
+        productService.reduceStock(product.getId(), 1);
+
+        ProductSearchResult result = search(new ProductSearchQuery("scanner", null, null, true, 10));
+
+        assertThat(result.products()).isEmpty();
+    }
+
+    @Test
+    void rejectsInvalidQueries() {
+        assertThatThrownBy(() -> search(new ProductSearchQuery("x", null, null, false, 0)))
+                .isInstanceOf(IllegalArgumentException.class);
+        assertThatThrownBy(() -> search(new ProductSearchQuery("x", null, null, false, 101)))
+                .isInstanceOf(IllegalArgumentException.class);
+        assertThatThrownBy(() -> search(new ProductSearchQuery("x", 10.0, 5.0, false, 10)))
+                .isInstanceOf(IllegalArgumentException.class);
+    }
+
+    private ProductSearchResult search(ProductSearchQuery query) {
+        return searchService.search(query);
+    }
+}
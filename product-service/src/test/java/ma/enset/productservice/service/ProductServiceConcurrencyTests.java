@@ -0,0 +1,185 @@
+package ma.enset.productservice.service;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import ma.enset.productservice.cache.ProductCatalogCache;
+import ma.enset.productservice.entities.AppliedReservation;
+import ma.enset.productservice.entities.Product;
+import ma.enset.productservice.model.StockReservation;
+import ma.enset.productservice.repository.AppliedReservationRepository;
+import ma.enset.productservice.repository.ProductRepository;
+import ma.enset.productservice.search.ProductSearchIndex;
+import org.junit.jupiter.api.Test;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@DataJpaTest
+@Import({ProductService.class, ProductCatalogCache.class, StockEventPublisher.class, ProductSearchIndex.class, SimpleMeterRegistry.class})
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+class ProductServiceConcurrencyTests {
+
+    private static final Logger logger = LoggerFactory.getLogger(ProductServiceConcurrencyTests.class);
+
+    private static final int CLIENTS = 64;
+    private static final int DECREMENTS_PER_CLIENT = 50;
+
+    @Autowired
+    private ProductService productService;
+
+    @Autowired
+    private ProductRepository productRepository;
+
+    @Autowired
+    private AppliedReservationRepository appliedReservationRepository;
+
+    @Autowired
+    private SimpleMeterRegistry meterRegistry;
+
+    @Test
+    void concurrentReduceStockLosesNoDecrements() throws Exception {
+        Long productId = saveProduct(CLIENTS * DECREMENTS_PER_CLIENT);
+        AtomicInteger succeeded = new AtomicInteger();
+
+        long elapsed = runClients(() -> {
+            for (int i = 0; i < DECREMENTS_PER_CLIENT; i++) {
+                productService.reduceStock(productId, 1);
+                succeeded.incrementAndGet();
+            }
+        });
+
+        assertThat(succeeded.get()).isEqualTo(CLIENTS * DECREMENTS_PER_CLIENT);
+        assertThat(productRepository.findById(productId)).get()
+                .satisfies(product -> {
+                    assertThat(product.getQuantity()).isZero();
+                    assertThat(product.getVersion()).isEqualTo(CLIENTS * DECREMENTS_PER_CLIENT);
+                });
+        logger.info("{} clients performed {} decrements on one product in {} ms ({} ops/s)",
+                CLIENTS, succeeded.get(), elapsed, succeeded.get() * 1000L / Math.max(elapsed, 1));
+    }
+
+    @Test
+    void concurrentReduceStockNeverOversells() throws Exception {
+        int stock = CLIENTS * DECREMENTS_PER_CLIENT / 4;
+        Long productId = saveProduct(stock);
+        AtomicInteger succeeded = new AtomicInteger();
+        AtomicInteger rejected = new AtomicInteger();
+
+        runClients(() -> {
+            for (int i = 0; i < DECREMENTS_PER_CLIENT; i++) {
+                try {
+                    productService.reduceStock(productId, 1);
+                    succeeded.incrementAndGet();
+                } catch (RuntimeException e) {
+                    assertThat(e).hasMessage("Insufficient stock");
+                    rejected.incrementAndGet();
+                }
+            }
+        });
+
+        assertThat(succeeded.get()).isEqualTo(stock);
+        assertThat(rejected.get()).isEqualTo(CLIENTS * DECREMENTS_PER_CLIENT - stock);
+        assertThat(meterRegistry.get("products.stock.insufficient").tag("operation", "reduce").counter().count())
+                .isEqualTo(rejected.get());
+        assertThat(productRepository.findById(productId)).get()
+                .extracting(Product::getQuantity)
+                .isEqualTo(0);
+    }
+
+    @Test
+    void redeliveredReservationIsAppliedOnce() throws Exception {
+        Long productId = saveProduct(CLIENTS * DECREMENTS_PER_CLIENT);
+        List<StockReservation> reservation = List.of(new StockReservation(productId, 3));
+        AtomicInteger conflicts = new AtomicInteger();
+
+        runClients(() -> {
+            try {
+                productService.reserveStock(reservation, "order-service", "order-42");
+            } catch (DataIntegrityViolationException e) {
+                // a concurrent duplicate lost the race on the idempotency key and rolled back
+                conflicts.incrementAndGet();
+            }
+        });
+        productService.reserveStock(reservation, "order-service", "order-42");
+
+        assertThat(productRepository.findById(productId)).get()
+                .extracting(Product::getQuantity)
+                .isEqualTo(CLIENTS * DECREMENTS_PER_CLIENT - 3);
+        assertThat(conflicts.get()).isLessThan(CLIENTS);
+    }
+
+    @Test
+    void idempotencyKeysAreScopedToTheirPrincipal() {
+        Long productId = saveProduct(10);
+        List<StockReservation> reservation = List.of(new StockReservation(productId, 2));
+
+        // a client claiming the key first does not turn the service's reservation into a no-op
+        productService.reserveStock(List.of(new StockReservation(productId, 1)), "user1", "order-43");
+        productService.reserveStock(reservation, "order-service", "order-43");
+        productService.reserveStock(reservation, "order-service", "order-43");
+
+        assertThat(productRepository.findById(productId)).get()
+                .extracting(Product::getQuantity)
+                .isEqualTo(7);
+    }
+
+    @Test
+    void appliedReservationKeysArePurgedAfterTheirRetention() {
+        appliedReservationRepository.save(new AppliedReservation("order-service", "order-44", Instant.now().minus(Duration.ofDays(8))));
+        appliedReservationRepository.save(new AppliedReservation("order-service", "order-45", Instant.now()));
+
+        productService.purgeAppliedReservations();
+
+        assertThat(appliedReservationRepository.existsById(new AppliedReservation.Key("order-service", "order-44"))).isFalse();
+        assertThat(appliedReservationRepository.existsById(new AppliedReservation.Key("order-service", "order-45"))).isTrue();
+    }
+
+    private Long saveProduct(int quantity) {
+        return productRepository.save(Product.builder()
+                .name("Hot product")
+                .price(10.0)
+                .quantity(quantity)
+                .build()).getId();
+    }
+
+    // Starts all clients at once and returns the wall-clock time in milliseconds until the last one finishes
+    private long runClients(Runnable client) throws Exception {
+        ExecutorService executor = Executors.newFixedThreadPool(CLIENTS);
+        CountDownLatch start = new CountDownLatch(1);
+        List<Future<?>> futures = new ArrayList<>();
+        try {
+            for (int i = 0; i < CLIENTS; i++) {
+                futures.add(executor.submit(() -> {
+                    start.await();
+                    client.run();
+                    return null;
+                }));
+            }
+            long startedAt = System.nanoTime();
+            start.countDown();
+            for (Future<?> future : futures) {
+                future.get(60, TimeUnit.SECONDS);
+            }
+            return TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startedAt);
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+}
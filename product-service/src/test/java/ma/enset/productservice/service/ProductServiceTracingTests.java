@@ -0,0 +1,102 @@
+package ma.enset.productservice.service;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import io.micrometer.observation.Observation;
+import io.micrometer.observation.ObservationRegistry;
+import io.opentelemetry.sdk.testing.exporter.InMemorySpanExporter;
+import io.opentelemetry.sdk.trace.SdkTracerProvider;
+import io.opentelemetry.sdk.trace.data.SpanData;
+import ma.enset.productservice.cache.ProductCatalogCache;
+import ma.enset.productservice.entities.Product;
+import ma.enset.productservice.model.StockReservation;
+import ma.enset.productservice.repository.ProductRepository;
+import ma.enset.productservice.search.ProductSearchIndex;
+import net.ttddyy.observation.boot.autoconfigure.DataSourceObservationAutoConfiguration;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.actuate.autoconfigure.observation.ObservationAutoConfiguration;
+import org.springframework.boot.actuate.autoconfigure.opentelemetry.OpenTelemetryAutoConfiguration;
+import org.springframework.boot.actuate.autoconfigure.tracing.MicrometerTracingAutoConfiguration;
+import org.springframework.boot.actuate.autoconfigure.tracing.OpenTelemetryTracingAutoConfiguration;
+import org.springframework.boot.autoconfigure.ImportAutoConfiguration;
+import org.springframework.boot.test.autoconfigure.actuate.observability.AutoConfigureObservability;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.boot.test.context.TestConfiguration;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Import;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Collects the spans of a stock reservation with the in-memory exporter the production
+ * exporters are swapped for, and checks they all belong to the caller's trace.
+ */
+@DataJpaTest(properties = "management.tracing.sampling.probability=1.0")
+@AutoConfigureObservability(metrics = false)
+@ImportAutoConfiguration({ObservationAutoConfiguration.class, OpenTelemetryAutoConfiguration.class,
+        OpenTelemetryTracingAutoConfiguration.class, MicrometerTracingAutoConfiguration.class,
+        DataSourceObservationAutoConfiguration.class})
+@Import({ProductService.class, ProductCatalogCache.class, StockEventPublisher.class, ProductSearchIndex.class, SimpleMeterRegistry.class,
+        ProductServiceTracingTests.InMemoryExporter.class})
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+class ProductServiceTracingTests {
+
+    @Autowired
+    private ProductService productService;
+
+    @Autowired
+    private ProductRepository productRepository;
+
+    @Autowired
+    private ObservationRegistry observationRegistry;
+
+    @Autowired
+    private SdkTracerProvider tracerProvider;
+
+    @Autowired
+    private InMemorySpanExporter spanExporter;
+
+    @Test
+    void reservationSpansPerItemAndPerQueryJoinTheCallersTrace() {
+        Long first = saveProduct(10);
+        Long second = saveProduct(10);
+        tracerProvider.forceFlush().join(5, TimeUnit.SECONDS);
+        spanExporter.reset();
+
+        Observation.createNotStarted("test.request", observationRegistry).observe(() ->
+                productService.reserveStock(List.of(new StockReservation(first, 2), new StockReservation(second, 3))));
+        tracerProvider.forceFlush().join(5, TimeUnit.SECONDS);
+
+        List<SpanData> spans = spanExporter.getFinishedSpanItems();
+        assertThat(spans).extracting(SpanData::getTraceId).containsOnly(spans.get(0).getTraceId());
+        assertThat(spans).filteredOn(span -> span.getName().equals("reserve stock"))
+                .extracting(span -> span.getAttributes().asMap().entrySet().stream()
+                        .filter(attribute -> attribute.getKey().getKey().equals("product.id"))
+                        .map(attribute -> attribute.getValue().toString())
+                        .findFirst().orElseThrow())
+                .containsExactlyInAnyOrder(first.toString(), second.toString());
+        assertThat(spans).filteredOn(span -> span.getName().equals("query")).isNotEmpty();
+    }
+
+    private Long saveProduct(int quantity) {
+        return productRepository.save(Product.builder()
+                .name("Traced product")
+                .price(10.0)
+                .quantity(quantity)
+                .build()).getId();
+    }
+
+    @TestConfiguration(proxyBeanMethods = false)
+    static class InMemoryExporter {
+
+        @Bean
+        InMemorySpanExporter inMemorySpanExporter() {
+            return InMemorySpanExporter.create();
+        }
+    }
+}
@@ -0,0 +1,143 @@
+package ma.enset.productservice.service;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import jakarta.persistence.EntityManagerFactory;
+import ma.enset.productservice.cache.ProductCatalogCache;
+import ma.enset.productservice.entities.Product;
+import ma.enset.productservice.model.ProductSearchQuery;
+import ma.enset.productservice.repository.ProductRepository;
+import ma.enset.productservice.search.ProductSearchIndex;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.dao.QueryTimeoutException;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.test.annotation.DirtiesContext;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Proxy;
+import java.time.Duration;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@DataJpaTest(properties = "spring.jpa.properties.hibernate.generate_statistics=true")
+@Import({ProductService.class, ProductCatalogCache.class, StockEventPublisher.class, ProductSearchIndex.class, SimpleMeterRegistry.class})
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+// subscribers outlive a test: the streams are never connected, so nothing completes them
+@DirtiesContext(classMode = DirtiesContext.ClassMode.AFTER_EACH_TEST_METHOD)
+class StockEventPublisherTests {
+
+    @Autowired
+    private StockEventPublisher stockEventPublisher;
+
+    @Autowired
+    private ProductService productService;
+
+    @Autowired
+    private ProductRepository productRepository;
+
+    @Autowired
+    private ProductSearchIndex searchIndex;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    @Autowired
+    private EntityManagerFactory entityManagerFactory;
+
+    private Statistics statistics;
+    private Long productId;
+
+    @BeforeEach
+    void setUp() {
+        productId = productRepository.save(Product.builder().name("Streamed product").price(10.0).quantity(100).build()).getId();
+        statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+    }
+
+    @AfterEach
+    void tearDown() {
+        productRepository.deleteAll();
+    }
+
+    @Test
+    void burstOfStockChangesIsReadBackInOneQuery() {
+        stockEventPublisher.subscribe();
+        for (int i = 0; i < 50; i++) {
+            productService.reduceStock(productId, 1);
+        }
+        statistics.clear();
+
+        stockEventPublisher.flush();
+        stockEventPublisher.flush();
+
+        assertThat(statistics.getPrepareStatementCount()).isEqualTo(1);
+    }
+
+    @Test
+    void stockLevelsReachTheSearchIndexWithoutSubscribers() {
+        searchIndex.put(productRepository.findById(productId).orElseThrow());
+        productService.reduceStock(productId, 100);
+        statistics.clear();
+
+        stockEventPublisher.flush();
+
+        assertThat(statistics.getPrepareStatementCount()).isEqualTo(1);
+        assertThat(searchIndex.search(new ProductSearchQuery("streamed", null, null, true, 10)).ids()).isEmpty();
+    }
+
+    @Test
+    void changesAreKeptWhenTheirReadFails() {
+        searchIndex.put(productRepository.findById(productId).orElseThrow());
+        productRepository.save(productRepository.findById(productId).orElseThrow().toBuilder().quantity(0).build());
+        AtomicInteger failures = new AtomicInteger(1);
+        StockEventPublisher publisher = new StockEventPublisher(failingOnce(productRepository, failures), searchIndex,
+                new SimpleMeterRegistry(), Duration.ofMinutes(30), 1000);
+        publisher.stockChanged(productId);
+
+        publisher.flush();
+        assertThat(failures).hasValue(0);
+        assertThat(searchIndex.search(new ProductSearchQuery("streamed", null, null, true, 10)).ids()).isNotEmpty();
+
+        publisher.flush();
+        assertThat(searchIndex.search(new ProductSearchQuery("streamed", null, null, true, 10)).ids()).isEmpty();
+    }
+
+    @Test
+    void rolledBackChangesAreNotPublished() {
+        stockEventPublisher.subscribe();
+        new TransactionTemplate(transactionManager).executeWithoutResult(status -> {
+            stockEventPublisher.stockChanged(productId);
+            status.setRollbackOnly();
+        });
+        statistics.clear();
+
+        stockEventPublisher.flush();
+
+        assertThat(statistics.getPrepareStatementCount()).isZero();
+    }
+
+    // the stock read fails while failures remain, every other call goes to the real repository
+    private static ProductRepository failingOnce(ProductRepository repository, AtomicInteger failures) {
+        return (ProductRepository) Proxy.newProxyInstance(ProductRepository.class.getClassLoader(),
+                new Class<?>[]{ProductRepository.class},
+                (proxy, method, args) -> {
+                    if (method.getName().equals("findStockLevelsByIdIn") && failures.getAndDecrement() > 0) {
+                        throw new QueryTimeoutException("Primary unavailable");
+                    }
+                    try {
+                        return method.invoke(repository, args);
+                    } catch (InvocationTargetException e) {
+                        throw e.getCause();
+                    }
+                });
+    }
+}
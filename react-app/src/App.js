@@ -1,12 +1,16 @@
 import React, { useState, useEffect } from 'react';
 import axios from 'axios';
 import './App.css';
+import { subscribe } from './events';
 
 const API_URL = "http://localhost:8085";
 
 function App({ keycloak }) {
     const [products, setProducts] = useState([]);
     const [orders, setOrders] = useState([]);
+    // X-Next-Cursor of the last page loaded, null once the list is complete
+    const [productsCursor, setProductsCursor] = useState(null);
+    const [ordersCursor, setOrdersCursor] = useState(null);
     const [error, setError] = useState(null);
     const [showProductForm, setShowProductForm] = useState(false);
     const [editingProduct, setEditingProduct] = useState(null);
@@ -24,6 +28,29 @@ function App({ keycloak }) {
         // eslint-disable-next-line react-hooks/exhaustive-deps
     }, [keycloak.authenticated]);
 
+    // stock levels and order statuses are pushed by the services instead of re-fetched
+    useEffect(() => {
+        if (!keycloak.authenticated) return;
+        const getToken = () => keycloak.token;
+        const closeStock = subscribe(`${API_URL}/products/stock/events`, getToken, (event, levels) => {
+            if (event !== 'stock') return;
+            const quantities = new Map(levels.map(level => [level.productId, level.quantity]));
+            setProducts(prev => prev.map(p => quantities.has(p.id) ? { ...p, quantity: quantities.get(p.id) } : p));
+        }, fetchProducts);
+        const closeOrders = subscribe(`${API_URL}/orders/events`, getToken, (event, changes) => {
+            if (event !== 'status') return;
+            const statuses = new Map(changes.map(change => [change.orderId, change.status]));
+            setOrders(prev => prev.map(o => statuses.has(o.id) ? { ...o, status: statuses.get(o.id) } : o));
+            // new orders, possibly placed from another tab: reload the list rather than guess their contents
+            if (changes.some(change => change.status === 'PENDING')) fetchOrders();
+        }, fetchOrders);
+        return () => {
+            closeStock();
+            closeOrders();
+        };
+        // eslint-disable-next-line react-hooks/exhaustive-deps
+    }, [keycloak.authenticated]);
+
     const handleError = (err, action) => {
         console.error(`Error ${action}`, err);
         if (err.response?.status === 401) {
@@ -37,10 +64,12 @@ function App({ keycloak }) {
     };
 
     // ==================== PRODUCTS CRUD ====================
-    const fetchProducts = async () => {
+    // the first page replaces the list, the following ones are appended to it
+    const fetchProducts = async (after) => {
         try {
-            const res = await axios.get(`${API_URL}/products`, { headers: authHeaders });
-            setProducts(res.data);
+            const res = await axios.get(`${API_URL}/products`, { headers: authHeaders, params: after ? { after } : {} });
+            setProducts(prev => after ? [...prev, ...res.data] : res.data);
+            setProductsCursor(res.headers['x-next-cursor'] || null);
             setError(null);
         } catch (err) {
             handleError(err, 'fetch products');
@@ -116,11 +145,15 @@ function App({ keycloak }) {
     };
 
     // ==================== ORDERS ====================
-    const fetchOrders = async () => {
+    // newest first by id, the order in which /orders hands out a cursor
+    const fetchOrders = async (before) => {
         try {
             const endpoint = isAdmin ? `${API_URL}/orders/all` : `${API_URL}/orders`;
-            const res = await axios.get(endpoint, { headers: authHeaders });
-            setOrders(res.data);
+            const params = isAdmin ? {} : { sort: 'id,desc' };
+            if (before) params.before = before;
+            const res = await axios.get(endpoint, { headers: authHeaders, params });
+            setOrders(prev => before ? [...prev, ...res.data] : res.data);
+            setOrdersCursor(res.headers['x-next-cursor'] || null);
             setError(null);
         } catch (err) {
             handleError(err, 'fetch orders');
@@ -141,7 +174,6 @@ function App({ keycloak }) {
             }, { headers: authHeaders });
             alert("Order placed successfully!");
             fetchOrders();
-            fetchProducts(); // Refresh stock
             setError(null);
         } catch (err) {
             handleError(err, 'place order');
@@ -270,13 +302,16 @@ function App({ keycloak }) {
                             ))
                         )}
                     </div>
+                    {productsCursor && (
+                        <button className="btn-load-more" onClick={() => fetchProducts(productsCursor)}>Load more products</button>
+                    )}
                 </section>
 
                 {/* ==================== ORDERS SECTION ==================== */}
                 <section>
                     <div className="section-header">
                         <h2>📋 {isAdmin ? 'All Orders' : 'My Orders'}</h2>
-                        <button className="btn-refresh" onClick={fetchOrders}>🔄 Refresh</button>
+                        <button className="btn-refresh" onClick={() => fetchOrders()}>🔄 Refresh</button>
                     </div>
                     <table className="orders-table">
                         <thead>
@@ -310,6 +345,9 @@ function App({ keycloak }) {
                             )}
                         </tbody>
                     </table>
+                    {ordersCursor && (
+                        <button className="btn-load-more" onClick={() => fetchOrders(ordersCursor)}>Load more orders</button>
+                    )}
                 </section>
             </main>
         </div>
@@ -0,0 +1,54 @@
+// Server-sent events over fetch: EventSource cannot send the Authorization header the gateway requires.
+// Calls onEvent(name, data) for each event and onReconnect() after each reconnection, so the caller can
+// reload what it may have missed. Returns a function that closes the stream.
+export function subscribe(url, getToken, onEvent, onReconnect) {
+    let controller = null;
+    let closed = false;
+    let connected = false;
+
+    const connect = async () => {
+        controller = new AbortController();
+        try {
+            const res = await fetch(url, {
+                headers: { Authorization: `Bearer ${getToken()}`, Accept: 'text/event-stream' },
+                signal: controller.signal
+            });
+            if (!res.ok) throw new Error(`${res.status}`);
+            if (connected && onReconnect) onReconnect();
+            connected = true;
+
+            const reader = res.body.pipeThrough(new TextDecoderStream()).getReader();
+            let buffer = '';
+            for (;;) {
+                const { value, done } = await reader.read();
+                if (done) break;
+                buffer += value;
+                let end;
+                while ((end = buffer.indexOf('\n\n')) >= 0) {
+                    dispatch(buffer.slice(0, end), onEvent);
+                    buffer = buffer.slice(end + 2);
+                }
+            }
+        } catch (err) {
+            if (closed) return;
+            console.warn(`Event stream ${url} interrupted`, err);
+        }
+        if (!closed) setTimeout(connect, 5000);
+    };
+
+    connect();
+    return () => {
+        closed = true;
+        controller?.abort();
+    };
+}
+
+function dispatch(block, onEvent) {
+    let name = 'message';
+    const data = [];
+    for (const line of block.split('\n')) {
+        if (line.startsWith('event:')) name = line.slice(6).trim();
+        else if (line.startsWith('data:')) data.push(line.slice(5));
+    }
+    if (data.length) onEvent(name, JSON.parse(data.join('\n')));
+}